@@ -0,0 +1,33 @@
+package checkers.inference;
+
+import checkers.inference.model.Constraint;
+
+/**
+ * A ConstraintListener is notified by the ConstraintManager each time a new constraint is generated.
+ *
+ * Listeners receive constraints while javac is still type-checking later compilation units, which
+ * allows work such as presolving, CNF encoding or writing constraints to disk to overlap with
+ * constraint generation rather than waiting for InferenceMain.solve.
+ *
+ * Listeners see the constraints as they are generated, i.e. BEFORE they are normalized by the
+ * ConstraintNormalizer.  Duplicate and trivial constraints discarded by the ConstraintManager are
+ * not forwarded.
+ *
+ * An InferenceSolver that also implements ConstraintListener is created and registered with the
+ * ConstraintManager by InferenceMain before javac is started.  All other solvers are only created
+ * once constraint generation has finished.
+ *
+ * @see ConstraintManager#addListener(ConstraintListener)
+ */
+public interface ConstraintListener {
+
+    /**
+     * Called once for each constraint that is added to the ConstraintManager.
+     */
+    void constraintAdded(Constraint constraint);
+
+    /**
+     * Called once all compilation units have been visited and no more constraints will be added.
+     */
+    void generationComplete();
+}
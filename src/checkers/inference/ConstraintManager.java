@@ -1,30 +1,135 @@
 package checkers.inference;
 
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.AnnotationUtils;
+
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.logging.Logger;
+
+import javax.lang.model.element.AnnotationMirror;
 
+import checkers.inference.model.BinaryConstraint;
+import checkers.inference.model.ComparableConstraint;
+import checkers.inference.model.ConstantSlot;
 import checkers.inference.model.Constraint;
+import checkers.inference.model.ConstraintTable;
+import checkers.inference.model.ConstraintTableSet;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.InequalityConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+import checkers.inference.util.LongHashSet;
 
 /**
  * Constraint manager holds constraints that are generated by InferenceVisitor.
  *
+ * Binary constraints are interned by their kind and the ids of their slots.  The addXXXConstraint
+ * methods check whether an equivalent constraint was already added BEFORE allocating a new
+ * constraint, which matters because the type hierarchy re-checks the same pairs of slots many times
+ * over the course of the two-pass AST visit.  Trivial constraints, i.e. those between a slot and itself
+ * or between two constants that satisfy them, are discarded on insertion since they do not constrain
+ * any variable.  Constraints that can never hold, an inequality between a slot and itself or a false
+ * constraint between two constants, are kept and counted so that the solver reports them.  Subtype and
+ * comparable constraints between different constants can only be evaluated once setQualifierHierarchy
+ * has been called, until then they are kept.
+ *
+ * Constraints are stored in a columnar ConstraintTable rather than as Constraint objects, only
+ * constraints the table cannot store, e.g. those with null slots, are kept as objects.  getConstraints
+ * is a ConstraintTableSet over the table that materializes each constraint while it is iterated.
+ * Preference, combine and existential constraints are not interned: each of them has a slot that
+ * was created for it (the goal constant, the combination result, or the potential variable of the
+ * existential constraints the ConstraintNormalizer creates), so two of them are never equal.
+ *
+ * ConstraintListeners registered with addListener are notified of each constraint as it is added.
+ *
  * @author mcarthur
  *
  */
 public class ConstraintManager {
 
+    private static final Logger logger = Logger.getLogger(ConstraintManager.class.getName());
+
     private boolean ignoreConstraints = false;
 
-    private final Set<Constraint> constraints = new HashSet<Constraint>();
+    // Binary constraints between slots with ids, one row per constraint
+    private final ConstraintTable constraintTable = new ConstraintTable();
+
+    // All constraints that cannot be stored in the table, e.g. constraints with null slots
+    private final Set<Constraint> otherConstraints = new HashSet<Constraint>();
+
+    private final ConstraintTableSet constraints = new ConstraintsView();
+
+    // Packed (first id, second id) keys of the binary constraints in constraints, one set per kind.
+    // Symmetric constraints are keyed with the smaller id first.
+    private final LongHashSet subtypeKeys = new LongHashSet();
+    private final LongHashSet equalityKeys = new LongHashSet();
+    private final LongHashSet inequalityKeys = new LongHashSet();
+    private final LongHashSet comparableKeys = new LongHashSet();
+
+    private final List<ConstraintListener> listeners = new ArrayList<>();
 
+    // The number of constraints that were dropped because an equivalent constraint was already present
+    private long duplicateCount = 0;
+
+    // The number of constraints that were dropped because they were trivially satisfied
+    private long trivialCount = 0;
+
+    // The number of constraints that were kept although they can never be satisfied
+    private long unsatisfiableCount = 0;
+
+    // Used to evaluate constraints between two constants, null until setQualifierHierarchy is called
+    private QualifierHierarchy qualifierHierarchy;
+
+    /**
+     * @return a read-only view of all constraints added to this manager.  Iterating it creates a new
+     * Constraint object for each constraint stored in the ConstraintTable, the objects are not kept.
+     * contains is answered from the interning keys without materializing anything.
+     */
     public Set<Constraint> getConstraints() {
         return constraints;
     }
 
     public void add(Constraint constraint) {
         if (!ignoreConstraints) {
-            constraints.add(constraint);
+            if (constraint instanceof BinaryConstraint) {
+                final BinaryConstraint binary = (BinaryConstraint) constraint;
+                final LongHashSet keys = keysFor(constraint);
+                if (keys != null && isInternable(binary.getFirst(), binary.getSecond())) {
+                    if (isTrivial(constraint.getClass(), binary.getFirst(), binary.getSecond())) {
+                        trivialCount++;
+                        return;
+                    }
+
+                    final long key = makeKey(binary.getFirst(), binary.getSecond(), !(constraint instanceof SubtypeConstraint));
+                    if (keys.contains(key)) {
+                        duplicateCount++;
+                        return;
+                    }
+                    keys.add(key);
+                    if (isUnsatisfiable(constraint.getClass(), binary.getFirst(), binary.getSecond())) {
+                        unsatisfiableCount++;
+                        logger.warning("Added a constraint that can never be satisfied: " + constraint);
+                    }
+                    if (constraintTable.add(constraint)) {
+                        notifyListeners(constraint);
+                        return;
+                    }
+                }
+            } else if (constraintTable.add(constraint)) {
+                notifyListeners(constraint);
+                return;
+            }
+
+            if (otherConstraints.add(constraint)) {
+                notifyListeners(constraint);
+            } else {
+                duplicateCount++;
+            }
         }
     }
 
@@ -36,6 +141,101 @@ public class ConstraintManager {
         }
     }
 
+    /**
+     * Add subtype &lt;: supertype, only allocating a SubtypeConstraint if an equivalent constraint
+     * has not already been added.
+     */
+    public void addSubtypeConstraint(Slot subtype, Slot supertype) {
+        if (!ignoreConstraints && !isKnown(subtypeKeys, SubtypeConstraint.class, subtype, supertype, false)) {
+            add(new SubtypeConstraint(subtype, supertype));
+        }
+    }
+
+    /**
+     * Add first == second, only allocating an EqualityConstraint if an equivalent constraint
+     * has not already been added.
+     */
+    public void addEqualityConstraint(Slot first, Slot second) {
+        if (!ignoreConstraints && !isKnown(equalityKeys, EqualityConstraint.class, first, second, true)) {
+            add(new EqualityConstraint(first, second));
+        }
+    }
+
+    /**
+     * Add first != second, only allocating an InequalityConstraint if an equivalent constraint
+     * has not already been added.
+     */
+    public void addInequalityConstraint(Slot first, Slot second) {
+        if (!ignoreConstraints && !isKnown(inequalityKeys, InequalityConstraint.class, first, second, true)) {
+            add(new InequalityConstraint(first, second));
+        }
+    }
+
+    /**
+     * Add a constraint that first and second are comparable, only allocating a ComparableConstraint
+     * if an equivalent constraint has not already been added.
+     */
+    public void addComparableConstraint(Slot first, Slot second) {
+        if (!ignoreConstraints && !isKnown(comparableKeys, ComparableConstraint.class, first, second, true)) {
+            add(new ComparableConstraint(first, second));
+        }
+    }
+
+    /**
+     * @return the number of constraints that were not added because an equivalent constraint already existed
+     */
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * @return the number of constraints that were not added because they were trivially satisfied
+     */
+    public long getTrivialCount() {
+        return trivialCount;
+    }
+
+    /**
+     * @return the number of constraints that were added although they can never be satisfied
+     */
+    public long getUnsatisfiableCount() {
+        return unsatisfiableCount;
+    }
+
+    /**
+     * Set the hierarchy used to evaluate subtype and comparable constraints between two constants.
+     */
+    public void setQualifierHierarchy(QualifierHierarchy qualifierHierarchy) {
+        this.qualifierHierarchy = qualifierHierarchy;
+    }
+
+    /**
+     * Register a listener that is notified of every constraint added from now on.
+     */
+    public void addListener(ConstraintListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ConstraintListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notify all listeners that constraint generation has finished.  Called by InferenceMain once
+     * javac has visited every compilation unit.
+     */
+    public void notifyGenerationComplete() {
+        for (final ConstraintListener listener : listeners) {
+            listener.generationComplete();
+        }
+    }
+
+    private void notifyListeners(Constraint constraint) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).constraintAdded(constraint);
+        }
+    }
+
     public void startIgnoringConstraints() {
         this.ignoreConstraints = true;
     }
@@ -44,4 +244,131 @@ public class ConstraintManager {
         this.ignoreConstraints = false;
     }
 
+    /**
+     * Returns true (and records a hit) if the constraint identified by keys/first/second has already been
+     * added or would be discarded as trivial.  If this method returns false, the caller should add
+     * the constraint.
+     */
+    private boolean isKnown(LongHashSet keys, Class<? extends Constraint> kind, Slot first, Slot second,
+                            boolean symmetric) {
+        if (!isInternable(first, second)) {
+            return false;
+        }
+
+        if (isTrivial(kind, first, second)) {
+            trivialCount++;
+            return true;
+        }
+
+        if (keys.contains(makeKey(first, second, symmetric))) {
+            duplicateCount++;
+            return true;
+        }
+        return false;
+    }
+
+    private LongHashSet keysFor(Object constraint) {
+        final Class<?> constraintClass = constraint.getClass();
+        if (constraintClass.equals(SubtypeConstraint.class)) {
+            return subtypeKeys;
+        } else if (constraintClass.equals(EqualityConstraint.class)) {
+            return equalityKeys;
+        } else if (constraintClass.equals(InequalityConstraint.class)) {
+            return inequalityKeys;
+        } else if (constraintClass.equals(ComparableConstraint.class)) {
+            return comparableKeys;
+        }
+        return null;
+    }
+
+    /**
+     * Only constraints between two non-null VariableSlots (which includes ConstantSlots) can be keyed by id.
+     * Null slots are left for the ConstraintNormalizer to report.
+     */
+    private static boolean isInternable(Slot first, Slot second) {
+        return first instanceof VariableSlot && second instanceof VariableSlot;
+    }
+
+    /**
+     * A constraint of class kind is trivial if it holds whatever values the variables take: it relates
+     * a slot to itself, or it relates two constants that satisfy it.  Self loops are kept for inequality
+     * constraints, which would be unsatisfiable, and so are false constraints between constants, see
+     * isUnsatisfiable.
+     */
+    private boolean isTrivial(Class<?> kind, Slot first, Slot second) {
+        if (first instanceof ConstantSlot && second instanceof ConstantSlot) {
+            return Boolean.TRUE.equals(evaluate(kind, first, second));
+        }
+        return isSameSlot(first, second) && kind != InequalityConstraint.class;
+    }
+
+    /**
+     * @return true if a constraint of class kind between first and second can never hold
+     */
+    private boolean isUnsatisfiable(Class<?> kind, Slot first, Slot second) {
+        if (first instanceof ConstantSlot && second instanceof ConstantSlot) {
+            return Boolean.FALSE.equals(evaluate(kind, first, second));
+        }
+        return isSameSlot(first, second) && kind == InequalityConstraint.class;
+    }
+
+    private static boolean isSameSlot(Slot first, Slot second) {
+        return first == second || ((VariableSlot) first).getId() == ((VariableSlot) second).getId();
+    }
+
+    /**
+     * @return whether a constraint of class kind between two constant values holds, or null if that
+     * needs the qualifier hierarchy and none has been set
+     */
+    private Boolean evaluate(Class<?> kind, Slot firstSlot, Slot secondSlot) {
+        final AnnotationMirror first = ((ConstantSlot) firstSlot).getValue();
+        final AnnotationMirror second = ((ConstantSlot) secondSlot).getValue();
+        final boolean same = AnnotationUtils.areSame(first, second);
+        if (kind == InequalityConstraint.class) {
+            return !same;
+        } else if (same) {
+            return true;
+        } else if (kind == EqualityConstraint.class) {
+            return false;
+        } else if (qualifierHierarchy == null) {
+            return null;
+        } else if (kind == SubtypeConstraint.class) {
+            return qualifierHierarchy.isSubtype(first, second);
+        } else {
+            return qualifierHierarchy.isSubtype(first, second) || qualifierHierarchy.isSubtype(second, first);
+        }
+    }
+
+    private static long makeKey(Slot first, Slot second, boolean symmetric) {
+        final int firstId = ((VariableSlot) first).getId();
+        final int secondId = ((VariableSlot) second).getId();
+        if (symmetric && secondId < firstId) {
+            return LongHashSet.pack(secondId, firstId);
+        }
+        return LongHashSet.pack(firstId, secondId);
+    }
+
+    private class ConstraintsView extends ConstraintTableSet {
+
+        ConstraintsView() {
+            super(constraintTable, otherConstraints);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (o instanceof BinaryConstraint) {
+                final BinaryConstraint binary = (BinaryConstraint) o;
+                final LongHashSet keys = keysFor(binary);
+                // Slots are identified by id, as they are when constraints are interned by add
+                if (keys != null && isInternable(binary.getFirst(), binary.getSecond())) {
+                    final boolean symmetric = !(binary instanceof SubtypeConstraint);
+                    return keys.contains(makeKey(binary.getFirst(), binary.getSecond(), symmetric))
+                        || otherConstraints.contains(o);
+                }
+                return otherConstraints.contains(o);
+            }
+            // Preference, combine and existential constraints may be rows of the table
+            return super.contains(o);
+        }
+    }
 }
@@ -16,6 +16,7 @@ import java.util.logging.Logger;
 import checkers.inference.model.BinaryConstraint;
 import checkers.inference.model.ConstantSlot;
 import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
 import checkers.inference.model.ExistentialConstraint;
 import checkers.inference.model.ExistentialVariableSlot;
 import checkers.inference.model.Slot;
@@ -25,6 +26,10 @@ import checkers.inference.model.VariableSlot;
  * This class currently just removes ExistentialVariables from the set of constraints
  * and replaces them with ExistentialConstraints.  In the future, we may want to make
  * this an interface or make it customizable
+ *
+ * If presolve is enabled, variables that must be equal, because of equality constraints or
+ * cycles of subtype constraints, are then merged into a single representative variable,
+ * see getRepresentatives.
  */
 public class ConstraintNormalizer {
 
@@ -34,8 +39,25 @@ public class ConstraintNormalizer {
         boolean accept(Constraint constraint);
     }
 
+    // If true, variables that must be equal are merged before the constraints are handed to the solver
+    private final boolean presolve;
+
+    // If true, presolve also removes subtype constraints that are implied by transitivity
+    private final boolean transitiveReduction;
+
+    private final SlotRepresentatives representatives = new SlotRepresentatives();
+
     public ConstraintNormalizer() {
+        this(false);
+    }
 
+    public ConstraintNormalizer(boolean presolve) {
+        this(presolve, false);
+    }
+
+    public ConstraintNormalizer(boolean presolve, boolean transitiveReduction) {
+        this.presolve = presolve;
+        this.transitiveReduction = transitiveReduction;
     }
 
     public Set<Constraint> normalize(Set<Constraint> constraints) {
@@ -48,9 +70,99 @@ public class ConstraintNormalizer {
         filteredConstraints = filter(filteredConstraints, existentialNormalizer);
         filteredConstraints.addAll(existentialNormalizer.getConstraints());
 
+        if (presolve) {
+            final Set<Integer> potentialVariables = new HashSet<>();
+            for (final Constraint constraint : filteredConstraints) {
+                if (constraint instanceof ExistentialConstraint) {
+                    collectPotentialVariables((ExistentialConstraint) constraint, potentialVariables);
+                }
+            }
+
+            logger.info("-- Normalization : EQUALITY COLLAPSING --");
+            filteredConstraints = collapseEqualities(filteredConstraints, potentialVariables);
+
+            logger.info("-- Normalization : SUBTYPE CYCLE COLLAPSING --");
+            filteredConstraints = condenseSubtypeGraph(filteredConstraints, potentialVariables);
+        }
+
         return filteredConstraints;
     }
 
+    /**
+     * @return the variables merged by the presolve stages of the last call to normalize.  Solutions
+     * to the normalized constraints only contain values for the representatives of these variables.
+     */
+    public SlotRepresentatives getRepresentatives() {
+        return representatives;
+    }
+
+    /**
+     * Merge every pair of variables related by a top-level EqualityConstraint and rewrite the
+     * constraints in terms of the representatives of the merged variables.
+     *
+     * Potential variables of ExistentialConstraints are never merged because solvers decide
+     * whether they exist independently of their value.  Equalities nested in an ExistentialConstraint
+     * only hold conditionally and are therefore not used for merging.
+     */
+    private Set<Constraint> collapseEqualities(Set<Constraint> constraints, Set<Integer> potentialVariables) {
+        final int mergedBefore = representatives.getMergedCount();
+        final int droppedBefore = representatives.getDroppedCount();
+        for (final Constraint constraint : constraints) {
+            if (constraint instanceof EqualityConstraint) {
+                final EqualityConstraint equality = (EqualityConstraint) constraint;
+                if (isMergeable(equality.getFirst(), potentialVariables)
+                        && isMergeable(equality.getSecond(), potentialVariables)) {
+                    representatives.merge((VariableSlot) equality.getFirst(), (VariableSlot) equality.getSecond());
+                }
+            }
+        }
+
+        final Set<Constraint> rewritten = representatives.rewrite(constraints);
+        logger.info(String.format("Equality collapsing merged %d variables and removed %d constraints",
+                representatives.getMergedCount() - mergedBefore,
+                representatives.getDroppedCount() - droppedBefore));
+        return rewritten;
+    }
+
+    /**
+     * Merge the variables in each cycle of subtype constraints and, if enabled, remove subtype
+     * constraints implied by transitivity.  See SubtypeGraphCondenser.
+     */
+    private Set<Constraint> condenseSubtypeGraph(Set<Constraint> constraints, Set<Integer> potentialVariables) {
+        final SubtypeGraphCondenser condenser = new SubtypeGraphCondenser(representatives, potentialVariables);
+        Set<Constraint> condensed = condenser.condense(constraints);
+        logger.info(String.format("Subtype cycle collapsing merged %d variables in %d cycles and removed %d constraints",
+                condenser.getMergedCount(), condenser.getComponentCount(), condenser.getRemovedCount()));
+
+        if (transitiveReduction) {
+            final int removedBefore = condenser.getRemovedCount();
+            condensed = condenser.reduceTransitively(condensed);
+            logger.info(String.format("Transitive reduction removed %d constraints",
+                    condenser.getRemovedCount() - removedBefore));
+        }
+        return condensed;
+    }
+
+    private static boolean isMergeable(Slot slot, Set<Integer> potentialVariables) {
+        return slot instanceof VariableSlot && !slot.isConstant()
+            && ((VariableSlot) slot).getId() >= 0
+            && !potentialVariables.contains(((VariableSlot) slot).getId());
+    }
+
+    private static void collectPotentialVariables(ExistentialConstraint existential, Set<Integer> potentialVariables) {
+        potentialVariables.add(existential.getPotentialVariable().getId());
+        for (final Constraint nested : existential.potentialConstraints()) {
+            if (nested instanceof ExistentialConstraint) {
+                collectPotentialVariables((ExistentialConstraint) nested, potentialVariables);
+            }
+        }
+        for (final Constraint nested : existential.getAlternateConstraints()) {
+            if (nested instanceof ExistentialConstraint) {
+                collectPotentialVariables((ExistentialConstraint) nested, potentialVariables);
+            }
+        }
+    }
+
     private static Set<Constraint> filter(Set<Constraint> constraints, Normalizer normalizer) {
         final Set<Constraint> normalizedConstraints = new HashSet<>(constraints.size());
         for (final Constraint constraint : constraints) {
@@ -7,9 +7,15 @@ import javax.lang.model.element.AnnotationMirror;
 public class DefaultInferenceSolution implements InferenceSolution {
 
     private final Map<Integer, AnnotationMirror> varIdToAnnotation;
+    private final Quality quality;
 
     public DefaultInferenceSolution(Map<Integer, AnnotationMirror> varIdToAnnotation) {
+        this(varIdToAnnotation, Quality.OPTIMAL);
+    }
+
+    public DefaultInferenceSolution(Map<Integer, AnnotationMirror> varIdToAnnotation, Quality quality) {
         this.varIdToAnnotation = varIdToAnnotation;
+        this.quality = quality;
     }
 
     @Override
@@ -21,5 +27,9 @@ public class DefaultInferenceSolution implements InferenceSolution {
     public AnnotationMirror getAnnotation(int variableId) {
         return varIdToAnnotation.get(variableId);
     }
-}
 
+    @Override
+    public Quality getQuality() {
+        return quality;
+    }
+}
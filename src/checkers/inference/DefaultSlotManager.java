@@ -8,9 +8,10 @@ import org.checkerframework.javacutil.ErrorReporter;
 
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -19,6 +20,7 @@ import java.util.TreeSet;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
 
 import checkers.inference.model.CombVariableSlot;
 import checkers.inference.model.ConstantSlot;
@@ -51,8 +53,29 @@ public class DefaultSlotManager implements SlotManager {
     //monotonically increasing id for all VariableSlots (including subtypes of VariableSlots)
     private int nextId = 1;
 
-    //a map of variable id to variable for ALL variables (including subtypes of VariableSlots)
-    private final Map<Integer, VariableSlot> variables;
+    //a table of ALL variables (including subtypes of VariableSlots) indexed by variable id.
+    //Ids are handed out densely by nextId so this table is mostly full; unused ids are null.
+    private VariableSlot[] variables;
+
+    //The following lists are views over the variables table in insertion order.  They are
+    //updated as each variable is added so that getSlots/getVariableSlots/getConstantSlots
+    //never need to scan or copy the table.
+    private final List<Slot> slots;
+    private final List<VariableSlot> variableSlots;
+    private final List<ConstantSlot> constantSlots;
+
+    private final List<Slot> slotsView;
+    private final List<VariableSlot> variableSlotsView;
+    private final List<ConstantSlot> constantSlotsView;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    //the canonical @VarAnnot(id) mirror for each variable id, built lazily by getAnnotation
+    private AnnotationMirror[] varAnnots;
+
+    //resolves AnnotationMirrors we have seen before without re-reading their element values
+    private final IdentitySlotCache slotCache = new IdentitySlotCache(SLOT_CACHE_LOG2_SIZE);
+    private static final int SLOT_CACHE_LOG2_SIZE = 12;
 
     private final Set<Class<? extends Annotation>> realQualifiers;
     private final ProcessingEnvironment processingEnvironment;
@@ -63,7 +86,14 @@ public class DefaultSlotManager implements SlotManager {
         this.processingEnvironment = processingEnvironment;
         // sort the qualifiers so that they are always assigned the same varId
         this.realQualifiers = sortAnnotationClasses(realQualifiers);
-        variables = new LinkedHashMap<>();
+        variables = new VariableSlot[INITIAL_CAPACITY];
+        varAnnots = new AnnotationMirror[INITIAL_CAPACITY];
+        slots = new ArrayList<>(INITIAL_CAPACITY);
+        variableSlots = new ArrayList<>(INITIAL_CAPACITY);
+        constantSlots = new ArrayList<>();
+        slotsView = Collections.unmodifiableList(slots);
+        variableSlotsView = Collections.unmodifiableList(variableSlots);
+        constantSlotsView = Collections.unmodifiableList(constantSlots);
 
         AnnotationBuilder builder = new AnnotationBuilder(processingEnvironment, VarAnnot.class);
         builder.setValue("value", -1 );
@@ -104,9 +134,12 @@ public class DefaultSlotManager implements SlotManager {
 
     /**
      * @inheritDoc
+     *
+     * Synchronized, like addVariable and getVariable, because solvers may create variables concurrently,
+     * e.g. CnfVecIntSerializer when components are solved in parallel by PartitioningSolver.
      */
     @Override
-    public int nextId() {
+    public synchronized int nextId() {
         return nextId++;
     }
 
@@ -114,30 +147,80 @@ public class DefaultSlotManager implements SlotManager {
      * @inheritDoc
      */
     @Override
-    public void addVariable( final VariableSlot slot ) {
-        variables.put( slot.getId(), slot );
+    public synchronized void addVariable( final VariableSlot slot ) {
+        final int id = slot.getId();
+        if (id < 0) {
+            throw new IllegalArgumentException("Variable ids must be non-negative: " + slot);
+        }
+
+        ensureCapacity(id);
+        final VariableSlot previous = variables[id];
+        variables[id] = slot;
+
+        if (previous == null) {
+            addToViews(slot);
+        } else if (previous != slot) {
+            // Replacing a slot is rare, just rebuild the views in id order
+            rebuildViews();
+            slotCache.clear();
+        }
+    }
+
+    private void ensureCapacity(int id) {
+        if (id >= variables.length) {
+            int newLength = variables.length;
+            while (newLength <= id) {
+                newLength = newLength << 1;
+            }
+            variables = Arrays.copyOf(variables, newLength);
+        }
+    }
+
+    private void addToViews(final VariableSlot slot) {
+        slots.add(slot);
+        if (slot.isVariable()) {
+            variableSlots.add(slot);
+        } else {
+            constantSlots.add((ConstantSlot) slot);
+        }
+    }
+
+    private void rebuildViews() {
+        slots.clear();
+        variableSlots.clear();
+        constantSlots.clear();
+        for (final VariableSlot slot : variables) {
+            if (slot != null) {
+                addToViews(slot);
+            }
+        }
     }
 
     /**
      * @inheritDoc
      */
     @Override
-    public VariableSlot getVariable( int id ) {
-        return variables.get(id);
+    public synchronized VariableSlot getVariable( int id ) {
+        if (id < 0 || id >= variables.length) {
+            return null;
+        }
+        return variables[id];
     }
 
     /**
      * @inheritDoc
+     *
+     * The annotation for a given variable id is only built once, every later call returns the same
+     * instance.  Therefore, the annotations returned for two slots with the same id are identical (==).
      */
     @Override
     public AnnotationMirror getAnnotation( final Slot slot ) {
         final Class<?> slotClass = slot.getClass();
 
-        // We need to build the AnntotationBuilder each time because AnnotationBuilders are only allowed to build their annotations once
         if (slotClass.equals(VariableSlot.class) || slotClass.equals(ExistentialVariableSlot.class)
                 || slotClass.equals(RefinementVariableSlot.class) || slotClass.equals(CombVariableSlot.class)
                 || slotClass.equals(ConstantSlot.class)) {
-            return convertVariable((VariableSlot) slot, new AnnotationBuilder(processingEnvironment, VarAnnot.class));
+            return getOrCreateVarAnnot((VariableSlot) slot);
         }
 
         if (slotClass.equals(ConstantSlot.class)) {
@@ -147,6 +230,30 @@ public class DefaultSlotManager implements SlotManager {
         throw new IllegalArgumentException("Slot type unrecognized( " + slot.getClass() + ") Slot=" + slot.toString() );
     }
 
+    private AnnotationMirror getOrCreateVarAnnot(final VariableSlot variable) {
+        final int id = variable.getId();
+        if (id < 0) {
+            // Not a slot handed out by this SlotManager, don't cache it
+            return convertVariable(variable, new AnnotationBuilder(processingEnvironment, VarAnnot.class));
+        }
+
+        if (id >= varAnnots.length) {
+            varAnnots = Arrays.copyOf(varAnnots, Math.max(variables.length, id + 1));
+        }
+
+        AnnotationMirror varAnnot = varAnnots[id];
+        if (varAnnot == null) {
+            // We need a new AnnotationBuilder for each annotation because AnnotationBuilders are only allowed
+            // to build their annotations once
+            varAnnot = convertVariable(variable, new AnnotationBuilder(processingEnvironment, VarAnnot.class));
+            varAnnots[id] = varAnnot;
+            if (getVariable(id) == variable) {
+                slotCache.put(varAnnot, variable);
+            }
+        }
+        return varAnnot;
+    }
+
     /**
      * Converts the given VariableSlot into an annotation using the given AnnotationBuiklder
      * @param variable VariableSlot to convert
@@ -188,21 +295,33 @@ public class DefaultSlotManager implements SlotManager {
     @Override
     public Slot getSlot( final AnnotationMirror annotationMirror ) {
 
-        final int id;
+        final Slot cached = slotCache.get(annotationMirror);
+        if (cached != null) {
+            return cached;
+        }
+
         if (InferenceQualifierHierarchy.isVarAnnot(annotationMirror)) {
-            if (annotationMirror.getElementValues().isEmpty()) {
+            final Map<? extends ExecutableElement, ? extends AnnotationValue> elementValues =
+                    annotationMirror.getElementValues();
+            if (elementValues.isEmpty()) {
                 return null; //TODO: should we instead throw an exception?
-            } else {
-                final AnnotationValue annoValue = annotationMirror.getElementValues().values().iterator().next();
-                id = Integer.valueOf( annoValue.toString() );
             }
 
-            return getVariable( id );
+            final AnnotationValue annoValue = elementValues.values().iterator().next();
+            final VariableSlot variable = getVariable(getVarAnnotId(annoValue));
+            if (variable != null) {
+                slotCache.put(annotationMirror, variable);
+            }
+            return variable;
 
         } else {
 
             if (constantStore != null) {
-                return constantStore.get(AnnotationUtils.annotationName(annotationMirror));
+                final ConstantSlot constant = constantStore.get(AnnotationUtils.annotationName(annotationMirror));
+                if (constant != null) {
+                    slotCache.put(annotationMirror, constant);
+                }
+                return constant;
 
             } else {
                 for (Class<? extends Annotation> realAnno : realQualifiers) {
@@ -221,40 +340,45 @@ public class DefaultSlotManager implements SlotManager {
         return null; // Dead
     }
 
+    /**
+     * VarAnnot values are ints, so the AnnotationValue normally already holds a boxed Integer.
+     * Only fall back to parsing the value's string form if some other representation is used.
+     */
+    private static int getVarAnnotId(final AnnotationValue annoValue) {
+        final Object value = annoValue.getValue();
+        if (value instanceof Integer) {
+            return (Integer) value;
+        }
+        return Integer.valueOf(annoValue.toString());
+    }
+
     /**
      * @inheritDoc
+     *
+     * The returned list is an unmodifiable view that reflects variables added after this call.
      */
     @Override
     public List<Slot> getSlots() {
-        return new ArrayList<Slot>( this.variables.values() );
+        return slotsView;
     }
 
-    // Sometimes, I miss scala.
     /**
      * @inheritDoc
+     *
+     * The returned list is an unmodifiable view that reflects variables added after this call.
      */
     @Override
     public List<VariableSlot> getVariableSlots() {
-        List<VariableSlot> varSlots = new ArrayList<>();
-        for (Slot slot : variables.values()) {
-            if (slot.isVariable()) {
-                varSlots.add((VariableSlot) slot);
-            }
-        }
-        return varSlots;
+        return variableSlotsView;
     }
 
     /**
      * @inheritDoc
+     *
+     * The returned list is an unmodifiable view that reflects variables added after this call.
      */
     @Override
     public List<ConstantSlot> getConstantSlots() {
-        List<ConstantSlot> constants = new ArrayList<>();
-        for (Slot slot : variables.values()) {
-            if (!slot.isVariable()) {
-                constants.add((ConstantSlot) slot);
-            }
-        }
-        return constants;
+        return constantSlotsView;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+package checkers.inference;
+
+import javax.lang.model.element.AnnotationMirror;
+
+/**
+ * A solution to the original constraints, computed from a solution to the constraints in which
+ * merged variables were replaced by their representatives.  Every variable gets the value
+ * inferred for its representative.
+ *
+ * @see ConstraintNormalizer#getRepresentatives()
+ */
+public class ExpandedInferenceSolution implements InferenceSolution {
+
+    private final InferenceSolution reducedSolution;
+    private final SlotRepresentatives representatives;
+
+    public ExpandedInferenceSolution(InferenceSolution reducedSolution, SlotRepresentatives representatives) {
+        this.reducedSolution = reducedSolution;
+        this.representatives = representatives;
+    }
+
+    @Override
+    public boolean doesVariableExist(int varId) {
+        return reducedSolution.doesVariableExist(representativeOf(varId));
+    }
+
+    @Override
+    public AnnotationMirror getAnnotation(int varId) {
+        return reducedSolution.getAnnotation(representativeOf(varId));
+    }
+
+    @Override
+    public Quality getQuality() {
+        return reducedSolution.getQuality();
+    }
+
+    private int representativeOf(int varId) {
+        return varId < 0 ? varId : representatives.find(varId);
+    }
+}
@@ -0,0 +1,63 @@
+package checkers.inference;
+
+import java.util.Arrays;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.model.Slot;
+
+/**
+ * A fixed-size, direct-mapped cache from AnnotationMirrors to the Slots they represent.
+ *
+ * Mirrors are compared by identity.  Since almost every VarAnnot in the inference type factory is
+ * created by SlotManager.getAnnotation, the same mirror instances are resolved over and over again
+ * by InferenceQualifierHierarchy.  A hit in this cache avoids reading the mirror's element values
+ * (which javac copies into a new map on every call) and parsing the id out of the value.
+ *
+ * The cache never grows; a colliding entry simply evicts the previous one.  Lookups and
+ * insertions do not allocate.
+ */
+class IdentitySlotCache {
+
+    private final AnnotationMirror[] keys;
+    private final Slot[] values;
+    private final int mask;
+
+    /**
+     * @param log2Size the cache will hold 2^log2Size entries
+     */
+    public IdentitySlotCache(int log2Size) {
+        final int size = 1 << log2Size;
+        this.keys = new AnnotationMirror[size];
+        this.values = new Slot[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return the slot previously cached for exactly this mirror instance or null if there is none
+     */
+    public Slot get(final AnnotationMirror annotationMirror) {
+        final int index = indexOf(annotationMirror);
+        if (keys[index] == annotationMirror) {
+            return values[index];
+        }
+        return null;
+    }
+
+    public void put(final AnnotationMirror annotationMirror, final Slot slot) {
+        final int index = indexOf(annotationMirror);
+        keys[index] = annotationMirror;
+        values[index] = slot;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+    }
+
+    private int indexOf(final AnnotationMirror annotationMirror) {
+        final int hash = System.identityHashCode(annotationMirror);
+        // identity hashes are poorly distributed in their low bits, mix in the high bits
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -16,10 +16,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import checkers.inference.InferenceOptions.InitStatus;
+import checkers.inference.solver.SolverArgs;
+import checkers.inference.util.JaifMerger;
 
 
 /**
@@ -112,11 +119,21 @@ public class InferenceLauncher {
      *                  because when we roundtrip we may or may not have inserted annotations in place.
      */
     public void typecheck(String [] javaFiles) {
+        if (InferenceOptions.combinedParts == null) {
+            typecheck(InferenceOptions.checker, javaFiles);
+        } else {
+            for (String part : InferenceOptions.combinedParts) {
+                typecheck(InferenceOptions.getChecker(part), javaFiles);
+            }
+        }
+    }
+
+    private void typecheck(String checker, String [] javaFiles) {
         printStep("Typechecking", outStream);
 
         List<String> options = new ArrayList<>(InferenceOptions.javacOptions.size() + javaFiles.length + 2);
         options.add("-processor");
-        options.add(InferenceOptions.checker);
+        options.add(checker);
 
         if (InferenceOptions.debug != null) {
             options.add("-J-Xdebug");
@@ -147,7 +164,160 @@ public class InferenceLauncher {
      * in InferenceOptions but excluding those that do not apply to the inference step
      */
     public void infer() {
+        if (InferenceOptions.combinedParts != null) {
+            inferCombined();
+            return;
+        }
+
         printStep("Inferring", outStream);
+        List<String> argList = getInferArgs(InferenceOptions.checker, InferenceOptions.solver, InferenceOptions.solverArgs,
+                InferenceOptions.jaifFile);
+
+        if (InferenceOptions.printCommands) {
+            outStream.println("Running infer command:");
+            outStream.println(PluginUtil.join(" ", argList));
+        }
+
+        int result = ExecUtil.execute(argList.toArray(new String[argList.size()]), outStream, System.err);
+        outStream.flush();
+        errStream.flush();
+
+        reportStatus("Inference", result, outStream);
+        outStream.flush();
+        exitOnNonZeroStatus(result);
+    }
+
+    /**
+     * Infers each part of a combined typesystem, e.g. the sources and the sinks of "sparta".  Every
+     * part needs its own InferenceMain process, because an InferenceMain run infers a single qualifier
+     * hierarchy, but the processes run at the same time so the whole run takes about as long as its
+     * slowest part.  Each process needs the memory of a normal inference run and gets an equal share of
+     * the threads solver argument, see getPartSolverArgs.  The output of each part is printed once it
+     * has finished and the JAIFs of the parts, which are written to temporary files, are merged into
+     * one JAIF, so that insertJaif inserts the annotations of all parts at once.
+     */
+    private void inferCombined() {
+        final List<String> parts = InferenceOptions.combinedParts;
+        printStep("Inferring " + PluginUtil.join(", ", parts), outStream);
+
+        final String jaifFile = getJaifFilePath(new File("."));
+        final String partSolverArgs = getPartSolverArgs(parts.size());
+        final List<File> partJaifs = new ArrayList<>(parts.size());
+        int failed = 0;
+        try {
+            final List<ByteArrayOutputStream> partOuts = new ArrayList<>(parts.size());
+            final List<ByteArrayOutputStream> partErrs = new ArrayList<>(parts.size());
+            final List<Callable<Integer>> tasks = new ArrayList<>(parts.size());
+            for (String part : parts) {
+                final File partJaif = createPartJaif(part);
+                partJaifs.add(partJaif);
+                final List<String> argList = getInferArgs(InferenceOptions.getChecker(part),
+                        InferenceOptions.getDefaultSolver(part), partSolverArgs, partJaif.getAbsolutePath());
+                if (InferenceOptions.printCommands) {
+                    outStream.println("Running infer command for " + part + ":");
+                    outStream.println(PluginUtil.join(" ", argList));
+                }
+
+                final ByteArrayOutputStream partOut = new ByteArrayOutputStream();
+                final ByteArrayOutputStream partErr = new ByteArrayOutputStream();
+                partOuts.add(partOut);
+                partErrs.add(partErr);
+                tasks.add(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return ExecUtil.execute(argList.toArray(new String[argList.size()]), partOut, partErr);
+                    }
+                });
+            }
+
+            final List<Integer> results = new ArrayList<>(parts.size());
+            final ExecutorService executor = Executors.newFixedThreadPool(parts.size());
+            try {
+                for (Future<Integer> result : executor.invokeAll(tasks)) {
+                    results.add(result.get());
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException("Error running inference of " + PluginUtil.join(", ", parts), e);
+            } finally {
+                executor.shutdown();
+            }
+
+            for (int i = 0; i < parts.size(); i++) {
+                printStep("Inference output of " + parts.get(i), outStream);
+                outStream.print(partOuts.get(i).toString());
+                errStream.print(partErrs.get(i).toString());
+                reportStatus("Inference of " + parts.get(i), results.get(i), outStream);
+                if (results.get(i) != 0) {
+                    failed = results.get(i);
+                }
+            }
+            outStream.flush();
+            errStream.flush();
+
+            if (failed == 0) {
+                try {
+                    JaifMerger.merge(partJaifs, new File(jaifFile));
+                } catch (IOException e) {
+                    throw new RuntimeException("Could not merge " + partJaifs + " into " + jaifFile, e);
+                }
+            }
+        } finally {
+            // exitOnNonZeroStatus exits without running finally blocks, so only exit once the part JAIFs are deleted
+            for (File partJaif : partJaifs) {
+                partJaif.delete();
+            }
+        }
+        exitOnNonZeroStatus(failed);
+
+        reportStatus("Inference", 0, outStream);
+        outStream.flush();
+    }
+
+    /**
+     * @return a new temporary file for the JAIF of part
+     */
+    private static File createPartJaif(String part) {
+        try {
+            return File.createTempFile("inference-" + part + "-", ".jaif");
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create a temporary JAIF for " + part, e);
+        }
+    }
+
+    /**
+     * The processes of a combined inference run at the same time, so instead of each using all
+     * available processors they divide the threads solver argument (by default the number of available
+     * processors) between them.
+     *
+     * @return InferenceOptions.solverArgs with its threads argument replaced by the share of one of partCount parts
+     */
+    private static String getPartSolverArgs(int partCount) {
+        final List<String> solverArgs = new ArrayList<>();
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (InferenceOptions.solverArgs != null) {
+            for (String arg : InferenceOptions.solverArgs.split(",")) {
+                final int index = arg.indexOf('=');
+                if (index > 0 && arg.substring(0, index).trim().equals(SolverArgs.THREADS_KEY)) {
+                    try {
+                        threads = Integer.parseInt(arg.substring(index + 1).trim());
+                    } catch (NumberFormatException e) {
+                        throw new RuntimeException("Solver argument " + SolverArgs.THREADS_KEY
+                                + " must be an integer but was \"" + arg.substring(index + 1) + "\"", e);
+                    }
+                } else if (!arg.trim().isEmpty()) {
+                    solverArgs.add(arg);
+                }
+            }
+        }
+        solverArgs.add(SolverArgs.THREADS_KEY + "=" + Math.max(1, threads / partCount));
+        return PluginUtil.join(",", solverArgs);
+    }
+
+    /**
+     * @return the command that runs InferenceMain with checker, solver and solverArgs and writes its JAIF
+     * to jaifFile, all other options are taken from InferenceOptions
+     */
+    private List<String> getInferArgs(String checker, String solver, String solverArgs, String jaifFile) {
         final String java = PluginUtil.getJavaCommand(System.getProperty("java.home"), outStream);
         List<String> argList = new LinkedList<>();
         argList.add(java);
@@ -165,15 +335,17 @@ public class InferenceLauncher {
                 Arrays.asList(
                         "-ea", "-ea:checkers.inference...",
                         "checkers.inference.InferenceMain",
-                        "--checker", InferenceOptions.checker)
+                        "--checker", checker)
         );
 
-        addIfNotNull("--jaifFile", InferenceOptions.jaifFile, argList);
+        addIfNotNull("--jaifFile", jaifFile, argList);
         addIfNotNull("--logLevel", InferenceOptions.logLevel, argList);
-        addIfNotNull("--solver", InferenceOptions.solver, argList);
-        addIfNotNull("--solverArgs", InferenceOptions.solverArgs, argList);
+        addIfNotNull("--solver", solver, argList);
+        addIfNotNull("--solverArgs", solverArgs, argList);
 
         addIfTrue("--hacks", InferenceOptions.hacks, argList);
+        addIfTrue("--presolve", InferenceOptions.presolve, argList);
+        addIfTrue("--transitiveReduction", InferenceOptions.transitiveReduction, argList);
 
         argList.add("--");
         argList.add(getInferenceCompilationBootclassPath());
@@ -183,19 +355,7 @@ public class InferenceLauncher {
 
         //TODO: NEED TO HANDLE JDK
         argList.addAll(Arrays.asList(InferenceOptions.javaFiles));
-
-        if (InferenceOptions.printCommands) {
-            outStream.println("Running infer command:");
-            outStream.println(PluginUtil.join(" ", argList));
-        }
-
-        int result = ExecUtil.execute(argList.toArray(new String[argList.size()]), outStream, System.err);
-        outStream.flush();
-        errStream.flush();
-
-        reportStatus("Inference", result, outStream);
-        outStream.flush();
-        exitOnNonZeroStatus(result);
+        return argList;
     }
 
     private void removeXmArgs(List<String> argList, int preJavacOptsSize, int postJavacOptsSize) {
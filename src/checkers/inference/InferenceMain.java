@@ -1,6 +1,7 @@
 package checkers.inference;
 
 import org.checkerframework.common.basetype.BaseAnnotatedTypeFactory;
+import org.checkerframework.framework.type.QualifierHierarchy;
 
 import java.io.FileOutputStream;
 import java.io.PrintWriter;
@@ -21,6 +22,8 @@ import javax.lang.model.element.AnnotationMirror;
 import checkers.inference.InferenceOptions.InitStatus;
 import checkers.inference.model.AnnotationLocation;
 import checkers.inference.model.Constraint;
+import checkers.inference.model.ConstraintTableSet;
+import checkers.inference.model.Slot;
 import checkers.inference.model.VariableSlot;
 import checkers.inference.qual.VarAnnot;
 import checkers.inference.util.InferenceUtil;
@@ -93,6 +96,10 @@ public class InferenceMain {
     private ConstraintManager constraintManager;
     private SlotManager slotManager;
 
+    // The solver specified on the command line.  Only created before javac runs if it is a
+    // ConstraintListener, otherwise it is created when the constraints are solved.
+    private InferenceSolver solver;
+
     // Hold the results of solving.
     private InferenceSolution solverResult;
 
@@ -138,8 +145,16 @@ public class InferenceMain {
     public void run() {
         logger.finer("Starting InferenceMain");
 
+        // A solver that listens to constraints as they are generated must exist before javac starts
+        if (InferenceOptions.solver != null && ConstraintListener.class.isAssignableFrom(getSolverClass())) {
+            solver = getSolver();
+            getConstraintManager().addListener((ConstraintListener) solver);
+            logger.fine("Solver " + solver + " will receive constraints as they are generated");
+        }
+
         // Start up javac
         startCheckerFramework();
+        getConstraintManager().notifyGenerationComplete();
         solve();
         writeJaif();
     }
@@ -248,21 +263,71 @@ public class InferenceMain {
     private void solve() {
         //TODO: PERHAPS ALLOW SOLVERS TO DECIDE IF/HOW THEY WANT CONSTRAINTS NORMALIZED
 
-        final ConstraintNormalizer constraintNormalizer = new ConstraintNormalizer();
+        logger.info(String.format("Generated %d constraints (dropped %d duplicate and %d trivial constraints)",
+                constraintManager.getConstraints().size(), constraintManager.getDuplicateCount(),
+                constraintManager.getTrivialCount()));
+        if (constraintManager.getUnsatisfiableCount() > 0) {
+            logger.warning(String.format("%d of the generated constraints can never be satisfied",
+                    constraintManager.getUnsatisfiableCount()));
+        }
+
+        final ConstraintNormalizer constraintNormalizer = new ConstraintNormalizer(InferenceOptions.presolve,
+                                                                                InferenceOptions.transitiveReduction);
         Set<Constraint> normalizedConstraints = constraintNormalizer.normalize(constraintManager.getConstraints());
+        final SlotRepresentatives representatives = constraintNormalizer.getRepresentatives();
 
         // TODO: Support multiple solvers or serialize before or after solving
         // TODO: Prune out unneeded variables
         // TODO: Options to type-check after this.
 
         if (InferenceOptions.solver != null) {
-            InferenceSolver solver = getSolver();
-            this.solverResult = solver.solve(
+            if (solver == null) {
+                solver = getSolver();
+            }
+            final QualifierHierarchy qualifierHierarchy = getRealTypeFactory().getQualifierHierarchy();
+
+            // Merged variables do not occur in the normalized constraints, only their representatives are solved for.
+            // getSlots is a live view and solvers may create slots, so the solver gets a snapshot.
+            List<Slot> slots = representatives.getMergedCount() == 0
+                             ? new ArrayList<>(slotManager.getSlots())
+                             : representatives.filterMerged(slotManager.getSlots());
+
+            // Variables forced by constants are fixed up front, the solver only sees the remaining ones
+            UnitPropagationPresolver unitPropagation = null;
+            if (InferenceOptions.presolve) {
+                unitPropagation = new UnitPropagationPresolver(qualifierHierarchy);
+                normalizedConstraints = unitPropagation.presolve(normalizedConstraints);
+                if (unitPropagation.getFixedCount() > 0) {
+                    slots = unitPropagation.filterFixed(slots);
+                }
+            }
+
+            // Keep the constraints as compact table rows while solving, the normalized objects can be
+            // collected.  Primitive-aware solvers read the rows, all others get objects materialized on the fly.
+            normalizedConstraints = ConstraintTableSet.of(normalizedConstraints);
+
+            InferenceSolution solution = solver.solve(
                     parseSolverArgs(),
-                    slotManager.getSlots(),
+                    slots,
                     normalizedConstraints,
-                    getRealTypeFactory().getQualifierHierarchy(),
+                    qualifierHierarchy,
                     inferenceChecker.getProcessingEnvironment());
+
+            if (solution != null && unitPropagation != null && unitPropagation.getFixedCount() > 0) {
+                solution = new MergedInferenceSolution(unitPropagation.getPartialSolution(), solution);
+            }
+            if (solution != null && representatives.getMergedCount() > 0) {
+                solution = new ExpandedInferenceSolution(solution, representatives);
+            }
+            if (solution != null && solution.getQuality() == InferenceSolution.Quality.UNSOLVED) {
+                logger.severe("Solver found no solution, the constraints are unsatisfiable or solving stopped early."
+                        + " The JAIF only contains the variables that were solved, if any.");
+            } else if (solution != null && solution.getQuality() != InferenceSolution.Quality.OPTIMAL) {
+                // Solvers that stop before optimizing, e.g. SAT solvers outside of anytime mode with
+                // preferences, return FEASIBLE as a matter of course.  Solvers warn when they time out.
+                logger.info("Solver returned a " + solution.getQuality() + " solution");
+            }
+            this.solverResult = solution;
         }
     }
 
@@ -315,6 +380,7 @@ public class InferenceMain {
         if (realTypeFactory == null) {
             realTypeFactory = getRealChecker().createRealTypeFactory();
             logger.finer(String.format("Created real type factory: %s", realTypeFactory));
+            getConstraintManager().setQualifierHierarchy(realTypeFactory.getQualifierHierarchy());
         }
         return realTypeFactory;
     }
@@ -330,8 +396,7 @@ public class InferenceMain {
 
     protected InferenceSolver getSolver() {
         try {
-            InferenceSolver solver = (InferenceSolver) Class.forName(
-                    InferenceOptions.solver, true, ClassLoader.getSystemClassLoader()).newInstance();
+            InferenceSolver solver = (InferenceSolver) getSolverClass().newInstance();
             logger.finer("Created solver: " + solver);
             return solver;
         } catch (Throwable e) {
@@ -341,6 +406,16 @@ public class InferenceMain {
         }
     }
 
+    private Class<?> getSolverClass() {
+        try {
+            return Class.forName(InferenceOptions.solver, true, ClassLoader.getSystemClassLoader());
+        } catch (Throwable e) {
+            logger.log(Level.SEVERE, "Error loading solver class \"" + InferenceOptions.solver + "\".", e);
+            System.exit(5);
+            return null; // Dead code
+        }
+    }
+
     /**
      * Parse solver-args from a comma separated list of
      * key=value pairs into a Map.
@@ -25,7 +25,7 @@ import sparta.checkers.sat.SinkSolver;
 import sparta.checkers.sat.SourceSolver;
 import checkers.inference.InferenceLauncher.Mode;
 import checkers.inference.model.serialization.JsonSerializerSolver;
-import checkers.inference.solver.MaxSat2TypeSolver;
+import checkers.inference.solver.TwoSatTypeSolver;
 
 /**
  * Options for the InferenceLauncher and InferenceMain (though InferenceMain uses only the subset
@@ -55,9 +55,10 @@ public class InferenceOptions {
      * arguments except --mode will have values and the only other option
      * you need to include is a list of source files. <p>
      *
-     * All legal options are listed in InferenceOptions.typesystems.keySet()
+     * All legal options are listed in InferenceOptions.typesystems.keySet() and
+     * InferenceOptions.combinedTypesystems.keySet()
      */
-    @Option("-t Type system whose checker and solver to use")
+    @Option("-t Type system whose checker and solver to use, or a combined type system such as sparta")
     public static String typesystem;
 
     //------------------------------------------------------
@@ -78,6 +79,18 @@ public class InferenceOptions {
     @Option("Args to pass to solver, in the format key1=value,key2=value")
     public static String solverArgs;
 
+    /**
+     * Merge variables that must be equal, because of equality constraints or cycles of subtype
+     * constraints, and fix variables that are forced by constants before solving.  Solvers then see
+     * only one representative per group of merged variables and none of the fixed variables.
+     * Serializing solvers also only see the remaining variables.
+     */
+    @Option("Merge equal variables and fix variables forced by constants before passing the constraints to the solver")
+    public static boolean presolve;
+
+    @Option("With --presolve, also remove subtype constraints that are implied by other subtype constraints")
+    public static boolean transitiveReduction;
+
     /** If jsonFile is specified this will be set to the JsonSerializerSolver */
     @Option("The JSON file to which constraints should be dumped.  This field is mutually exclusive with solver.")
     public static String jsonFile;
@@ -158,9 +171,18 @@ public class InferenceOptions {
 
         if (typesystem != null) {
             TypeSystemSpec spec = typesystems.get(typesystem);
+            if (combinedTypesystems.containsKey(typesystem)) {
+                if (checker != null || solver != null || jsonFile != null) {
+                    errors.add("--checker, --solver and --jsonFile cannot be used with the combined typesystem " + typesystem);
+                }
+                // The parts share their stubs and options, the launcher uses each part's checker and solver
+                combinedParts = combinedTypesystems.get(typesystem);
+                spec = typesystems.get(combinedParts.get(0));
+            }
             if (spec == null) {
                 errors.add("Unrecognized typesystem.  Current typesystems:\n"
-                           + PluginUtil.join("\n", typesystems.keySet()));
+                           + PluginUtil.join("\n", typesystems.keySet()) + "\n"
+                           + PluginUtil.join("\n", combinedTypesystems.keySet()));
             } else {
                 spec.apply();
             }
@@ -228,11 +250,11 @@ public class InferenceOptions {
         final File srcDir = new File(checkersInferenceDir, "src");
         typesystems.put("ostrusted",
                 new TypeSystemSpec(OsTrustedChecker.class,
-                                   MaxSat2TypeSolver.class,
+                                   TwoSatTypeSolver.class,
                                    new File(srcDir, "ostrusted" + File.separator + "jdk.astub")));
         typesystems.put("interning",
                 new TypeSystemSpec(InterningChecker.class,
-                                   MaxSat2TypeSolver.class,
+                                   TwoSatTypeSolver.class,
                                    new File(srcDir, "interning" + File.separator + "jdk.astub")));
         typesystems.put("sparta-source",
                 new TypeSystemSpec(IFlowSourceChecker.class,
@@ -253,6 +275,36 @@ public class InferenceOptions {
 
     }
 
+    /**
+     * Type systems that infer several of the typesystems above in one launcher run, e.g. "sparta" infers
+     * both the sources and the sinks.  The parts are inferred at the same time, each by its own
+     * InferenceMain process, and their JAIFs are merged into jaifFile, see InferenceLauncher.
+     */
+    public static final Map<String, List<String>> combinedTypesystems = new LinkedHashMap<>();
+    static {
+        combinedTypesystems.put("sparta", Arrays.asList("sparta-source", "sparta-sink"));
+        combinedTypesystems.put("sparta-SAT", Arrays.asList("sparta-source-SAT", "sparta-sink-SAT"));
+    }
+
+    /**
+     * The parts of typesystem if it is a combined typesystem, otherwise null.
+     */
+    public static List<String> combinedParts;
+
+    /**
+     * @return the fully-qualified name of the checker of typesystem, one of typesystems.keySet()
+     */
+    public static String getChecker(String typesystem) {
+        return typesystems.get(typesystem).qualifiedChecker.getCanonicalName();
+    }
+
+    /**
+     * @return the fully-qualified name of the default solver of typesystem, one of typesystems.keySet()
+     */
+    public static String getDefaultSolver(String typesystem) {
+        return typesystems.get(typesystem).defaultSolver.getCanonicalName();
+    }
+
     /**
      * Specifies the defaults a particular type system would use to run typechecking/inference.
      */
@@ -20,7 +20,6 @@ import javax.lang.model.element.AnnotationMirror;
 
 import checkers.inference.model.CombVariableSlot;
 import checkers.inference.model.Slot;
-import checkers.inference.model.SubtypeConstraint;
 import checkers.inference.qual.VarAnnot;
 import checkers.inference.util.InferenceUtil;
 
@@ -250,7 +249,7 @@ public class InferenceQualifierHierarchy extends MultiGraphQualifierHierarchy {
 
         final Slot subSlot   = slotMgr.getSlot(subtype);
         final Slot superSlot = slotMgr.getSlot(supertype);
-        constraintMgr.add(new SubtypeConstraint(subSlot, superSlot));
+        constraintMgr.addSubtypeConstraint(subSlot, superSlot);
 
         return true;
     }
@@ -284,8 +283,8 @@ public class InferenceQualifierHierarchy extends MultiGraphQualifierHierarchy {
             final CombVariableSlot combVariableSlot = new CombVariableSlot(null, slotMgr.nextId(), slot1, slot2);
             slotMgr.addVariable(combVariableSlot);
 
-            constraintMgr.add(new SubtypeConstraint(slot1, combVariableSlot));
-            constraintMgr.add(new SubtypeConstraint(slot2, combVariableSlot));
+            constraintMgr.addSubtypeConstraint(slot1, combVariableSlot);
+            constraintMgr.addSubtypeConstraint(slot2, combVariableSlot);
 
             return slotMgr.getAnnotation(combVariableSlot);
         } else {
@@ -18,5 +18,40 @@ public interface InferenceSolution {
      * doesVariableExist(id) is false.
      */
     AnnotationMirror getAnnotation(int varId);
+
+    /**
+     * How good the solution is, e.g. whether the solver finished or was stopped at its deadline.
+     */
+    Quality getQuality();
+
+    /**
+     * The quality of a solution, from best to worst.
+     */
+    enum Quality {
+        /**
+         * The solver solved the constraints completely: if the problem has an objective, e.g.
+         * preferences, the solution is proven optimal.
+         */
+        OPTIMAL,
+
+        /**
+         * The solution satisfies the constraints, but the solver stopped before it could prove the
+         * solution optimal, e.g. because it reached its time limit.  It is the best solution found.
+         */
+        FEASIBLE,
+
+        /**
+         * The solver found no solution, e.g. because the constraints are unsatisfiable or the time
+         * limit was reached before the first solution.  The solution may be empty.
+         */
+        UNSOLVED;
+
+        /**
+         * @return the worse of this and other, i.e. the quality of a solution combined from solutions of both qualities
+         */
+        public Quality worst(Quality other) {
+            return other.ordinal() > ordinal() ? other : this;
+        }
+    }
 }
 
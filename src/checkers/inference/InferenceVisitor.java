@@ -584,10 +584,10 @@ public class InferenceVisitor<Checker extends InferenceChecker,
         logger.fine("InferenceVisitor::commonAssignmentCheck: Equality constraint for qualifiers sub: " + sub + " sup: " + sup);
 
         // Equality between the refvar and the value
-        constraintManager.add(new EqualityConstraint(sup, sub));
+        constraintManager.addEqualityConstraint(sup, sub);
 
         // Refinement variable still needs to be a subtype of its declared type value
-        constraintManager.add(new SubtypeConstraint(sup, ((RefinementVariableSlot) sup).getRefined()));
+        constraintManager.addSubtypeConstraint(sup, ((RefinementVariableSlot) sup).getRefined());
     }
 
     /**
@@ -641,8 +641,8 @@ public class InferenceVisitor<Checker extends InferenceChecker,
                     }
                     addRefinementVariableConstraints(varUpperBoundAtm, valUpperBoundAtm, slotManager, constraintManager);
 
-                    constraintManager.add(new EqualityConstraint(lowerBoundSlot, slotManager.getVariableSlot(valLowerBoundAtm)));
-                    constraintManager.add(new SubtypeConstraint(lowerBoundSlot, upperBoundSlot));
+                    constraintManager.addEqualityConstraint(lowerBoundSlot, slotManager.getVariableSlot(valLowerBoundAtm));
+                    constraintManager.addSubtypeConstraint(lowerBoundSlot, upperBoundSlot);
 
                     inferenceRefinementVariable = true;
                 }
@@ -675,10 +675,10 @@ public class InferenceVisitor<Checker extends InferenceChecker,
                     logger.fine("InferenceVisitor::commonAssignmentCheck: Equality constraint for qualifiers sub: " + sub + " sup: " + sup);
 
                     // Equality between the refvar and the value
-                    constraintManager.add(new EqualityConstraint(sup, sub));
+                    constraintManager.addEqualityConstraint(sup, sub);
 
                     // Refinement variable still needs to be a subtype of its declared type value
-                    constraintManager.add(new SubtypeConstraint(sup, ((RefinementVariableSlot) sup).getRefined()));
+                    constraintManager.addSubtypeConstraint(sup, ((RefinementVariableSlot) sup).getRefined());
                 }
             }
         }
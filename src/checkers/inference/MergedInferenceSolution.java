@@ -0,0 +1,37 @@
+package checkers.inference;
+
+import javax.lang.model.element.AnnotationMirror;
+
+/**
+ * Combines the solutions to two disjoint sets of variables, e.g. the variables fixed by
+ * UnitPropagationPresolver and the solution the solver found for the remaining variables.
+ * Values from the first solution take precedence.
+ */
+public class MergedInferenceSolution implements InferenceSolution {
+
+    private final InferenceSolution first;
+    private final InferenceSolution second;
+
+    public MergedInferenceSolution(InferenceSolution first, InferenceSolution second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public boolean doesVariableExist(int varId) {
+        return first.doesVariableExist(varId) || second.doesVariableExist(varId);
+    }
+
+    @Override
+    public AnnotationMirror getAnnotation(int varId) {
+        if (first.doesVariableExist(varId)) {
+            return first.getAnnotation(varId);
+        }
+        return second.getAnnotation(varId);
+    }
+
+    @Override
+    public Quality getQuality() {
+        return first.getQuality().worst(second.getQuality());
+    }
+}
@@ -33,6 +33,7 @@ public interface SlotManager {
      * Given a slot return an annotation that represents the slot when added to an AnnotatedTypeMirror.
      * If A is the annotation returned by getAnnotation( S ) where is a slot.  Then getSlot( A ) will
      * return S (or an equivalent Slot in case of Constants ).
+     * Implementations may return the same AnnotationMirror instance for every call with a given slot.
      * @param slot A slot to convert to an annotation
      * @return An annotation representing the slot
      */
@@ -55,16 +56,22 @@ public interface SlotManager {
     VariableSlot getVariableSlot(AnnotatedTypeMirror atm);
 
     /**
-     * Return all slots collected by this SlotManager
+     * Return all slots collected by this SlotManager.
+     *
+     * The list may be a live, unmodifiable view that grows as slots are created, so callers that
+     * iterate it while slots may be created, e.g. solvers, must iterate a copy.
      * @return a list of slots
      */
     List<Slot> getSlots();
 
     /**
-     * Return all VariableSlots collected by this SlotManager
+     * Return all VariableSlots collected by this SlotManager, a live view like getSlots
      * @return a lit of VariableSlots
      */
     List<VariableSlot> getVariableSlots();
 
+    /**
+     * Return all ConstantSlots collected by this SlotManager, a live view like getSlots
+     */
     List<ConstantSlot> getConstantSlots();
 }
@@ -0,0 +1,201 @@
+package checkers.inference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import checkers.inference.model.BinaryConstraint;
+import checkers.inference.model.CombineConstraint;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.ExistentialConstraint;
+import checkers.inference.model.InequalityConstraint;
+import checkers.inference.model.PreferenceConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.VariableSlot;
+import checkers.inference.util.IntUnionFind;
+
+/**
+ * Records groups of variables that must have the same value and therefore can be solved as a
+ * single variable.  Each group is represented by one of its variables, the representative.
+ *
+ * The presolve stages of the ConstraintNormalizer merge variables into groups and then use
+ * rewrite to replace every variable in the constraints by its representative.  After solving,
+ * InferenceMain uses find to look up the value of a merged variable from its representative.
+ *
+ * Constants are never merged.
+ */
+public class SlotRepresentatives {
+
+    private final IntUnionFind unionFind = new IntUnionFind();
+
+    // The slots that were merged, indexed by id, so that a representative id can be mapped back to its slot
+    private VariableSlot[] slots = new VariableSlot[64];
+
+    // The number of constraints that rewrite dropped because they became trivial
+    private int droppedCount = 0;
+
+    /**
+     * Merge the groups of first and second.  Neither may be a constant.
+     */
+    public void merge(VariableSlot first, VariableSlot second) {
+        if (first.isConstant() || second.isConstant()) {
+            throw new IllegalArgumentException("Constants cannot be merged: " + first + ", " + second);
+        }
+        record(first);
+        record(second);
+        unionFind.union(first.getId(), second.getId());
+    }
+
+    /**
+     * @return the id of the representative of the variable with the given id.  This is the id
+     * itself for variables that were never merged.
+     */
+    public int find(int id) {
+        return unionFind.find(id);
+    }
+
+    /**
+     * @return true if the variable with the given id was merged into a different representative
+     */
+    public boolean isMerged(int id) {
+        return !unionFind.isRepresentative(id);
+    }
+
+    /**
+     * @return the number of variables that were merged into another variable
+     */
+    public int getMergedCount() {
+        return unionFind.getMergeCount();
+    }
+
+    /**
+     * @return the number of constraints dropped by rewrite so far
+     */
+    public int getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return the slot that represents slot, or slot itself if it was never merged
+     */
+    public Slot representative(Slot slot) {
+        if (!(slot instanceof VariableSlot) || slot.isConstant()) {
+            return slot;
+        }
+
+        final int id = ((VariableSlot) slot).getId();
+        if (id < 0 || id >= slots.length || slots[id] == null) {
+            return slot;
+        }
+        return slots[unionFind.find(id)];
+    }
+
+    /**
+     * @return a copy of slots without the variables that were merged into another variable
+     */
+    public List<Slot> filterMerged(Collection<Slot> slots) {
+        final List<Slot> filtered = new ArrayList<>(slots.size());
+        for (final Slot slot : slots) {
+            if (!(slot instanceof VariableSlot) || slot.isConstant()
+                    || ((VariableSlot) slot).getId() < 0 || !isMerged(((VariableSlot) slot).getId())) {
+                filtered.add(slot);
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Replace every merged variable in constraints by its representative.  Constraints that become
+     * trivial, e.g. an equality between two variables of the same group, are dropped.
+     * @return the rewritten constraints
+     */
+    public Set<Constraint> rewrite(Collection<Constraint> constraints) {
+        final Set<Constraint> rewritten = rewriteAll(constraints);
+        // Rewriting may also make distinct constraints equal
+        droppedCount += constraints.size() - rewritten.size();
+        return rewritten;
+    }
+
+    private Set<Constraint> rewriteAll(Collection<Constraint> constraints) {
+        final Set<Constraint> rewritten = new LinkedHashSet<>(constraints.size());
+        for (final Constraint constraint : constraints) {
+            final Constraint result = rewrite(constraint);
+            if (result != null) {
+                rewritten.add(result);
+            }
+        }
+        return rewritten;
+    }
+
+    /**
+     * @return constraint with its variables replaced by their representatives, constraint itself if
+     * it contains no merged variables or null if the rewritten constraint is trivial
+     */
+    private Constraint rewrite(Constraint constraint) {
+        if (constraint instanceof BinaryConstraint) {
+            final BinaryConstraint binary = (BinaryConstraint) constraint;
+            final Slot first = representative(binary.getFirst());
+            final Slot second = representative(binary.getSecond());
+            if (isSameVariable(first, second) && !(constraint instanceof InequalityConstraint)) {
+                return null;
+            }
+            if (first == binary.getFirst() && second == binary.getSecond()) {
+                return constraint;
+            }
+            return binary.make(first, second);
+
+        } else if (constraint instanceof CombineConstraint) {
+            final CombineConstraint combine = (CombineConstraint) constraint;
+            final Slot target = representative(combine.getTarget());
+            final Slot declared = representative(combine.getDeclared());
+            final Slot result = representative(combine.getResult());
+            if (target == combine.getTarget() && declared == combine.getDeclared() && result == combine.getResult()) {
+                return constraint;
+            }
+            return new CombineConstraint(target, declared, result);
+
+        } else if (constraint instanceof PreferenceConstraint) {
+            final PreferenceConstraint preference = (PreferenceConstraint) constraint;
+            final VariableSlot variable = (VariableSlot) representative(preference.getVariable());
+            if (variable == preference.getVariable()) {
+                return constraint;
+            }
+            return new PreferenceConstraint(variable, preference.getGoal(), preference.getWeight());
+
+        } else if (constraint instanceof ExistentialConstraint) {
+            final ExistentialConstraint existential = (ExistentialConstraint) constraint;
+            return new ExistentialConstraint(existential.getPotentialVariable(),
+                    rewriteNested(existential.potentialConstraints()),
+                    rewriteNested(existential.getAlternateConstraints()));
+        }
+
+        return constraint;
+    }
+
+    private List<Constraint> rewriteNested(List<Constraint> constraints) {
+        return new ArrayList<>(rewriteAll(constraints));
+    }
+
+    private void record(VariableSlot slot) {
+        final int id = slot.getId();
+        if (id < 0) {
+            throw new IllegalArgumentException("Slot has no id: " + slot);
+        }
+        if (id >= slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(slots.length * 2, id + 1));
+        }
+        if (slots[id] == null) {
+            slots[id] = slot;
+        }
+    }
+
+    private static boolean isSameVariable(Slot first, Slot second) {
+        return first == second
+            || (first instanceof VariableSlot && !first.isConstant()
+                && second instanceof VariableSlot && !second.isConstant()
+                && ((VariableSlot) first).getId() == ((VariableSlot) second).getId());
+    }
+}
@@ -1,5 +1,7 @@
 package checkers.inference;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -13,6 +15,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
+import java.util.zip.GZIPInputStream;
 
 import org.json.simple.parser.ParseException;
 
@@ -135,6 +138,18 @@ public class SolutionJaifUpdater {
 
     static String readFile(String path) throws IOException {
         byte[] encoded = Files.readAllBytes(Paths.get(path));
+        if (encoded.length >= 2 && (encoded[0] & 0xff) == 0x1f && (encoded[1] & 0xff) == 0x8b) {
+            // A gzipped constraint file, see JsonSerializerSolver
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(encoded))) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[1 << 16];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                encoded = out.toByteArray();
+            }
+        }
         return new String(encoded, Charset.defaultCharset());
     }
 }
@@ -0,0 +1,262 @@
+package checkers.inference;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import checkers.inference.model.Constraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+import checkers.inference.util.LongHashSet;
+import checkers.inference.util.StronglyConnectedComponents;
+
+/**
+ * Presolve stage that simplifies the graph of SubtypeConstraints between variables.
+ *
+ * Every variable in a cycle of subtype constraints must have the same value, because qualifier
+ * hierarchies are partial orders.  condense finds the strongly connected components of the subtype
+ * graph and merges each component into a single representative using SlotRepresentatives.
+ *
+ * Optionally, reduceTransitively then removes each subtype constraint between variables that is
+ * implied by a longer chain of subtype constraints between variables.  This costs up to
+ * O(variables * constraints) time, so it is only worthwhile for solvers whose running time is
+ * dominated by the number of constraints.
+ *
+ * Only top-level constraints are used as edges, constraints nested in an ExistentialConstraint only
+ * hold conditionally.  Variables in the excluded set, e.g. the potential variables of
+ * ExistentialConstraints, are never merged.
+ */
+public class SubtypeGraphCondenser {
+
+    private final SlotRepresentatives representatives;
+    private final Set<Integer> excluded;
+
+    private int mergedCount = 0;
+    private int componentCount = 0;
+    private int removedCount = 0;
+
+    public SubtypeGraphCondenser(SlotRepresentatives representatives, Set<Integer> excluded) {
+        this.representatives = representatives;
+        this.excluded = excluded;
+    }
+
+    /**
+     * Merge the variables of each cycle in the subtype graph.
+     * @return constraints rewritten onto the representatives of the merged variables
+     */
+    public Set<Constraint> condense(Set<Constraint> constraints) {
+        final Graph graph = new Graph(constraints);
+        final int[] component = graph.stronglyConnectedComponents();
+
+        // The first node seen in each component becomes its representative
+        final int[] firstNode = new int[graph.nodeCount];
+        Arrays.fill(firstNode, -1);
+        final int[] componentSize = new int[graph.nodeCount];
+        for (int node = 0; node < graph.nodeCount; node++) {
+            componentSize[component[node]]++;
+        }
+
+        for (int node = 0; node < graph.nodeCount; node++) {
+            final int comp = component[node];
+            if (componentSize[comp] < 2) {
+                continue;
+            }
+            if (firstNode[comp] == -1) {
+                firstNode[comp] = node;
+                componentCount++;
+            } else {
+                representatives.merge(graph.slots[firstNode[comp]], graph.slots[node]);
+                mergedCount++;
+            }
+        }
+
+        if (mergedCount == 0) {
+            return constraints;
+        }
+
+        final Set<Constraint> rewritten = representatives.rewrite(constraints);
+        removedCount += constraints.size() - rewritten.size();
+        return rewritten;
+    }
+
+    /**
+     * Remove each subtype constraint between variables that is implied by a path of at least two
+     * other subtype constraints between variables.  The subtype graph must be acyclic, i.e.
+     * condense must have been called on constraints first.
+     * @return constraints without the redundant subtype constraints
+     */
+    public Set<Constraint> reduceTransitively(Set<Constraint> constraints) {
+        final Graph graph = new Graph(constraints);
+        final LongHashSet redundant = new LongHashSet();
+
+        // reachable[n] == source + 1 if n is reachable from source by a path of length >= 2
+        final int[] reachable = new int[graph.nodeCount];
+        final int[] stack = new int[graph.nodeCount];
+
+        for (int source = 0; source < graph.nodeCount; source++) {
+            final int start = graph.offsets[source];
+            final int end = graph.offsets[source + 1];
+            if (end - start < 2) {
+                continue;
+            }
+
+            final int mark = source + 1;
+            int top = 0;
+            for (int edge = start; edge < end; edge++) {
+                final int successor = graph.targets[edge];
+                for (int next = graph.offsets[successor]; next < graph.offsets[successor + 1]; next++) {
+                    final int target = graph.targets[next];
+                    if (reachable[target] != mark) {
+                        reachable[target] = mark;
+                        stack[top++] = target;
+                    }
+                }
+            }
+
+            while (top > 0) {
+                final int node = stack[--top];
+                for (int next = graph.offsets[node]; next < graph.offsets[node + 1]; next++) {
+                    final int target = graph.targets[next];
+                    if (reachable[target] != mark) {
+                        reachable[target] = mark;
+                        stack[top++] = target;
+                    }
+                }
+            }
+
+            for (int edge = start; edge < end; edge++) {
+                final int successor = graph.targets[edge];
+                if (reachable[successor] == mark) {
+                    redundant.add(LongHashSet.pack(graph.slots[source].getId(), graph.slots[successor].getId()));
+                }
+            }
+        }
+
+        if (redundant.size() == 0) {
+            return constraints;
+        }
+
+        final Set<Constraint> reduced = new LinkedHashSet<>(constraints.size());
+        for (final Constraint constraint : constraints) {
+            if (constraint instanceof SubtypeConstraint && graph.isEdge((SubtypeConstraint) constraint)) {
+                final SubtypeConstraint subtype = (SubtypeConstraint) constraint;
+                final long key = LongHashSet.pack(((VariableSlot) subtype.getSubtype()).getId(),
+                                                  ((VariableSlot) subtype.getSupertype()).getId());
+                if (redundant.contains(key)) {
+                    continue;
+                }
+            }
+            reduced.add(constraint);
+        }
+
+        removedCount += constraints.size() - reduced.size();
+        return reduced;
+    }
+
+    /**
+     * @return the number of variables that were merged into another variable of their cycle
+     */
+    public int getMergedCount() {
+        return mergedCount;
+    }
+
+    /**
+     * @return the number of cycles (strongly connected components with more than one variable) that were collapsed
+     */
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * @return the number of constraints removed by condense and reduceTransitively
+     */
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    /**
+     * The subtype graph in compressed sparse row form.  Nodes are numbered densely in the order their
+     * variables are first encountered, the edges of node n are targets[offsets[n]] to targets[offsets[n + 1] - 1].
+     */
+    private class Graph {
+        int nodeCount = 0;
+        VariableSlot[] slots = new VariableSlot[64];
+        int[] offsets;
+        int[] targets;
+
+        // Node index + 1 of each variable id, 0 if the variable is not a node
+        private int[] nodeOfId = new int[64];
+
+        Graph(Set<Constraint> constraints) {
+            int edgeCount = 0;
+            int[] sources = new int[64];
+            int[] sinks = new int[64];
+
+            for (final Constraint constraint : constraints) {
+                if (constraint instanceof SubtypeConstraint && isEdge((SubtypeConstraint) constraint)) {
+                    final SubtypeConstraint subtype = (SubtypeConstraint) constraint;
+                    final int source = nodeOf((VariableSlot) subtype.getSubtype());
+                    final int sink = nodeOf((VariableSlot) subtype.getSupertype());
+                    if (source == sink) {
+                        continue;
+                    }
+                    if (edgeCount == sources.length) {
+                        sources = Arrays.copyOf(sources, edgeCount * 2);
+                        sinks = Arrays.copyOf(sinks, edgeCount * 2);
+                    }
+                    sources[edgeCount] = source;
+                    sinks[edgeCount] = sink;
+                    edgeCount++;
+                }
+            }
+
+            offsets = new int[nodeCount + 1];
+            for (int edge = 0; edge < edgeCount; edge++) {
+                offsets[sources[edge] + 1]++;
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                offsets[node + 1] += offsets[node];
+            }
+
+            targets = new int[edgeCount];
+            final int[] fill = Arrays.copyOf(offsets, nodeCount);
+            for (int edge = 0; edge < edgeCount; edge++) {
+                targets[fill[sources[edge]]++] = sinks[edge];
+            }
+        }
+
+        boolean isEdge(SubtypeConstraint constraint) {
+            return isNode(constraint.getSubtype()) && isNode(constraint.getSupertype());
+        }
+
+        private boolean isNode(Slot slot) {
+            return slot instanceof VariableSlot && !slot.isConstant()
+                && ((VariableSlot) slot).getId() >= 0
+                && !excluded.contains(((VariableSlot) slot).getId());
+        }
+
+        private int nodeOf(VariableSlot slot) {
+            final int id = slot.getId();
+            if (id >= nodeOfId.length) {
+                nodeOfId = Arrays.copyOf(nodeOfId, Math.max(nodeOfId.length * 2, id + 1));
+            }
+            if (nodeOfId[id] == 0) {
+                if (nodeCount == slots.length) {
+                    slots = Arrays.copyOf(slots, nodeCount * 2);
+                }
+                slots[nodeCount] = slot;
+                nodeCount++;
+                nodeOfId[id] = nodeCount;
+            }
+            return nodeOfId[id] - 1;
+        }
+
+        /**
+         * @return the component index of each node
+         */
+        int[] stronglyConnectedComponents() {
+            return StronglyConnectedComponents.compute(nodeCount, offsets, targets);
+        }
+    }
+}
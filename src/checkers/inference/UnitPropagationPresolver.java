@@ -0,0 +1,312 @@
+package checkers.inference;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.AnnotationUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.model.BinaryConstraint;
+import checkers.inference.model.ComparableConstraint;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.InequalityConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+
+/**
+ * Solver independent presolve step that fixes the value of variables that are forced by constants.
+ *
+ * A variable is forced to the value of a constant C by:
+ *   var == C
+ *   var &lt;: C   if C is the bottom of its hierarchy
+ *   C &lt;: var   if C is the top of its hierarchy
+ *
+ * Each fixed variable is replaced by its value in every binary constraint it occurs in, which may
+ * in turn force other variables.  Once no more variables can be fixed, constraints between two
+ * constants are satisfied and dropped.  The remaining constraints, the residual, are returned by
+ * presolve and should be handed to the solver; the values of the fixed variables are available
+ * from getPartialSolution and should be merged with the solver's solution.
+ *
+ * Variables that occur in any constraint other than a top-level BinaryConstraint, e.g. in a
+ * CombineConstraint or an ExistentialConstraint, are never fixed.
+ *
+ * If two constants force different values for the same variable, or a constraint between two
+ * constants does not hold, the constraints are unsatisfiable.  In that case presolve leaves the
+ * constraints untouched so that the solver can report the conflict.
+ */
+public class UnitPropagationPresolver {
+
+    public final Logger logger = Logger.getLogger(UnitPropagationPresolver.class.getName());
+
+    private final QualifierHierarchy qualifierHierarchy;
+
+    // The value of each fixed variable, indexed by id
+    private ConstantSlot[] fixed = new ConstantSlot[0];
+    private int fixedCount = 0;
+
+    private int removedCount = 0;
+
+    public UnitPropagationPresolver(QualifierHierarchy qualifierHierarchy) {
+        this.qualifierHierarchy = qualifierHierarchy;
+    }
+
+    /**
+     * Fix every variable forced by a constant.
+     * @return the residual constraints, i.e. constraints that are not yet satisfied by the fixed variables
+     */
+    public Set<Constraint> presolve(Collection<Constraint> constraints) {
+        final Constraint[] all = constraints.toArray(new Constraint[constraints.size()]);
+
+        int maxId = -1;
+        for (final Constraint constraint : all) {
+            for (final Slot slot : constraint.getSlots()) {
+                if (isVariable(slot)) {
+                    maxId = Math.max(maxId, ((VariableSlot) slot).getId());
+                }
+            }
+        }
+
+        // Variables that must not be fixed, and for all others the binary constraints they occur in
+        final boolean[] pinned = new boolean[maxId + 1];
+        final int[] offsets = new int[maxId + 2];
+        for (final Constraint constraint : all) {
+            if (isPropagated(constraint)) {
+                countOccurrence(((BinaryConstraint) constraint).getFirst(), offsets);
+                countOccurrence(((BinaryConstraint) constraint).getSecond(), offsets);
+            } else {
+                for (final Slot slot : constraint.getSlots()) {
+                    if (isVariable(slot)) {
+                        pinned[((VariableSlot) slot).getId()] = true;
+                    }
+                }
+            }
+        }
+        for (int id = 0; id <= maxId; id++) {
+            offsets[id + 1] += offsets[id];
+        }
+        final int[] occurrences = new int[offsets[maxId + 1]];
+        final int[] fill = Arrays.copyOf(offsets, maxId + 1);
+        for (int index = 0; index < all.length; index++) {
+            if (isPropagated(all[index])) {
+                final BinaryConstraint binary = (BinaryConstraint) all[index];
+                if (isVariable(binary.getFirst())) {
+                    occurrences[fill[((VariableSlot) binary.getFirst()).getId()]++] = index;
+                }
+                if (isVariable(binary.getSecond())) {
+                    occurrences[fill[((VariableSlot) binary.getSecond()).getId()]++] = index;
+                }
+            }
+        }
+
+        fixed = new ConstantSlot[maxId + 1];
+        fixedCount = 0;
+
+        // Every constraint is examined once up front and again each time one of its variables is fixed.
+        // Each variable is fixed at most once, so the queue never needs more than this many entries.
+        final int[] worklist = new int[all.length + occurrences.length];
+        int head = 0;
+        int tail = 0;
+        for (int index = 0; index < all.length; index++) {
+            if (isPropagated(all[index])) {
+                worklist[tail++] = index;
+            }
+        }
+
+        while (head < tail) {
+            final BinaryConstraint binary = (BinaryConstraint) all[worklist[head++]];
+            final Slot first = valueOf(binary.getFirst());
+            final Slot second = valueOf(binary.getSecond());
+
+            final int forcedId;
+            final ConstantSlot forcedValue;
+            if (first.isConstant() && second.isConstant()) {
+                if (isSatisfied(binary, (ConstantSlot) first, (ConstantSlot) second) == Boolean.FALSE) {
+                    return conflict(constraints, binary);
+                }
+                continue;
+            } else if (first.isConstant() && forces(binary, (ConstantSlot) first, true)) {
+                forcedId = ((VariableSlot) second).getId();
+                forcedValue = (ConstantSlot) first;
+            } else if (second.isConstant() && forces(binary, (ConstantSlot) second, false)) {
+                forcedId = ((VariableSlot) first).getId();
+                forcedValue = (ConstantSlot) second;
+            } else {
+                continue;
+            }
+
+            if (pinned[forcedId]) {
+                continue;
+            }
+
+            if (fixed[forcedId] != null) {
+                if (!AnnotationUtils.areSame(fixed[forcedId].getValue(), forcedValue.getValue())) {
+                    return conflict(constraints, binary);
+                }
+                continue;
+            }
+
+            fixed[forcedId] = forcedValue;
+            fixedCount++;
+            for (int occurrence = offsets[forcedId]; occurrence < offsets[forcedId + 1]; occurrence++) {
+                worklist[tail++] = occurrences[occurrence];
+            }
+        }
+
+        final Set<Constraint> residual = new LinkedHashSet<>(all.length);
+        for (final Constraint constraint : all) {
+            if (!isPropagated(constraint)) {
+                residual.add(constraint);
+                continue;
+            }
+
+            final BinaryConstraint binary = (BinaryConstraint) constraint;
+            final Slot first = valueOf(binary.getFirst());
+            final Slot second = valueOf(binary.getSecond());
+            if (first == binary.getFirst() && second == binary.getSecond()) {
+                residual.add(constraint);
+            } else if (!first.isConstant() || !second.isConstant()
+                    || isSatisfied(binary, (ConstantSlot) first, (ConstantSlot) second) == null) {
+                residual.add(binary.make(first, second));
+            }
+        }
+
+        removedCount = all.length - residual.size();
+        logger.info(String.format("Unit propagation fixed %d variables and removed %d constraints",
+                fixedCount, removedCount));
+        return residual;
+    }
+
+    /**
+     * @return the values of the variables fixed by the last call to presolve
+     */
+    public InferenceSolution getPartialSolution() {
+        final Map<Integer, AnnotationMirror> values = new HashMap<>(fixedCount * 2);
+        for (int id = 0; id < fixed.length; id++) {
+            if (fixed[id] != null) {
+                values.put(id, fixed[id].getValue());
+            }
+        }
+        return new DefaultInferenceSolution(values);
+    }
+
+    /**
+     * @return a copy of slots without the variables fixed by the last call to presolve
+     */
+    public List<Slot> filterFixed(Collection<Slot> slots) {
+        final List<Slot> filtered = new ArrayList<>(slots.size());
+        for (final Slot slot : slots) {
+            if (!isVariable(slot) || !isFixed(((VariableSlot) slot).getId())) {
+                filtered.add(slot);
+            }
+        }
+        return filtered;
+    }
+
+    public boolean isFixed(int id) {
+        return id >= 0 && id < fixed.length && fixed[id] != null;
+    }
+
+    /**
+     * @return the number of variables fixed by the last call to presolve
+     */
+    public int getFixedCount() {
+        return fixedCount;
+    }
+
+    /**
+     * @return the number of constraints removed by the last call to presolve
+     */
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    private Set<Constraint> conflict(Collection<Constraint> constraints, BinaryConstraint constraint) {
+        logger.warning("Unit propagation found unsatisfiable constraint " + constraint
+                + ", leaving all constraints to the solver");
+        fixed = new ConstantSlot[0];
+        fixedCount = 0;
+        removedCount = 0;
+        return new LinkedHashSet<>(constraints);
+    }
+
+    /**
+     * @return true if constant forces the variable on the other side of constraint to be equal to it
+     */
+    private boolean forces(BinaryConstraint constraint, ConstantSlot constant, boolean constantIsFirst) {
+        if (constraint instanceof EqualityConstraint) {
+            return true;
+        } else if (constraint instanceof SubtypeConstraint) {
+            final AnnotationMirror value = constant.getValue();
+            if (constantIsFirst) {
+                return AnnotationUtils.areSame(value, qualifierHierarchy.getTopAnnotation(value));
+            } else {
+                return AnnotationUtils.areSame(value, qualifierHierarchy.getBottomAnnotation(value));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether a constraint between two constants holds, or null if this is unknown for the constraint's class
+     */
+    private Boolean isSatisfied(BinaryConstraint constraint, ConstantSlot first, ConstantSlot second) {
+        final AnnotationMirror firstValue = first.getValue();
+        final AnnotationMirror secondValue = second.getValue();
+        if (constraint instanceof SubtypeConstraint) {
+            return qualifierHierarchy.isSubtype(firstValue, secondValue);
+        } else if (constraint instanceof EqualityConstraint) {
+            return AnnotationUtils.areSame(firstValue, secondValue);
+        } else if (constraint instanceof InequalityConstraint) {
+            return !AnnotationUtils.areSame(firstValue, secondValue);
+        } else if (constraint instanceof ComparableConstraint) {
+            return qualifierHierarchy.isSubtype(firstValue, secondValue)
+                || qualifierHierarchy.isSubtype(secondValue, firstValue);
+        }
+        return null;
+    }
+
+    /**
+     * @return the value slot was fixed to or slot itself
+     */
+    private Slot valueOf(Slot slot) {
+        if (isVariable(slot)) {
+            final ConstantSlot value = fixed[((VariableSlot) slot).getId()];
+            if (value != null) {
+                return value;
+            }
+        }
+        return slot;
+    }
+
+    private static boolean isPropagated(Constraint constraint) {
+        return constraint instanceof BinaryConstraint
+            && (isVariable(((BinaryConstraint) constraint).getFirst()) || isConstant(((BinaryConstraint) constraint).getFirst()))
+            && (isVariable(((BinaryConstraint) constraint).getSecond()) || isConstant(((BinaryConstraint) constraint).getSecond()));
+    }
+
+    private static void countOccurrence(Slot slot, int[] offsets) {
+        if (isVariable(slot)) {
+            offsets[((VariableSlot) slot).getId() + 1]++;
+        }
+    }
+
+    private static boolean isVariable(Slot slot) {
+        return slot instanceof VariableSlot && !slot.isConstant() && ((VariableSlot) slot).getId() >= 0;
+    }
+
+    private static boolean isConstant(Slot slot) {
+        return slot instanceof ConstantSlot;
+    }
+}
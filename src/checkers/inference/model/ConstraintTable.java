@@ -0,0 +1,390 @@
+package checkers.inference.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact, column-oriented store of Constraints.
+ *
+ * Each constraint is a row spread over parallel int arrays: its kind, the id of its first slot,
+ * the id of its second slot and an extra int whose meaning depends on the kind:
+ * <pre>
+ *   kind          first          second         extra
+ *   SUBTYPE       subtype        supertype      -
+ *   EQUALITY      first          second         -
+ *   INEQUALITY    first          second         -
+ *   COMPARABLE    first          second         -
+ *   PREFERENCE    variable       goal           weight
+ *   COMBINE       target         declared       index into the combine result side table
+ *   EXISTENTIAL   potential var  -              index into the existential side tables
+ * </pre>
+ * The nested constraints of an ExistentialConstraint are stored in their own ConstraintTables.
+ *
+ * Slots are recorded once per id in a slot dictionary, not once per constraint.  Primitive-aware
+ * solvers and serializers can iterate the rows using the getters without creating any objects.
+ * Consumers that need the Constraint object API can use get(int) or asList(), which materialize
+ * an equivalent Constraint on demand.
+ *
+ * Only constraints whose slots are all non-null VariableSlots (including ConstantSlots) with
+ * non-negative ids can be stored, see isStorable.
+ */
+public class ConstraintTable {
+
+    public static final int SUBTYPE = 0;
+    public static final int EQUALITY = 1;
+    public static final int INEQUALITY = 2;
+    public static final int COMPARABLE = 3;
+    public static final int PREFERENCE = 4;
+    public static final int COMBINE = 5;
+    public static final int EXISTENTIAL = 6;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int size = 0;
+    private byte[] kinds;
+    private int[] firsts;
+    private int[] seconds;
+    private int[] extras;
+
+    // Side tables, indexed by the extra column
+    private int[] combineResults = new int[0];
+    private int combineCount = 0;
+    private final List<ConstraintTable> existentialPotentials = new ArrayList<>();
+    private final List<ConstraintTable> existentialAlternates = new ArrayList<>();
+
+    // Every slot referenced by this table (or the tables nested in it), indexed by id
+    private final SlotDictionary slots;
+
+    public ConstraintTable() {
+        this(new SlotDictionary());
+    }
+
+    private ConstraintTable(SlotDictionary slots) {
+        this.slots = slots;
+        kinds = new byte[INITIAL_CAPACITY];
+        firsts = new int[INITIAL_CAPACITY];
+        seconds = new int[INITIAL_CAPACITY];
+        extras = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @return a table containing all of the given constraints
+     * @throws IllegalArgumentException if any of the constraints is not storable
+     */
+    public static ConstraintTable of(Iterable<? extends Constraint> constraints) {
+        final ConstraintTable table = new ConstraintTable();
+        for (final Constraint constraint : constraints) {
+            if (!table.add(constraint)) {
+                throw new IllegalArgumentException("Constraint cannot be stored in a ConstraintTable: " + constraint);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @return true if constraint can be stored in a ConstraintTable
+     */
+    public static boolean isStorable(Constraint constraint) {
+        if (constraint instanceof ExistentialConstraint) {
+            final ExistentialConstraint existential = (ExistentialConstraint) constraint;
+            return isStorableSlot(existential.getPotentialVariable())
+                && areStorable(existential.potentialConstraints())
+                && areStorable(existential.getAlternateConstraints());
+        }
+
+        if (kindOf(constraint) == -1) {
+            return false;
+        }
+
+        for (final Slot slot : constraint.getSlots()) {
+            if (!isStorableSlot(slot)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean areStorable(List<Constraint> constraints) {
+        for (final Constraint constraint : constraints) {
+            if (!isStorable(constraint)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isStorableSlot(Slot slot) {
+        return slot instanceof VariableSlot && ((VariableSlot) slot).getId() >= 0;
+    }
+
+    /**
+     * @return the kind constant for the given constraint or -1 if there is no such kind
+     */
+    public static int kindOf(Constraint constraint) {
+        final Class<?> constraintClass = constraint.getClass();
+        if (constraintClass.equals(SubtypeConstraint.class)) {
+            return SUBTYPE;
+        } else if (constraintClass.equals(EqualityConstraint.class)) {
+            return EQUALITY;
+        } else if (constraintClass.equals(InequalityConstraint.class)) {
+            return INEQUALITY;
+        } else if (constraintClass.equals(ComparableConstraint.class)) {
+            return COMPARABLE;
+        } else if (constraintClass.equals(PreferenceConstraint.class)) {
+            return PREFERENCE;
+        } else if (constraintClass.equals(CombineConstraint.class)) {
+            return COMBINE;
+        } else if (constraintClass.equals(ExistentialConstraint.class)) {
+            return EXISTENTIAL;
+        }
+        return -1;
+    }
+
+    /**
+     * Append constraint to this table.
+     * @return false (and leave the table unchanged) if the constraint is not storable
+     */
+    public boolean add(Constraint constraint) {
+        if (!isStorable(constraint)) {
+            return false;
+        }
+
+        final int kind = kindOf(constraint);
+        switch (kind) {
+            case SUBTYPE:
+            case EQUALITY:
+            case INEQUALITY:
+            case COMPARABLE:
+                final BinaryConstraint binary = (BinaryConstraint) constraint;
+                addRow(kind, slots.record(binary.getFirst()), slots.record(binary.getSecond()), 0);
+                break;
+
+            case PREFERENCE:
+                final PreferenceConstraint preference = (PreferenceConstraint) constraint;
+                addRow(kind, slots.record(preference.getVariable()), slots.record(preference.getGoal()),
+                       preference.getWeight());
+                break;
+
+            case COMBINE:
+                final CombineConstraint combine = (CombineConstraint) constraint;
+                if (combineCount == combineResults.length) {
+                    combineResults = Arrays.copyOf(combineResults, Math.max(8, combineCount * 2));
+                }
+                combineResults[combineCount] = slots.record(combine.getResult());
+                addRow(kind, slots.record(combine.getTarget()), slots.record(combine.getDeclared()), combineCount);
+                combineCount++;
+                break;
+
+            case EXISTENTIAL:
+                final ExistentialConstraint existential = (ExistentialConstraint) constraint;
+                final ConstraintTable potential = new ConstraintTable(slots);
+                final ConstraintTable alternate = new ConstraintTable(slots);
+                for (final Constraint nested : existential.potentialConstraints()) {
+                    potential.add(nested);
+                }
+                for (final Constraint nested : existential.getAlternateConstraints()) {
+                    alternate.add(nested);
+                }
+                potential.trim();
+                alternate.trim();
+                existentialPotentials.add(potential);
+                existentialAlternates.add(alternate);
+                addRow(kind, slots.record(existential.getPotentialVariable()), 0, existentialPotentials.size() - 1);
+                break;
+
+            default:
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Append a row directly.  Both slots must already be known to this table (see getSlot).
+     */
+    public void addBinary(int kind, int firstId, int secondId) {
+        if (kind < SUBTYPE || kind > COMPARABLE) {
+            throw new IllegalArgumentException("Not a binary constraint kind: " + kind);
+        }
+        addRow(kind, firstId, secondId, 0);
+    }
+
+    private void addRow(int kind, int first, int second, int extra) {
+        if (size == kinds.length) {
+            final int newLength = size * 2;
+            kinds = Arrays.copyOf(kinds, newLength);
+            firsts = Arrays.copyOf(firsts, newLength);
+            seconds = Arrays.copyOf(seconds, newLength);
+            extras = Arrays.copyOf(extras, newLength);
+        }
+        kinds[size] = (byte) kind;
+        firsts[size] = first;
+        seconds[size] = second;
+        extras[size] = extra;
+        size++;
+    }
+
+    private void trim() {
+        kinds = Arrays.copyOf(kinds, size);
+        firsts = Arrays.copyOf(firsts, size);
+        seconds = Arrays.copyOf(seconds, size);
+        extras = Arrays.copyOf(extras, size);
+    }
+
+    /**
+     * Record slot in the slot dictionary so that rows added with addBinary can refer to it.
+     * @return the id of slot
+     */
+    public int recordSlot(VariableSlot slot) {
+        return slots.record(slot);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getKind(int row) {
+        checkRow(row);
+        return kinds[row];
+    }
+
+    /**
+     * @return the id of the first slot of the row, see the class comment for its meaning per kind
+     */
+    public int getFirst(int row) {
+        checkRow(row);
+        return firsts[row];
+    }
+
+    /**
+     * @return the id of the second slot of the row, see the class comment for its meaning per kind
+     */
+    public int getSecond(int row) {
+        checkRow(row);
+        return seconds[row];
+    }
+
+    /**
+     * @return the weight of a PREFERENCE row
+     */
+    public int getWeight(int row) {
+        checkKind(row, PREFERENCE);
+        return extras[row];
+    }
+
+    /**
+     * @return the id of the result slot of a COMBINE row
+     */
+    public int getCombineResult(int row) {
+        checkKind(row, COMBINE);
+        return combineResults[extras[row]];
+    }
+
+    /**
+     * @return the constraints to enforce if the potential variable of an EXISTENTIAL row exists
+     */
+    public ConstraintTable getExistentialPotential(int row) {
+        checkKind(row, EXISTENTIAL);
+        return existentialPotentials.get(extras[row]);
+    }
+
+    /**
+     * @return the constraints to enforce if the potential variable of an EXISTENTIAL row does not exist
+     */
+    public ConstraintTable getExistentialAlternate(int row) {
+        checkKind(row, EXISTENTIAL);
+        return existentialAlternates.get(extras[row]);
+    }
+
+    /**
+     * @return the slot with the given id or null if no constraint in this table references it
+     */
+    public VariableSlot getSlot(int id) {
+        return slots.get(id);
+    }
+
+    /**
+     * Materialize the Constraint stored in the given row.  The result is equal to (but generally not
+     * the same object as) the constraint that was added.
+     */
+    public Constraint get(int row) {
+        checkRow(row);
+        final VariableSlot first = slots.get(firsts[row]);
+        switch (kinds[row]) {
+            case SUBTYPE:
+                return new SubtypeConstraint(first, slots.get(seconds[row]));
+            case EQUALITY:
+                return new EqualityConstraint(first, slots.get(seconds[row]));
+            case INEQUALITY:
+                return new InequalityConstraint(first, slots.get(seconds[row]));
+            case COMPARABLE:
+                return new ComparableConstraint(first, slots.get(seconds[row]));
+            case PREFERENCE:
+                return new PreferenceConstraint(first, (ConstantSlot) slots.get(seconds[row]), extras[row]);
+            case COMBINE:
+                return new CombineConstraint(first, slots.get(seconds[row]), slots.get(combineResults[extras[row]]));
+            case EXISTENTIAL:
+                return new ExistentialConstraint(first,
+                        new ArrayList<>(existentialPotentials.get(extras[row]).asList()),
+                        new ArrayList<>(existentialAlternates.get(extras[row]).asList()));
+            default:
+                throw new IllegalStateException("Unknown constraint kind " + kinds[row] + " in row " + row);
+        }
+    }
+
+    /**
+     * @return a read-only list view of this table that materializes each Constraint when it is accessed
+     */
+    public List<Constraint> asList() {
+        return new AbstractList<Constraint>() {
+            @Override
+            public Constraint get(int index) {
+                return ConstraintTable.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " size " + size);
+        }
+    }
+
+    private void checkKind(int row, int kind) {
+        checkRow(row);
+        if (kinds[row] != kind) {
+            throw new IllegalArgumentException("Row " + row + " has kind " + kinds[row] + " not " + kind);
+        }
+    }
+
+    /**
+     * Slots referenced by a table, indexed by id.  Shared between a table and the tables nested in it.
+     */
+    private static class SlotDictionary {
+        private VariableSlot[] slots = new VariableSlot[INITIAL_CAPACITY];
+
+        int record(Slot slot) {
+            final VariableSlot variable = (VariableSlot) slot;
+            final int id = variable.getId();
+            if (id >= slots.length) {
+                slots = Arrays.copyOf(slots, Math.max(slots.length * 2, id + 1));
+            }
+            slots[id] = variable;
+            return id;
+        }
+
+        VariableSlot get(int id) {
+            if (id < 0 || id >= slots.length) {
+                return null;
+            }
+            return slots[id];
+        }
+    }
+}
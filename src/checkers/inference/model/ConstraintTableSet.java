@@ -0,0 +1,91 @@
+package checkers.inference.model;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A read-only set of Constraints that keeps every constraint a ConstraintTable can store as a row of
+ * that table and all other constraints as objects.
+ *
+ * Iterating the set materializes a new Constraint for each row as it is reached, nothing is cached,
+ * so the set only ever holds the compact rows.  Primitive-aware solvers, e.g. PropagationSolver,
+ * check whether the constraints they are given are a ConstraintTableSet and then read getTable
+ * directly without creating any Constraint objects.
+ *
+ * contains materializes the rows one by one, subclasses that can answer it faster should override it.
+ * The rows are iterated before the other constraints.
+ */
+public class ConstraintTableSet extends AbstractSet<Constraint> {
+
+    private final ConstraintTable table;
+    private final Set<Constraint> otherConstraints;
+
+    /**
+     * @param table the constraints stored as rows, which must not be in otherConstraints too
+     * @param otherConstraints the constraints that are not stored in table
+     */
+    public ConstraintTableSet(ConstraintTable table, Set<Constraint> otherConstraints) {
+        this.table = table;
+        this.otherConstraints = otherConstraints;
+    }
+
+    /**
+     * @return a set of the given constraints, which must not contain duplicates, e.g. because they are a Set
+     */
+    public static ConstraintTableSet of(Collection<? extends Constraint> constraints) {
+        final ConstraintTable table = new ConstraintTable();
+        final Set<Constraint> otherConstraints = new LinkedHashSet<>();
+        for (final Constraint constraint : constraints) {
+            if (!table.add(constraint)) {
+                otherConstraints.add(constraint);
+            }
+        }
+        return new ConstraintTableSet(table, otherConstraints);
+    }
+
+    /**
+     * @return the table holding the constraints of this set that could be stored as rows
+     */
+    public ConstraintTable getTable() {
+        return table;
+    }
+
+    /**
+     * @return the constraints of this set that are not stored in getTable
+     */
+    public Set<Constraint> getOtherConstraints() {
+        return Collections.unmodifiableSet(otherConstraints);
+    }
+
+    @Override
+    public Iterator<Constraint> iterator() {
+        final Iterator<Constraint> otherIterator = otherConstraints.iterator();
+        return new Iterator<Constraint>() {
+            private int row = 0;
+
+            @Override
+            public boolean hasNext() {
+                return row < table.size() || otherIterator.hasNext();
+            }
+
+            @Override
+            public Constraint next() {
+                return row < table.size() ? table.get(row++) : otherIterator.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return table.size() + otherConstraints.size();
+    }
+}
@@ -0,0 +1,60 @@
+package checkers.inference.model.serialization;
+
+import java.util.Arrays;
+
+import org.sat4j.core.VecInt;
+
+/**
+ * An append-only list of CNF clauses stored in two primitive arrays, the literals of all clauses
+ * back to back and the end offset of each clause.  Uses a fraction of the memory of a List of
+ * VecInts, so a large clause set can be built once and shared by several solvers, e.g. sparta's
+ * PermissionSolvers.
+ *
+ * Once built, a ClauseBuffer may be read by several threads at once.
+ */
+public final class ClauseBuffer {
+
+    private int[] literals = new int[256];
+    private int[] ends = new int[64];
+    private int clauseCount = 0;
+    private int literalCount = 0;
+
+    /**
+     * Append clause, empty clauses are ignored like convertAll does.
+     */
+    public void add(VecInt clause) {
+        if (clause.size() == 0) {
+            return;
+        }
+        if (literalCount + clause.size() > literals.length) {
+            literals = Arrays.copyOf(literals, Math.max(literals.length * 2, literalCount + clause.size()));
+        }
+        if (clauseCount == ends.length) {
+            ends = Arrays.copyOf(ends, clauseCount * 2);
+        }
+        for (int i = 0; i < clause.size(); i++) {
+            literals[literalCount++] = clause.get(i);
+        }
+        ends[clauseCount++] = literalCount;
+    }
+
+    /**
+     * Copy the literals of the clause at index into reuse.
+     * @return reuse
+     */
+    public VecInt get(int index, VecInt reuse) {
+        reuse.clear();
+        for (int literal = index == 0 ? 0 : ends[index - 1]; literal < ends[index]; literal++) {
+            reuse.push(literals[literal]);
+        }
+        return reuse;
+    }
+
+    public int size() {
+        return clauseCount;
+    }
+
+    public int getLiteralCount() {
+        return literalCount;
+    }
+}
@@ -24,6 +24,7 @@ import checkers.inference.InferenceSolver;
 import checkers.inference.SlotManager;
 import checkers.inference.model.ConstantSlot;
 import checkers.inference.model.Constraint;
+import checkers.inference.model.PreferenceConstraint;
 import checkers.inference.model.Slot;
 
 /**
@@ -79,6 +80,10 @@ public class CnfSerializerSolver implements InferenceSolver {
             writer.newLine();
 
             for (Constraint constraint : constraints) {
+                if (constraint instanceof PreferenceConstraint) {
+                    // Preferences are soft clauses, which plain DIMACS CNF cannot express
+                    continue;
+                }
                 final VecInt[] clauses = constraint.serialize(serializer);
                 for (VecInt clause : clauses) {
                     writer.write(makeClause(clause));
@@ -252,15 +252,51 @@ public abstract class CnfVecIntSerializer implements Serializer<VecInt[], VecInt
         return emptyClauses;
     }
 
+    /**
+     * A preference is the unit clause that holds when the variable equals the goal.  It should only
+     * ever be added to a solver as a soft clause weighted by getWeight(), see convertAll(constraints,
+     * hardClauses, softClauses, softWeights).
+     */
     @Override
     public VecInt[] serialize(PreferenceConstraint preferenceConstraint) {
-        throw new UnsupportedOperationException("APPLY WEIGHTING FOR WEIGHTED MAX-SAT");
+        final int id = preferenceConstraint.getVariable().getId();
+        return asVecArray(isTop(preferenceConstraint.getGoal()) ? -id : id);
     }
 
+    /**
+     * Convert constraints to clauses that must all hold.  Use the overload that separates soft
+     * clauses if constraints may contain PreferenceConstraints.
+     */
     public List<VecInt> convertAll(Iterable<Constraint> constraints) {
         return convertAll(constraints, new LinkedList<VecInt>());
     }
 
+    /**
+     * Convert constraints, separating the clauses that must hold from the clauses that should hold.
+     * Only top-level PreferenceConstraints are soft, every other constraint is a well-formedness
+     * constraint whose clauses are hard.
+     * @param hardClauses receives the clauses that must hold
+     * @param softClauses receives the clause of each preference
+     * @param softWeights receives the weight of each clause in softClauses, in the same order
+     */
+    public void convertAll(Iterable<Constraint> constraints, List<VecInt> hardClauses,
+                           List<VecInt> softClauses, List<Integer> softWeights) {
+        for (Constraint constraint : constraints) {
+            if (constraint instanceof PreferenceConstraint) {
+                for (VecInt res : constraint.serialize(this)) {
+                    softClauses.add(res);
+                    softWeights.add(((PreferenceConstraint) constraint).getWeight());
+                }
+            } else {
+                for (VecInt res : constraint.serialize(this)) {
+                    if (res.size() != 0) {
+                        hardClauses.add(res);
+                    }
+                }
+            }
+        }
+    }
+
     public List<VecInt> convertAll(Iterable<Constraint> constraints, List<VecInt> results) {
         for (Constraint constraint : constraints) {
             for (VecInt res : constraint.serialize(this)) {
@@ -1,5 +1,7 @@
 package checkers.inference.model.serialization;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Collection;
 import java.util.Map;
 
@@ -7,6 +9,7 @@ import javax.lang.model.element.AnnotationMirror;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
 
 import checkers.inference.model.CombVariableSlot;
 import checkers.inference.model.CombineConstraint;
@@ -173,18 +176,69 @@ public class JsonSerializer implements Serializer<String, JSONObject> {
         return result;
     }
 
+    /**
+     * Write the document generateConstraintFile creates to writer without building it in memory.  Each
+     * variable and constraint is converted to its JSONObject and written straight away, so only the
+     * object being written, e.g. one enabled_check with its nested constraints, is held at a time.
+     * Variables and constraints are written one per line.
+     */
+    public void writeConstraintFile(Writer writer) throws IOException {
+        writer.write("{\n  ");
+        writeKey(VERSION_KEY, writer);
+        JSONValue.writeJSONString(VERSION, writer);
+
+        if (solutions != null && solutions.size() > 0) {
+            writer.write(",\n  ");
+            writeKey(VARIABLES_KEY, writer);
+            writer.write("{");
+            boolean first = true;
+            for (Map.Entry<Integer, AnnotationMirror> entry: solutions.entrySet()) {
+                writer.write(first ? "\n    " : ",\n    ");
+                first = false;
+                writeKey(VAR_PREFIX + entry.getKey(), writer);
+                generateVariable(entry.getValue()).writeJSONString(writer);
+            }
+            writer.write("\n  }");
+        }
+
+        writer.write(",\n  ");
+        writeKey(CONSTRAINTS_KEY, writer);
+        writer.write("[");
+        boolean first = true;
+        for (Constraint constraint : constraints) {
+            JSONObject constraintObj = constraint.serialize(this);
+            if (constraintObj != null) {
+                writer.write(first ? "\n    " : ",\n    ");
+                first = false;
+                constraintObj.writeJSONString(writer);
+            }
+        }
+        writer.write("\n  ]\n}\n");
+    }
+
+    private static void writeKey(String key, Writer writer) throws IOException {
+        writer.write('"');
+        writer.write(JSONValue.escape(key));
+        writer.write("\": ");
+    }
+
     @SuppressWarnings("unchecked")
     protected JSONObject generateVariablesSection() {
         JSONObject variables = new JSONObject();
         for (Map.Entry<Integer, AnnotationMirror> entry: solutions.entrySet()) {
-            JSONObject variable = new JSONObject();
-            variable.put(VARIABLES_VALUE_KEY, getConstantString(entry.getValue()));
-            variables.put(VAR_PREFIX + entry.getKey(), variable);
+            variables.put(VAR_PREFIX + entry.getKey(), generateVariable(entry.getValue()));
         }
 
         return variables;
     }
 
+    @SuppressWarnings("unchecked")
+    protected JSONObject generateVariable(AnnotationMirror value) {
+        JSONObject variable = new JSONObject();
+        variable.put(VARIABLES_VALUE_KEY, getConstantString(value));
+        return variable;
+    }
+
     protected JSONArray constraintsToJsonArray(final Collection<Constraint> constraints) {
         JSONArray jsonConstraints = new JSONArray();
         for (Constraint constraint : constraints) {
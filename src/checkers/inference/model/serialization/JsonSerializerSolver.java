@@ -2,26 +2,36 @@ package checkers.inference.model.serialization;
 
 import org.checkerframework.framework.type.QualifierHierarchy;
 
-import java.io.FileNotFoundException;
+import java.io.BufferedWriter;
 import java.io.FileOutputStream;
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-
 import checkers.inference.InferenceSolution;
 import checkers.inference.InferenceSolver;
 import checkers.inference.model.Constraint;
 import checkers.inference.model.Slot;
+import checkers.inference.solver.SolverArgs;
 
 /**
  * InferenceSolver that serializes constraints to a file in JSON format.
  *
+ * The file is written while the constraints are serialized, see JsonSerializer.writeConstraintFile,
+ * so writing it needs little memory beyond the constraints themselves.
+ *
+ * Solver arguments:
+ *   constraint-file  the file to write, default ./constraints.json
+ *   gzip             true to gzip the file, default true if constraint-file ends with .gz
+ *
  * @author mcarthur
  *
  */
@@ -30,6 +40,8 @@ public class JsonSerializerSolver implements InferenceSolver {
 
     private static final String FILE_KEY = "constraint-file";
     private static final String DEFAULT_FILE = "./constraints.json";
+    private static final String GZIP_KEY = "gzip";
+    private static final int BUFFER_SIZE = 1 << 16;
     private Map<String, String> configuration;
 
     @Override
@@ -51,15 +63,16 @@ public class JsonSerializerSolver implements InferenceSolver {
     }
 
     protected void printJson(JsonSerializer serializer) {
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        String json = gson.toJson(serializer.generateConstraintFile());
-
         String outFile = configuration.containsKey(FILE_KEY) ?
                 configuration.get(FILE_KEY)
                 : DEFAULT_FILE;
-        try (PrintWriter writer = new PrintWriter(new FileOutputStream(outFile))) {
-            writer.print(json);
-        } catch (FileNotFoundException e) {
+        boolean gzip = SolverArgs.getBoolean(configuration, GZIP_KEY, outFile.endsWith(".gz"));
+
+        try (OutputStream out = new FileOutputStream(outFile);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(
+                     gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out, Charset.defaultCharset()), BUFFER_SIZE)) {
+            serializer.writeConstraintFile(writer);
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
@@ -0,0 +1,203 @@
+package checkers.inference.solver;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.ErrorReporter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import org.sat4j.core.VecInt;
+import org.sat4j.pb.IPBSolver;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.IVecInt;
+import org.sat4j.specs.TimeoutException;
+
+import checkers.inference.DefaultInferenceSolution;
+import checkers.inference.InferenceMain;
+import checkers.inference.InferenceSolution;
+import checkers.inference.InferenceSolution.Quality;
+import checkers.inference.InferenceSolver;
+import checkers.inference.SlotManager;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.serialization.CnfVecIntSerializer;
+
+/**
+ * Solver for type systems with only 2 types (Top/Bottom) that keeps a single SAT4J instance alive
+ * so that the constraints can be re-solved under different assumptions.
+ *
+ * The CNF is the same as MaxSat2TypeSolver's.  The existence variable CnfVecIntSerializer creates
+ * for the potential variable of an ExistentialConstraint is prepended to each of its clauses, so it
+ * already acts as a selector literal: assuming it true enables the potential constraints, assuming
+ * it false enables the alternative constraints.  solve leaves all selectors free and returns the
+ * first model.  Afterwards, solveAssuming asks what-if questions, e.g. "is there a solution in which
+ * variable 12 exists and variable 15 is top", without re-encoding anything.  The SAT4J instance
+ * keeps the clauses it learned in earlier calls, so later queries are usually much cheaper than the
+ * first one.
+ *
+ * A potential variable whose selector is false in the model does not exist, so it is not part of the
+ * returned solution.
+ *
+ * All clauses are hard.  PreferenceConstraints cannot be expressed as assumptions that may be
+ * violated and are ignored, use MaxSat2TypeSolver to optimize them.
+ *
+ * Usage from tooling:
+ *   IncrementalSat2TypeSolver solver = new IncrementalSat2TypeSolver();
+ *   solver.solve(configuration, slots, constraints, qualHierarchy, processingEnvironment);
+ *   InferenceSolution whatIf = solver.solveAssuming(existence, values);
+ *
+ * The solver arguments of SatSolverFactory select the engine, except that sat-anytime has no
+ * effect because nothing is optimized.
+ */
+public class IncrementalSat2TypeSolver implements InferenceSolver {
+
+    public final Logger logger = Logger.getLogger(IncrementalSat2TypeSolver.class.getName());
+
+    private AnnotationMirror top;
+    private AnnotationMirror bottom;
+    private CnfVecIntSerializer serializer;
+
+    // The SAT4J instance shared by all calls, null until solve has been called
+    private IPBSolver solver;
+
+    // The existence variable (selector) of each potential variable
+    private final Map<Integer, Integer> potentialToExistentialIds = new HashMap<>();
+
+    private int queryCount = 0;
+
+    @Override
+    public InferenceSolution solve(
+            Map<String, String> configuration,
+            Collection<Slot> slots,
+            Collection<Constraint> constraints,
+            QualifierHierarchy qualHierarchy,
+            ProcessingEnvironment processingEnvironment) {
+
+        this.top = qualHierarchy.getTopAnnotations().iterator().next();
+        this.bottom = qualHierarchy.getBottomAnnotations().iterator().next();
+
+        final SlotManager slotManager = InferenceMain.getInstance().getSlotManager();
+        this.serializer = new CnfVecIntSerializer(slotManager) {
+            @Override
+            protected boolean isTop(ConstantSlot constantSlot) {
+                return AnnotationUtils.areSame(constantSlot.getValue(), top);
+            }
+        };
+
+        final List<VecInt> hardClauses = new ArrayList<>();
+        final List<VecInt> softClauses = new ArrayList<>();
+        serializer.convertAll(constraints, hardClauses, softClauses, new ArrayList<Integer>());
+        if (!softClauses.isEmpty()) {
+            logger.warning("IncrementalSat2TypeSolver ignores " + softClauses.size() + " preference constraints");
+        }
+
+        for (final Map.Entry<Integer, Integer> entry : serializer.getExistentialToPotentialVar().entrySet()) {
+            potentialToExistentialIds.put(entry.getValue(), entry.getKey());
+        }
+
+        //See MaxSat2TypeSolver, nextId is the largest id that might occur
+        final int totalVars = slotManager.nextId();
+        this.solver = new SatSolverFactory(configuration).newSatSolver();
+        solver.newVar(totalVars);
+        solver.setExpectedNumberOfClauses(hardClauses.size());
+        try {
+            for (final VecInt clause : hardClauses) {
+                solver.addClause(clause);
+            }
+        } catch (ContradictionException e) {
+            // The clauses are trivially unsatisfiable, every query will fail
+            logger.warning("Constraints are unsatisfiable: " + e.getMessage());
+            solver = null;
+            return new DefaultInferenceSolution(new HashMap<Integer, AnnotationMirror>(), Quality.UNSOLVED);
+        }
+
+        return solveAssuming(Collections.<Integer, Boolean>emptyMap(), Collections.<Integer, AnnotationMirror>emptyMap());
+    }
+
+    /**
+     * Re-solve the constraints given to solve under assumptions, reusing the SAT4J instance and the
+     * clauses it has learned.  The assumptions only hold for this call.
+     *
+     * @param existence whether each potential variable in the map exists, i.e. selects the potential
+     *                  or the alternative constraints of its ExistentialConstraint
+     * @param values the value of each variable in the map, top or bottom
+     * @return the solution, UNSOLVED and empty if there is none under the assumptions
+     */
+    public InferenceSolution solveAssuming(Map<Integer, Boolean> existence, Map<Integer, AnnotationMirror> values) {
+        if (solver == null) {
+            if (serializer == null) {
+                ErrorReporter.errorAbort("IncrementalSat2TypeSolver.solve must be called before solveAssuming");
+            }
+            // The clauses themselves are unsatisfiable
+            return new DefaultInferenceSolution(new HashMap<Integer, AnnotationMirror>(), Quality.UNSOLVED);
+        }
+
+        final IVecInt assumptions = new VecInt(existence.size() + values.size());
+        for (final Map.Entry<Integer, Boolean> entry : existence.entrySet()) {
+            final Integer selector = potentialToExistentialIds.get(entry.getKey());
+            if (selector == null) {
+                ErrorReporter.errorAbort("Variable " + entry.getKey() + " is not the potential variable of an ExistentialConstraint");
+            }
+            assumptions.push(entry.getValue() ? selector : -selector);
+        }
+        for (final Map.Entry<Integer, AnnotationMirror> entry : values.entrySet()) {
+            // As in CnfVecIntSerializer a positive literal means bottom
+            final boolean isTop = AnnotationUtils.areSame(entry.getValue(), top);
+            assumptions.push(isTop ? -entry.getKey() : entry.getKey());
+        }
+
+        final long start = System.currentTimeMillis();
+        final Map<Integer, AnnotationMirror> result = new HashMap<>();
+        try {
+            if (!solver.isSatisfiable(assumptions)) {
+                logger.info("No solution under assumptions " + assumptions
+                        + ", conflicting assumptions " + solver.unsatExplanation());
+                return new DefaultInferenceSolution(result, Quality.UNSOLVED);
+            }
+        } catch (TimeoutException e) {
+            logger.warning("SAT query timed out under assumptions " + assumptions);
+            return new DefaultInferenceSolution(result, Quality.UNSOLVED);
+        } finally {
+            queryCount++;
+            logger.info(String.format("Incremental SAT query %d with %d assumptions took %d ms",
+                    queryCount, assumptions.size(), System.currentTimeMillis() - start));
+        }
+
+        // Selectors are not variables of the program, a false selector means its potential variable
+        // does not exist and so is left out of the solution
+        final Map<Integer, Integer> existentialToPotentialIds = serializer.getExistentialToPotentialVar();
+        final List<Integer> missingPotentials = new ArrayList<>();
+        for (int var : solver.model()) {
+            final boolean isTop = var < 0;
+            var = Math.abs(var);
+
+            final Integer potential = existentialToPotentialIds.get(var);
+            if (potential == null) {
+                result.put(var, isTop ? top : bottom);
+            } else if (isTop) {
+                missingPotentials.add(potential);
+            }
+        }
+        for (final Integer potential : missingPotentials) {
+            result.remove(potential);
+        }
+        return new DefaultInferenceSolution(result);
+    }
+
+    /**
+     * @return the number of times the constraints have been solved, including by solve
+     */
+    public int getQueryCount() {
+        return queryCount;
+    }
+}
@@ -0,0 +1,288 @@
+package checkers.inference.solver;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.ErrorReporter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.DefaultInferenceSolution;
+import checkers.inference.InferenceSolution;
+import checkers.inference.InferenceSolution.Quality;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+
+/**
+ * InferenceSolver that propagates bounds through the real qualifier hierarchy instead of only its
+ * top and bottom, see PropagationSolver.
+ *
+ * The hierarchy is encoded as a QualifierLattice and every variable has a lower and an upper bound,
+ * each an int index into the lattice.  Lower bounds start at bottom and upper bounds at top.
+ * Constants tighten the bounds of the variables they constrain, then a worklist iterates to a
+ * fixpoint:
+ *   sub &lt;: sup   raises the lower bound of sup to lub(lower(sup), lower(sub))
+ *               lowers the upper bound of sub to glb(upper(sub), upper(sup))
+ *   a == b      both of the above in both directions
+ *
+ * A bound only ever moves in one direction, so each variable is revisited at most height-of-lattice
+ * times and the solver runs in O(height * constraints) without any SAT solving.
+ *
+ * After the fixpoint, assigning every variable its upper bound (or every variable its lower bound)
+ * satisfies all subtype and equality constraints, unless a variable's lower bound is not a subtype
+ * of its upper bound, which means the constraints are unsatisfiable.  Conflicts are logged and the
+ * chosen bound is still returned, like PropagationSolver does, but the solution is UNSOLVED.
+ *
+ * Only subtype and equality constraints are solved.  Other constraints, e.g. preferences, combine
+ * or existential constraints, are ignored and counted in the log, and since the solution may not
+ * satisfy them it is at best FEASIBLE; use MaxSat2TypeSolver for type systems that need them.
+ *
+ * The QualifierHierarchy is only used, under SolverThreads.FRAMEWORK_LOCK, to build the lattice and
+ * to look up constants, so several instances can solve at the same time.
+ *
+ * Solver arguments:
+ *   bound   upper (default) to infer the greatest solution, lower to infer the least solution
+ *
+ * Usage: --solver checkers.inference.solver.LatticeSolver --solverArgs bound=lower
+ */
+public class LatticeSolver implements ThreadSafeInferenceSolver {
+
+    public static final String BOUND_KEY = "bound";
+
+    public final Logger logger = Logger.getLogger(LatticeSolver.class.getName());
+
+    private QualifierLattice lattice;
+
+    // Bounds of each variable, indexed by id
+    private int[] lower;
+    private int[] upper;
+
+    // Subtype edges between variables, sub -> sup
+    private int[] edgeSubs = new int[16];
+    private int[] edgeSups = new int[16];
+    private int edgeCount = 0;
+
+    private int ignoredCount = 0;
+    private int conflictCount = 0;
+
+    @Override
+    public InferenceSolution solve(
+            Map<String, String> configuration,
+            Collection<Slot> slots,
+            Collection<Constraint> constraints,
+            QualifierHierarchy qualHierarchy,
+            ProcessingEnvironment processingEnvironment) {
+
+        final boolean useLower = useLowerBound(configuration);
+        synchronized (SolverThreads.FRAMEWORK_LOCK) {
+            this.lattice = new QualifierLattice(qualHierarchy);
+        }
+
+        final int maxId = maxId(slots, constraints);
+        lower = new int[maxId + 1];
+        upper = new int[maxId + 1];
+        Arrays.fill(lower, lattice.getBottom());
+        Arrays.fill(upper, lattice.getTop());
+
+        for (final Constraint constraint : constraints) {
+            if (constraint instanceof SubtypeConstraint) {
+                addSubtype(((SubtypeConstraint) constraint).getFirst(), ((SubtypeConstraint) constraint).getSecond());
+            } else if (constraint instanceof EqualityConstraint) {
+                addSubtype(((EqualityConstraint) constraint).getFirst(), ((EqualityConstraint) constraint).getSecond());
+                addSubtype(((EqualityConstraint) constraint).getSecond(), ((EqualityConstraint) constraint).getFirst());
+            } else {
+                ignoredCount++;
+            }
+        }
+
+        final Adjacency supertypesOf = toAdjacency(maxId, edgeSubs, edgeSups);
+        final Adjacency subtypesOf = toAdjacency(maxId, edgeSups, edgeSubs);
+        propagate(lower, lattice.getBottom(), supertypesOf, true);
+        propagate(upper, lattice.getTop(), subtypesOf, false);
+
+        for (int id = 0; id <= maxId; id++) {
+            if (!lattice.isSubtype(lower[id], upper[id])) {
+                conflictCount++;
+            }
+        }
+
+        final int[] values = useLower ? lower : upper;
+        final Map<Integer, AnnotationMirror> result = new HashMap<>();
+        for (final Slot slot : slots) {
+            if (isVariable(slot)) {
+                final int id = ((VariableSlot) slot).getId();
+                result.put(id, lattice.getQualifier(values[id]));
+            }
+        }
+
+        logger.info(String.format("LatticeSolver solved %d variables over %d qualifiers, %d edges, %d ignored constraints",
+                result.size(), lattice.size(), edgeCount, ignoredCount));
+        final Quality quality;
+        if (conflictCount > 0) {
+            logger.warning(String.format("LatticeSolver found %d variables whose lower bound is not below their upper bound, "
+                    + "the constraints are unsatisfiable", conflictCount));
+            quality = Quality.UNSOLVED;
+        } else if (ignoredCount > 0) {
+            quality = Quality.FEASIBLE;
+        } else {
+            quality = Quality.OPTIMAL;
+        }
+
+        return new DefaultInferenceSolution(result, quality);
+    }
+
+    /**
+     * Record sub &lt;: sup, either as an edge between two variables or as a bound on one variable.
+     */
+    private void addSubtype(Slot sub, Slot sup) {
+        if (isVariable(sub) && isVariable(sup)) {
+            addEdge(((VariableSlot) sub).getId(), ((VariableSlot) sup).getId());
+        } else if (sub instanceof ConstantSlot && isVariable(sup)) {
+            final int id = ((VariableSlot) sup).getId();
+            lower[id] = lattice.lub(lower[id], indexOf((ConstantSlot) sub));
+        } else if (isVariable(sub) && sup instanceof ConstantSlot) {
+            final int id = ((VariableSlot) sub).getId();
+            upper[id] = lattice.glb(upper[id], indexOf((ConstantSlot) sup));
+        } else if (sub instanceof ConstantSlot && sup instanceof ConstantSlot) {
+            if (!lattice.isSubtype(indexOf((ConstantSlot) sub), indexOf((ConstantSlot) sup))) {
+                conflictCount++;
+            }
+        } else {
+            ignoredCount++;
+        }
+    }
+
+    private void addEdge(int sub, int sup) {
+        if (edgeCount == edgeSubs.length) {
+            edgeSubs = Arrays.copyOf(edgeSubs, edgeCount * 2);
+            edgeSups = Arrays.copyOf(edgeSups, edgeCount * 2);
+        }
+        edgeSubs[edgeCount] = sub;
+        edgeSups[edgeCount] = sup;
+        edgeCount++;
+    }
+
+    private int indexOf(ConstantSlot constant) {
+        final int index;
+        synchronized (SolverThreads.FRAMEWORK_LOCK) {
+            index = lattice.indexOf(constant.getValue());
+        }
+        if (index == -1) {
+            ErrorReporter.errorAbort("Constant " + constant + " is not a qualifier of the hierarchy being solved");
+        }
+        return index;
+    }
+
+    /**
+     * Iterate to a fixpoint, moving the bound of every successor of a changed variable towards the
+     * changed variable's bound: up with lub when raising lower bounds, down with glb when lowering
+     * upper bounds.
+     * @param bounds the bound of each variable, updated in place
+     * @param initial the value every bound started at, only variables that differ from it need to be propagated
+     */
+    private void propagate(int[] bounds, int initial, Adjacency adjacency, boolean raise) {
+        // Each variable is in the queue at most once, so a ring buffer of all ids suffices
+        final int[] queue = new int[bounds.length];
+        final BitSet queued = new BitSet(bounds.length);
+        int head = 0;
+        int count = 0;
+        for (int id = 0; id < bounds.length; id++) {
+            if (bounds[id] != initial && adjacency.offsets[id] != adjacency.offsets[id + 1]) {
+                queue[count++] = id;
+                queued.set(id);
+            }
+        }
+
+        while (count > 0) {
+            final int id = queue[head];
+            head = (head + 1) % queue.length;
+            count--;
+            queued.clear(id);
+
+            final int bound = bounds[id];
+            for (int edge = adjacency.offsets[id]; edge < adjacency.offsets[id + 1]; edge++) {
+                final int target = adjacency.targets[edge];
+                final int updated = raise ? lattice.lub(bounds[target], bound) : lattice.glb(bounds[target], bound);
+                if (updated != bounds[target]) {
+                    bounds[target] = updated;
+                    if (!queued.get(target)) {
+                        queue[(head + count) % queue.length] = target;
+                        count++;
+                        queued.set(target);
+                    }
+                }
+            }
+        }
+    }
+
+    private Adjacency toAdjacency(int maxId, int[] sources, int[] targets) {
+        final int[] offsets = new int[maxId + 2];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            offsets[sources[edge] + 1]++;
+        }
+        for (int id = 0; id <= maxId; id++) {
+            offsets[id + 1] += offsets[id];
+        }
+        final int[] adjacent = new int[edgeCount];
+        final int[] fill = Arrays.copyOf(offsets, maxId + 1);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            adjacent[fill[sources[edge]]++] = targets[edge];
+        }
+        return new Adjacency(offsets, adjacent);
+    }
+
+    /**
+     * Compressed adjacency lists, the neighbors of id are targets[offsets[id] ... offsets[id + 1]).
+     */
+    private static class Adjacency {
+        final int[] offsets;
+        final int[] targets;
+
+        Adjacency(int[] offsets, int[] targets) {
+            this.offsets = offsets;
+            this.targets = targets;
+        }
+    }
+
+    private static boolean useLowerBound(Map<String, String> configuration) {
+        final String bound = configuration == null ? null : configuration.get(BOUND_KEY);
+        if (bound == null || bound.equals("upper")) {
+            return false;
+        } else if (bound.equals("lower")) {
+            return true;
+        }
+        ErrorReporter.errorAbort("Solver argument " + BOUND_KEY + " must be upper or lower but was \"" + bound + "\"");
+        return false; // Dead code
+    }
+
+    private static int maxId(Collection<Slot> slots, Collection<Constraint> constraints) {
+        int maxId = 0;
+        for (final Slot slot : slots) {
+            if (isVariable(slot)) {
+                maxId = Math.max(maxId, ((VariableSlot) slot).getId());
+            }
+        }
+        for (final Constraint constraint : constraints) {
+            for (final Slot slot : constraint.getSlots()) {
+                if (isVariable(slot)) {
+                    maxId = Math.max(maxId, ((VariableSlot) slot).getId());
+                }
+            }
+        }
+        return maxId;
+    }
+
+    private static boolean isVariable(Slot slot) {
+        return slot instanceof VariableSlot && !slot.isConstant() && ((VariableSlot) slot).getId() >= 0;
+    }
+}
@@ -3,21 +3,24 @@ package checkers.inference.solver;
 import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.javacutil.AnnotationUtils;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Logger;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 
 import org.sat4j.core.VecInt;
 import org.sat4j.maxsat.WeightedMaxSatDecorator;
+import org.sat4j.specs.ContradictionException;
 
 import checkers.inference.DefaultInferenceSolution;
 import checkers.inference.InferenceMain;
 import checkers.inference.InferenceSolution;
-import checkers.inference.InferenceSolver;
+import checkers.inference.InferenceSolution.Quality;
 import checkers.inference.SlotManager;
 import checkers.inference.model.ConstantSlot;
 import checkers.inference.model.Constraint;
@@ -28,8 +31,16 @@ import checkers.inference.model.serialization.CnfVecIntSerializer;
  * This solver is used to convert any constraint set using a type system with only 2 types (Top/Bottom),
  * into a SAT problem.  This SAT problem is then solved by SAT4J and the output is converted back
  * into an InferenceSolution.
+ *
+ * If the hard constraints are unsatisfiable, or solving stops before a model is found, the result
+ * is an empty solution of quality UNSOLVED.
+ *
+ * Each instance has its own serializer and SAT4J solvers, so several instances can solve at the same
+ * time, e.g. the components of a PartitioningSolver.
  */
-public class MaxSat2TypeSolver implements InferenceSolver {
+public class MaxSat2TypeSolver implements ThreadSafeInferenceSolver {
+
+    private static final Logger logger = Logger.getLogger(MaxSat2TypeSolver.class.getName());
 
     // private QualifierHierarchy qualHierarchy;
     private Collection<Constraint> constraints;
@@ -40,6 +51,7 @@ public class MaxSat2TypeSolver implements InferenceSolver {
     private AnnotationMirror bottom;
     private CnfVecIntSerializer serializer;
     private SlotManager slotManager;
+    private SatSolverFactory solverFactory;
 
     @Override
     public InferenceSolution solve(
@@ -53,13 +65,18 @@ public class MaxSat2TypeSolver implements InferenceSolver {
         this.constraints = constraints;
         // this.qualHierarchy = qualHierarchy;
 
-        this.top = qualHierarchy.getTopAnnotations().iterator().next();
-        this.bottom = qualHierarchy.getBottomAnnotations().iterator().next();
+        synchronized (SolverThreads.FRAMEWORK_LOCK) {
+            this.top = qualHierarchy.getTopAnnotations().iterator().next();
+            this.bottom = qualHierarchy.getBottomAnnotations().iterator().next();
+        }
         this.slotManager = InferenceMain.getInstance().getSlotManager();
+        this.solverFactory = new SatSolverFactory(configuration);
         this.serializer = new CnfVecIntSerializer(slotManager) {
             @Override
             protected boolean isTop(ConstantSlot constantSlot) {
-                return AnnotationUtils.areSame(constantSlot.getValue(), top);
+                synchronized (SolverThreads.FRAMEWORK_LOCK) {
+                    return AnnotationUtils.areSame(constantSlot.getValue(), top);
+                }
             }
         };
         // TODO: This needs to be parameterized based on the type system
@@ -71,37 +88,46 @@ public class MaxSat2TypeSolver implements InferenceSolver {
     public InferenceSolution solve() {
         final Map<Integer, AnnotationMirror> result = new HashMap<>();
 
-        final List<VecInt> clauses = serializer.convertAll(constraints);
+        // Only preferences are soft, all other constraints must hold for the result to type check
+        final List<VecInt> hardClauses = new ArrayList<>();
+        final List<VecInt> softClauses = new ArrayList<>();
+        final List<Integer> softWeights = new ArrayList<>();
+        serializer.convertAll(constraints, hardClauses, softClauses, softWeights);
 
         //nextId describes the LARGEST id that might be found in a variable
         //if an exception occurs while creating a variable the id might be incremented
         //but the slot might not actually be recorded.  Therefore, nextId is NOT
         //the number of slots but the maximum you might encounter.
         final int totalVars = slotManager.nextId();
-        final int totalClauses =  clauses.size();
+        final int totalClauses = hardClauses.size() + softClauses.size();
 
-
-        //When .newBoth is called, SAT4J will run two solvers and return the result of the first to halt
-        final WeightedMaxSatDecorator solver = new WeightedMaxSatDecorator(org.sat4j.pb.SolverFactory.newBoth());
+        //The engine, portfolio and timeout are configured by the solver arguments, see SatSolverFactory
+        final WeightedMaxSatDecorator solver = solverFactory.newMaxSatSolver();
 
         solver.newVar(totalVars);
         solver.setExpectedNumberOfClauses(totalClauses);
 
-        //arbitrary timeout selected for no particular reason
-        solver.setTimeoutMs(1000000);
-
         VecInt lastClause = null;
+        Quality quality = Quality.UNSOLVED;
         try {
-            for (VecInt clause : clauses) {
-
+            //Without soft clauses the decorator adds no blocking variables and this is plain SAT
+            for (VecInt clause : hardClauses) {
                 lastClause = clause;
-                solver.addSoftClause(clause);
+                solver.addHardClause(clause);
+            }
+
+            for (int i = 0; i < softClauses.size(); i++) {
+                lastClause = softClauses.get(i);
+                solver.addSoftClause(softWeights.get(i), lastClause);
             }
 
-            //isSatisfiable launches the solvers and waits until one of them finishes
-            if (solver.isSatisfiable()) {
+            //Launches the solvers and waits until one of them finishes, see SatSolverFactory.solve
+            final SatSolverFactory.Result satResult = solverFactory.solve("MaxSat2TypeSolver", solver, !softClauses.isEmpty());
+            quality = satResult.getQuality();
+
+            if (satResult.getModel() != null) {
                 final Map<Integer, Integer> existentialToPotentialIds = serializer.getExistentialToPotentialVar();
-                int[] solution = solver.model();
+                int[] solution = satResult.getModel();
 
                 for (Integer var : solution) {
                     boolean isTop = var < 0;
@@ -120,14 +146,18 @@ public class MaxSat2TypeSolver implements InferenceSolver {
 
                 }
             } else {
-                System.out.println("Not solvable!");
+                logger.warning("No solution found, the result is " + quality);
             }
 
+        } catch (ContradictionException e) {
+            // The hard clauses are trivially unsatisfiable
+            logger.warning("Not solvable, the hard clauses are contradictory at " + lastClause);
+
         } catch(Throwable th) {
            throw new RuntimeException("Error MAX-SAT solving! " + lastClause, th);
         }
 
 
-        return new DefaultInferenceSolution(result);
+        return new DefaultInferenceSolution(result, quality);
     }
 }
\ No newline at end of file
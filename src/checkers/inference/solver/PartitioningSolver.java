@@ -0,0 +1,305 @@
+package checkers.inference.solver;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.ErrorReporter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.InferenceSolution;
+import checkers.inference.InferenceSolver;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.VariableSlot;
+import checkers.inference.util.IntUnionFind;
+
+/**
+ * InferenceSolver that splits the constraints into independent components and solves each
+ * component with a separate instance of another InferenceSolver.
+ *
+ * Two constraints are in the same component if they (transitively) share a variable.  Constants do
+ * not connect constraints.  The solutions are combined into one InferenceSolution that looks up each
+ * variable in its component's solution.
+ *
+ * Components are solved one after the other on the calling thread, each with the full thread budget.
+ * Only if every component solver class implements ThreadSafeInferenceSolver, as MaxSat2TypeSolver,
+ * TwoSatTypeSolver and LatticeSolver do, are the components solved concurrently on a ForkJoinPool.
+ * The budget is then spent on components, so each component solver is passed threads=1.
+ *
+ * Solver arguments:
+ *   component-solver        (required) fully-qualified name of the solver used for each component
+ *   small-component-solver  fully-qualified name of a cheaper solver used for small components,
+ *                           by default component-solver is used for all components
+ *   small-component-size    components with at most this many constraints are small, default 8
+ *   threads                 the number of components solved in parallel, default the number of processors
+ *
+ * All arguments are also passed on to the component solvers, apart from threads when components are
+ * solved concurrently.  A new solver instance is created for each component.
+ *
+ * Variables that occur in no constraint, and constraints between constants only, are solved
+ * together with the first component.
+ *
+ * Usage: --solver checkers.inference.solver.PartitioningSolver
+ *        --solverArgs component-solver=checkers.inference.solver.MaxSat2TypeSolver
+ */
+public class PartitioningSolver implements InferenceSolver {
+
+    public static final String COMPONENT_SOLVER_KEY = "component-solver";
+    public static final String SMALL_COMPONENT_SOLVER_KEY = "small-component-solver";
+    public static final String SMALL_COMPONENT_SIZE_KEY = "small-component-size";
+
+    private static final int DEFAULT_SMALL_COMPONENT_SIZE = 8;
+
+    public final Logger logger = Logger.getLogger(PartitioningSolver.class.getName());
+
+    @Override
+    public InferenceSolution solve(
+            final Map<String, String> configuration,
+            Collection<Slot> slots,
+            Collection<Constraint> constraints,
+            final QualifierHierarchy qualHierarchy,
+            final ProcessingEnvironment processingEnvironment) {
+
+        final Class<? extends InferenceSolver> componentSolver = getSolverClass(configuration, COMPONENT_SOLVER_KEY);
+        if (componentSolver == null) {
+            ErrorReporter.errorAbort("PartitioningSolver requires the solver argument " + COMPONENT_SOLVER_KEY);
+        }
+        Class<? extends InferenceSolver> smallComponentSolver = getSolverClass(configuration, SMALL_COMPONENT_SOLVER_KEY);
+        if (smallComponentSolver == null) {
+            smallComponentSolver = componentSolver;
+        }
+        final int smallComponentSize = SolverArgs.getInt(configuration, SMALL_COMPONENT_SIZE_KEY, DEFAULT_SMALL_COMPONENT_SIZE);
+        final int threads = SolverArgs.getThreads(configuration);
+
+        final int[] componentOfId = new int[maxId(slots, constraints) + 1];
+        final List<Component> components = partition(slots, constraints, componentOfId);
+        logger.info(String.format("Partitioned %d constraints into %d components, the largest has %d constraints",
+                constraints.size(), components.size(),
+                components.isEmpty() ? 0 : components.get(0).constraints.size()));
+
+        final boolean concurrent = threads > 1 && components.size() > 1
+                && ThreadSafeInferenceSolver.class.isAssignableFrom(componentSolver)
+                && ThreadSafeInferenceSolver.class.isAssignableFrom(smallComponentSolver);
+
+        // Concurrent components share the thread budget, so each component solver runs single threaded
+        final Map<String, String> componentConfiguration;
+        if (concurrent) {
+            componentConfiguration = SolverArgs.withThreads(configuration, 1);
+        } else {
+            componentConfiguration = configuration;
+            logger.fine("Solving components sequentially, the component solvers are not thread safe");
+        }
+
+        final List<Callable<InferenceSolution>> tasks = new ArrayList<>(components.size());
+        for (final Component component : components) {
+            final Class<? extends InferenceSolver> solverClass =
+                    component.constraints.size() <= smallComponentSize ? smallComponentSolver : componentSolver;
+            tasks.add(new Callable<InferenceSolution>() {
+                @Override
+                public InferenceSolution call() throws Exception {
+                    return solverClass.newInstance().solve(componentConfiguration, component.slots,
+                            component.constraints, qualHierarchy, processingEnvironment);
+                }
+            });
+        }
+
+        final List<InferenceSolution> results = SolverThreads.invokeAll(tasks, concurrent ? threads : 1, "solving components");
+        final InferenceSolution[] solutions = results.toArray(new InferenceSolution[results.size()]);
+        for (final InferenceSolution solution : solutions) {
+            if (solution == null) {
+                // The component solver does something besides solve
+                return null;
+            }
+        }
+        return new PartitionedSolution(componentOfId, solutions);
+    }
+
+    /**
+     * @param componentOfId filled with the index of the component of each variable id
+     * @return the components of constraints, largest first
+     */
+    private List<Component> partition(Collection<Slot> slots, Collection<Constraint> constraints, int[] componentOfId) {
+        final IntUnionFind unionFind = new IntUnionFind(componentOfId.length - 1);
+
+        for (final Constraint constraint : constraints) {
+            int first = -1;
+            for (final Slot slot : constraint.getSlots()) {
+                if (isVariable(slot)) {
+                    final int id = ((VariableSlot) slot).getId();
+                    if (first == -1) {
+                        first = id;
+                    } else {
+                        unionFind.union(first, id);
+                    }
+                }
+            }
+        }
+
+        // The component of each representative id, null if no constraint contains the representative
+        final Component[] componentOfRoot = new Component[componentOfId.length];
+        final List<Component> components = new ArrayList<>();
+        final List<Constraint> unconnectedConstraints = new ArrayList<>();
+        final List<Slot> unconnectedSlots = new ArrayList<>();
+
+        for (final Constraint constraint : constraints) {
+            final int id = firstVariableId(constraint);
+            if (id == -1) {
+                unconnectedConstraints.add(constraint);
+            } else {
+                final int root = unionFind.find(id);
+                if (componentOfRoot[root] == null) {
+                    componentOfRoot[root] = new Component();
+                    components.add(componentOfRoot[root]);
+                }
+                componentOfRoot[root].constraints.add(constraint);
+            }
+        }
+
+        final List<Slot> constants = new ArrayList<>();
+        for (final Slot slot : slots) {
+            if (!isVariable(slot)) {
+                constants.add(slot);
+                continue;
+            }
+
+            final Component component = componentOfRoot[unionFind.find(((VariableSlot) slot).getId())];
+            if (component == null) {
+                unconnectedSlots.add(slot);
+            } else {
+                component.slots.add(slot);
+            }
+        }
+
+        // Start the largest components first so that they do not end up running alone at the end
+        Collections.sort(components, new Comparator<Component>() {
+            @Override
+            public int compare(Component first, Component second) {
+                return second.constraints.size() - first.constraints.size();
+            }
+        });
+
+        if (components.isEmpty()) {
+            components.add(new Component());
+        }
+        components.get(0).constraints.addAll(unconnectedConstraints);
+        components.get(0).slots.addAll(unconnectedSlots);
+        for (final Component component : components) {
+            component.slots.addAll(constants);
+        }
+
+        for (int i = 0; i < components.size(); i++) {
+            components.get(i).index = i;
+        }
+        // Unconnected variables were added to the first component, which is 0 in componentOfId
+        for (int id = 0; id < componentOfId.length; id++) {
+            final Component component = componentOfRoot[unionFind.find(id)];
+            componentOfId[id] = component == null ? 0 : component.index;
+        }
+        return components;
+    }
+
+    private static int firstVariableId(Constraint constraint) {
+        for (final Slot slot : constraint.getSlots()) {
+            if (isVariable(slot)) {
+                return ((VariableSlot) slot).getId();
+            }
+        }
+        return -1;
+    }
+
+    private static int maxId(Collection<Slot> slots, Collection<Constraint> constraints) {
+        int maxId = 0;
+        for (final Slot slot : slots) {
+            if (isVariable(slot)) {
+                maxId = Math.max(maxId, ((VariableSlot) slot).getId());
+            }
+        }
+        for (final Constraint constraint : constraints) {
+            for (final Slot slot : constraint.getSlots()) {
+                if (isVariable(slot)) {
+                    maxId = Math.max(maxId, ((VariableSlot) slot).getId());
+                }
+            }
+        }
+        return maxId;
+    }
+
+    private static boolean isVariable(Slot slot) {
+        return slot instanceof VariableSlot && !slot.isConstant() && ((VariableSlot) slot).getId() >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends InferenceSolver> getSolverClass(Map<String, String> configuration, String key) {
+        final String className = configuration.get(key);
+        if (className == null) {
+            return null;
+        }
+        try {
+            return (Class<? extends InferenceSolver>) Class.forName(className, true, ClassLoader.getSystemClassLoader());
+        } catch (ClassNotFoundException e) {
+            ErrorReporter.errorAbort("Could not find solver class \"" + className + "\" given for " + key);
+            return null; // Dead code
+        }
+    }
+
+    private static class Component {
+        int index;
+        final List<Slot> slots = new ArrayList<>();
+        final List<Constraint> constraints = new ArrayList<>();
+    }
+
+    /**
+     * Looks up each variable in the solution of the component that contains it.
+     */
+    private static class PartitionedSolution implements InferenceSolution {
+        private final int[] componentOfId;
+        private final InferenceSolution[] solutions;
+
+        PartitionedSolution(int[] componentOfId, InferenceSolution[] solutions) {
+            this.componentOfId = componentOfId;
+            this.solutions = solutions;
+        }
+
+        @Override
+        public boolean doesVariableExist(int varId) {
+            final InferenceSolution solution = solutionFor(varId);
+            return solution != null && solution.doesVariableExist(varId);
+        }
+
+        @Override
+        public AnnotationMirror getAnnotation(int varId) {
+            final InferenceSolution solution = solutionFor(varId);
+            return solution == null ? null : solution.getAnnotation(varId);
+        }
+
+        @Override
+        public Quality getQuality() {
+            Quality quality = Quality.OPTIMAL;
+            for (final InferenceSolution solution : solutions) {
+                quality = quality.worst(solution.getQuality());
+            }
+            return quality;
+        }
+
+        /**
+         * @return the solution of the component of varId, or null if varId was not passed to the
+         * PartitioningSolver, e.g. because a component solver created it while solving
+         */
+        private InferenceSolution solutionFor(int varId) {
+            if (varId >= 0 && varId < componentOfId.length) {
+                return solutions[componentOfId[varId]];
+            }
+            return null;
+        }
+    }
+
+}
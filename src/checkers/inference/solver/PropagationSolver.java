@@ -4,12 +4,15 @@ import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.javacutil.AnnotationUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
@@ -20,15 +23,21 @@ import checkers.inference.InferenceSolution;
 import checkers.inference.InferenceSolver;
 import checkers.inference.model.ConstantSlot;
 import checkers.inference.model.Constraint;
+import checkers.inference.model.ConstraintTable;
+import checkers.inference.model.ConstraintTableSet;
 import checkers.inference.model.EqualityConstraint;
 import checkers.inference.model.ExistentialConstraint;
 import checkers.inference.model.Slot;
 import checkers.inference.model.SubtypeConstraint;
 import checkers.inference.model.VariableSlot;
+import checkers.inference.util.AtomicBitSet;
 
 /**
  * InferenceSolver FloodSolver implementation
  *
+ * Solver arguments:
+ *   threads   the number of threads used to flood large problems, default the number of processors
+ *
  * TODO: Parameters to configure where to push conflicts?
  *
  * @author mcarthur
@@ -44,6 +53,12 @@ public class PropagationSolver implements InferenceSolver {
     private AnnotationMirror top;
     private AnnotationMirror bottom;
 
+    // The number of threads used to flood, see SolverArgs.THREADS_KEY
+    private int threads = 1;
+
+    // Graphs and frontiers smaller than this are flooded by a single thread
+    private static final int PARALLEL_THRESHOLD = 4096;
+
     @Override
     public InferenceSolution solve(
             Map<String, String> configuration,
@@ -54,6 +69,7 @@ public class PropagationSolver implements InferenceSolver {
 
         this.slots = slots;
         this.constraints = constraints;
+        this.threads = SolverArgs.getThreads(configuration);
         // this.qualHierarchy = qualHierarchy;
 
         this.top = qualHierarchy.getTopAnnotations().iterator().next();
@@ -71,8 +87,8 @@ public class PropagationSolver implements InferenceSolver {
      *
      * 2) Find all variables that must be bot (Var <: @BOT or VAR == @BOT)
      *
-     * 3) From constraints, create propagation maps.
-     *  These maps one variable to a list of other variables.
+     * 3) From constraints, create propagation graphs.
+     *  These map one variable to a list of other variables.
      *  If the key variable is a certain annotation the variables in the value list must also be that annotation.
      *  A map is create for subtype propagation and supertype propagation.
      *
@@ -81,9 +97,12 @@ public class PropagationSolver implements InferenceSolver {
      *
      *  If @1 was inferred to be @BOT, then @2 and @3 would also have to be bot.
      *
-     * 4) Propagate the supertype values first
+     * 4) Propagate the supertype values
+     *
+     * 5) Propagate the subtype values
      *
-     * 5) Propagate the subtype values second
+     * Steps 4 and 5 are independent.  If more than one thread may be used and the propagation graphs
+     * are large, they run concurrently and each propagates large frontiers in parallel, see FloodTask.
      *
      * 6) Merge the results to get just one AnnotationMirror for each variable.
      *
@@ -91,18 +110,44 @@ public class PropagationSolver implements InferenceSolver {
      */
     public InferenceSolution solve() {
 
-        Set<VariableSlot> fixedBottom = new HashSet<VariableSlot>();
-        Set<VariableSlot> fixedTop = new HashSet<VariableSlot>();
-        Map<VariableSlot, List<VariableSlot>> superTypePropagation = new HashMap<>();
-        Map<VariableSlot, List<VariableSlot>> subTypePropagation = new HashMap<>();
+        final int maxId = maxId();
+        BitSet fixedBottom = new BitSet(maxId + 1);
+        BitSet fixedTop = new BitSet(maxId + 1);
+        Edges superTypePropagation = new Edges();
+        Edges subTypePropagation = new Edges();
 
         preprocessConstraints(fixedBottom, fixedTop, superTypePropagation, subTypePropagation);
 
-        // Propagate supertype
-        Set<VariableSlot> inferredTop = propagateValues(fixedTop, superTypePropagation);
+        final Adjacency superTypeAdjacency = superTypePropagation.toAdjacency(maxId);
+        final Adjacency subTypeAdjacency = subTypePropagation.toAdjacency(maxId);
 
-        // Propagate subtype
-        Set<VariableSlot> inferredBottom = propagateValues(fixedBottom, subTypePropagation);
+        BitSet inferredTop;
+        BitSet inferredBottom;
+        if (threads > 1
+                && superTypeAdjacency.targets.length + subTypeAdjacency.targets.length >= PARALLEL_THRESHOLD) {
+            final FloodTask topFlood = new FloodTask(fixedTop, superTypeAdjacency);
+            final FloodTask bottomFlood = new FloodTask(fixedBottom, subTypeAdjacency);
+            final ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.invoke(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        invokeAll(topFlood, bottomFlood);
+                    }
+                });
+            } finally {
+                pool.shutdown();
+            }
+            inferredTop = topFlood.getRawResult();
+            inferredBottom = bottomFlood.getRawResult();
+
+        } else {
+            // Propagate supertype
+            inferredTop = propagateValues(fixedTop, superTypeAdjacency);
+
+            // Propagate subtype
+            inferredBottom = propagateValues(fixedBottom, subTypeAdjacency);
+        }
         return mergeResults(fixedBottom, fixedTop, inferredTop, inferredBottom);
     }
 
@@ -116,17 +161,41 @@ public class PropagationSolver implements InferenceSolver {
      *
      * superTypePropagation and subTypePropagation
      *
-     * @param fixedBottom Variables that must be bottom
-     * @param fixedTop Variables that must be top
-     * @param superTypePropagation Map, where if a key is a supertyp, all variables in the value must also be supertype
-     * @param subTypePropagation Map, where if a key is a subtype, all variables in the value must also be subtypes
+     * @param fixedBottom Ids of variables that must be bottom
+     * @param fixedTop Ids of variables that must be top
+     * @param superTypePropagation Edges, where if a source is a supertype, all targets must also be supertype
+     * @param subTypePropagation Edges, where if a source is a subtype, all targets must also be subtypes
      */
-    private void preprocessConstraints(Set<VariableSlot> fixedBottom,
-            Set<VariableSlot> fixedTop,
-            Map<VariableSlot, List<VariableSlot>> superTypePropagation,
-            Map<VariableSlot, List<VariableSlot>> subTypePropagation) {
+    private void preprocessConstraints(BitSet fixedBottom,
+            BitSet fixedTop,
+            Edges superTypePropagation,
+            Edges subTypePropagation) {
 
-        for (Constraint constraint: constraints) {
+        Collection<Constraint> objects = constraints;
+        if (constraints instanceof ConstraintTableSet) {
+            // Read the rows directly instead of materializing a Constraint for each of them
+            final ConstraintTable table = ((ConstraintTableSet) constraints).getTable();
+            for (int row = 0; row < table.size(); row++) {
+                switch (table.getKind(row)) {
+                    case ConstraintTable.SUBTYPE:
+                        preprocessSubtype(table.getSlot(table.getFirst(row)), table.getSlot(table.getSecond(row)),
+                                fixedBottom, fixedTop, superTypePropagation, subTypePropagation);
+                        break;
+                    case ConstraintTable.EQUALITY:
+                        preprocessEquality(table.getSlot(table.getFirst(row)), table.getSlot(table.getSecond(row)),
+                                fixedBottom, fixedTop, superTypePropagation, subTypePropagation);
+                        break;
+                    case ConstraintTable.EXISTENTIAL:
+                        warnExistential();
+                        break;
+                    default:
+                        break;
+                }
+            }
+            objects = ((ConstraintTableSet) constraints).getOtherConstraints();
+        }
+
+        for (Constraint constraint: objects) {
             // Skip constraints that are just constants
             if (!checkContainsVariable(constraint)) {
                 continue;
@@ -134,127 +203,274 @@ public class PropagationSolver implements InferenceSolver {
 
             if (constraint instanceof EqualityConstraint) {
                 EqualityConstraint equality = (EqualityConstraint) constraint;
-                if (equality.getFirst() instanceof ConstantSlot) {
-                    // Equal to a constant forces a constant
-                    AnnotationMirror value = ((ConstantSlot) equality.getFirst()).getValue();
-                    VariableSlot variable = (VariableSlot) equality.getSecond();
-                    if (AnnotationUtils.areSame(value, top)) {
-                        fixedTop.add(variable);
-                    } else {
-                        fixedBottom.add(variable);
-                    }
-                } else if (equality.getSecond() instanceof ConstantSlot) {
-                    // Equal to a constant forces a constant
-                    AnnotationMirror value = ((ConstantSlot) equality.getSecond()).getValue();
-                    VariableSlot variable = (VariableSlot) equality.getFirst();
-                    if (AnnotationUtils.areSame(value, top)) {
-                        fixedTop.add(variable);
-                    } else {
-                        fixedBottom.add(variable);
-                    }
-                } else {
-                    // Variable equality means values of one propagates to values of the other, for both subtype and supertype
-                    addEntryToMap(superTypePropagation, (VariableSlot) equality.getFirst(), (VariableSlot) equality.getSecond(), constraint);
-                    addEntryToMap(superTypePropagation, (VariableSlot) equality.getSecond(), (VariableSlot) equality.getFirst(), constraint);
-                    addEntryToMap(subTypePropagation, (VariableSlot) equality.getFirst(), (VariableSlot) equality.getSecond(), constraint);
-                    addEntryToMap(subTypePropagation, (VariableSlot) equality.getSecond(), (VariableSlot) equality.getFirst(), constraint);
-                }
+                preprocessEquality(equality.getFirst(), equality.getSecond(),
+                        fixedBottom, fixedTop, superTypePropagation, subTypePropagation);
             } else if (constraint instanceof SubtypeConstraint) {
                 SubtypeConstraint subtype = (SubtypeConstraint) constraint;
-                if (subtype.getSubtype() instanceof ConstantSlot) {
-                    // If top is a subtype of a variable, that variable is top
-                    AnnotationMirror value = ((ConstantSlot) subtype.getSubtype()).getValue();
-                    VariableSlot variable = (VariableSlot) subtype.getSupertype();
-                    if (AnnotationUtils.areSame(value, top)) {
-                        fixedTop.add(variable);
-                    }
-                } else if (subtype.getSupertype() instanceof ConstantSlot) {
-                    // If a variable is a subtype of bottom, that variable is bottom
-                    AnnotationMirror value = ((ConstantSlot) subtype.getSupertype()).getValue();
-                    VariableSlot variable = (VariableSlot) subtype.getSubtype();
-                    if (AnnotationUtils.areSame(value, bottom)) {
-                        fixedBottom.add(variable);
-                    }
-                } else {
-                    // If the RHS is top, the LHS must be top
-                    addEntryToMap(superTypePropagation, (VariableSlot) subtype.getSubtype(), (VariableSlot) subtype.getSupertype(), constraint);
-                    // If the LHS is bottom, the RHS must be bottom
-                    addEntryToMap(subTypePropagation, (VariableSlot) subtype.getSupertype(), (VariableSlot) subtype.getSubtype(), constraint);
-                }
+                preprocessSubtype(subtype.getSubtype(), subtype.getSupertype(),
+                        fixedBottom, fixedTop, superTypePropagation, subTypePropagation);
             } else if (constraint instanceof ExistentialConstraint) {
-                InferenceMain.getInstance().logger.warning("PropagationSolver: Existential constraint found.  Inferred annotations may not type check ");
+                warnExistential();
+            }
+        }
+    }
+
+    private void preprocessEquality(Slot first, Slot second,
+            BitSet fixedBottom, BitSet fixedTop, Edges superTypePropagation, Edges subTypePropagation) {
+        if (first instanceof ConstantSlot) {
+            if (second instanceof ConstantSlot) {
+                // Skip constraints that are just constants
+                return;
+            }
+            // Equal to a constant forces a constant
+            AnnotationMirror value = ((ConstantSlot) first).getValue();
+            int variable = ((VariableSlot) second).getId();
+            if (AnnotationUtils.areSame(value, top)) {
+                fixedTop.set(variable);
+            } else {
+                fixedBottom.set(variable);
+            }
+        } else if (second instanceof ConstantSlot) {
+            // Equal to a constant forces a constant
+            AnnotationMirror value = ((ConstantSlot) second).getValue();
+            int variable = ((VariableSlot) first).getId();
+            if (AnnotationUtils.areSame(value, top)) {
+                fixedTop.set(variable);
+            } else {
+                fixedBottom.set(variable);
+            }
+        } else {
+            // Variable equality means values of one propagates to values of the other, for both subtype and supertype
+            int firstId = ((VariableSlot) first).getId();
+            int secondId = ((VariableSlot) second).getId();
+            superTypePropagation.add(firstId, secondId);
+            superTypePropagation.add(secondId, firstId);
+            subTypePropagation.add(firstId, secondId);
+            subTypePropagation.add(secondId, firstId);
+        }
+    }
+
+    private void preprocessSubtype(Slot subtype, Slot supertype,
+            BitSet fixedBottom, BitSet fixedTop, Edges superTypePropagation, Edges subTypePropagation) {
+        if (subtype instanceof ConstantSlot) {
+            if (supertype instanceof ConstantSlot) {
+                // Skip constraints that are just constants
+                return;
+            }
+            // If top is a subtype of a variable, that variable is top
+            AnnotationMirror value = ((ConstantSlot) subtype).getValue();
+            if (AnnotationUtils.areSame(value, top)) {
+                fixedTop.set(((VariableSlot) supertype).getId());
             }
+        } else if (supertype instanceof ConstantSlot) {
+            // If a variable is a subtype of bottom, that variable is bottom
+            AnnotationMirror value = ((ConstantSlot) supertype).getValue();
+            if (AnnotationUtils.areSame(value, bottom)) {
+                fixedBottom.set(((VariableSlot) subtype).getId());
+            }
+        } else {
+            int subtypeId = ((VariableSlot) subtype).getId();
+            int supertypeId = ((VariableSlot) supertype).getId();
+            // If the RHS is top, the LHS must be top
+            superTypePropagation.add(subtypeId, supertypeId);
+            // If the LHS is bottom, the RHS must be bottom
+            subTypePropagation.add(supertypeId, subtypeId);
         }
     }
 
+    private void warnExistential() {
+        InferenceMain.getInstance().logger.warning("PropagationSolver: Existential constraint found.  Inferred annotations may not type check ");
+    }
+
     /**
      * Given the inferred values, return a value for each slot.
      *
      * Variables will have conflicting values if the constraints were not solvable.
      *
-     * This currently gives value precedence to fixedBottom, fixedTop, inferredBottom, inferredTop
+     * This currently gives value precedence to fixedBottom, fixedTop, inferredBottom, inferredTop,
+     * i.e. a variable is bottom if it is fixedBottom or inferredBottom but not fixedTop.
+     * Variables with the default value are not recorded.
      *
      * @return
      */
     private InferenceSolution mergeResults(
-            Set<VariableSlot> fixedBottom, Set<VariableSlot> fixedTop,
-            Set<VariableSlot> inferredTop, Set<VariableSlot> inferredBottom) {
+            BitSet fixedBottom, BitSet fixedTop,
+            BitSet inferredTop, BitSet inferredBottom) {
 
-        Map<Integer, AnnotationMirror> results = new HashMap<Integer, AnnotationMirror>();
+        BitSet variables = new BitSet();
         for (Slot slot : slots) {
             if (slot.isVariable()) {
-                VariableSlot vslot = (VariableSlot) slot;
-                AnnotationMirror result;
-                if (fixedBottom.contains(slot)) {
-                    result = bottom;
-                } else if (fixedTop.contains(slot)) {
-                    result = top;
-                } else if (inferredBottom.contains(slot)) {
-                    result = bottom;
-                } else if (inferredTop.contains(slot)) {
-                    result = top;
-                } else {
-                    result = defaultValue;
-                }
-                if (result != defaultValue) {
-                    results.put(vslot.getId(), result);
-                }
+                variables.set(((VariableSlot) slot).getId());
             }
         }
 
+        BitSet resultBottom = (BitSet) inferredBottom.clone();
+        resultBottom.andNot(fixedTop);
+        resultBottom.or(fixedBottom);
+        resultBottom.and(variables);
+
+        BitSet recorded = resultBottom;
+        AnnotationMirror recordedValue = bottom;
+        if (defaultValue != top) {
+            recorded = (BitSet) variables.clone();
+            recorded.andNot(resultBottom);
+            recordedValue = top;
+        }
+
+        Map<Integer, AnnotationMirror> results = new HashMap<Integer, AnnotationMirror>(recorded.cardinality() * 2);
+        for (int id = recorded.nextSetBit(0); id >= 0; id = recorded.nextSetBit(id + 1)) {
+            results.put(id, recordedValue);
+        }
+
         return new DefaultInferenceSolution(results);
     }
 
     /**
-     * Given starting fixed values, iterate on the propagation map
-     * to propagate the resulting values.
+     * Given starting fixed values, do a breadth first traversal of the propagation graph
+     * to propagate the resulting values.  Each variable is visited at most once, so this
+     * runs in time linear in the size of the graph.
      *
      * @param fixed The starting values that will trigger propagation
-     * @param typePropagation Maps of value to list of other values that will be propagated when the key is triggered.
+     * @param typePropagation Graph of values to the other values that will be propagated when the source is triggered.
      *
      * @return All values that were fixed flooded/propagated to.
      */
-    private Set<VariableSlot> propagateValues(Set<VariableSlot> fixed,
-            Map<VariableSlot, List<VariableSlot>> typePropagation) {
-
-        Set<VariableSlot> results = new HashSet<VariableSlot>();
-
-        Set<VariableSlot> worklist = new HashSet<VariableSlot>(fixed);
-        while (!worklist.isEmpty()) {
-            VariableSlot variable = worklist.iterator().next();
-            worklist.remove(variable);
-            if (typePropagation.containsKey(variable)) {
-                List<VariableSlot> inferred = typePropagation.get(variable);
-                List<VariableSlot> inferredVars = new ArrayList<VariableSlot>();
-                inferredVars.addAll(inferred);
-                inferredVars.removeAll(results);
-                results.addAll(inferredVars);
-                worklist.addAll(inferredVars);
+    private BitSet propagateValues(BitSet fixed, Adjacency typePropagation) {
+
+        BitSet results = new BitSet(typePropagation.nodeCount());
+
+        // Each variable is queued once as a fixed value and at most once more when it is first reached
+        int[] queue = new int[fixed.cardinality() + typePropagation.nodeCount()];
+        int head = 0;
+        int tail = 0;
+        for (int id = fixed.nextSetBit(0); id >= 0; id = fixed.nextSetBit(id + 1)) {
+            queue[tail++] = id;
+        }
+
+        while (head < tail) {
+            int variable = queue[head++];
+            if (variable >= typePropagation.nodeCount()) {
+                continue;
+            }
+            for (int edge = typePropagation.offsets[variable]; edge < typePropagation.offsets[variable + 1]; edge++) {
+                int inferred = typePropagation.targets[edge];
+                if (!results.get(inferred)) {
+                    results.set(inferred);
+                    queue[tail++] = inferred;
+                }
             }
         }
         return results;
     }
 
+    /**
+     * A parallel version of propagateValues.  The graph is traversed level by level: all nodes of the
+     * current frontier are expanded before any node of the next one.  Frontiers with at least
+     * PARALLEL_THRESHOLD nodes are split into chunks that are expanded concurrently; each node is
+     * claimed by the one chunk that sets its bit in the shared AtomicBitSet first, so every node still
+     * enters a frontier only once.
+     */
+    private static class FloodTask extends RecursiveTask<BitSet> {
+        private final BitSet fixed;
+        private final Adjacency typePropagation;
+
+        FloodTask(BitSet fixed, Adjacency typePropagation) {
+            this.fixed = fixed;
+            this.typePropagation = typePropagation;
+        }
+
+        @Override
+        protected BitSet compute() {
+            final AtomicBitSet results = new AtomicBitSet(typePropagation.nodeCount());
+
+            int[] frontier = new int[fixed.cardinality()];
+            int frontierSize = 0;
+            for (int id = fixed.nextSetBit(0); id >= 0; id = fixed.nextSetBit(id + 1)) {
+                if (id < typePropagation.nodeCount()) {
+                    frontier[frontierSize++] = id;
+                }
+            }
+
+            while (frontierSize > 0) {
+                if (frontierSize < PARALLEL_THRESHOLD) {
+                    frontier = expand(typePropagation, results, frontier, 0, frontierSize);
+                } else {
+                    final int chunkCount = Math.min(frontierSize / (PARALLEL_THRESHOLD / 4),
+                                                    getPool().getParallelism() * 4);
+                    final List<ExpandTask> chunks = new ArrayList<>(chunkCount);
+                    for (int chunk = 0; chunk < chunkCount; chunk++) {
+                        chunks.add(new ExpandTask(typePropagation, results, frontier,
+                                (int) ((long) frontierSize * chunk / chunkCount),
+                                (int) ((long) frontierSize * (chunk + 1) / chunkCount)));
+                    }
+                    invokeAll(chunks);
+
+                    int nextSize = 0;
+                    for (final ExpandTask chunk : chunks) {
+                        nextSize += chunk.getRawResult().length;
+                    }
+                    final int[] next = new int[nextSize];
+                    int offset = 0;
+                    for (final ExpandTask chunk : chunks) {
+                        final int[] found = chunk.getRawResult();
+                        System.arraycopy(found, 0, next, offset, found.length);
+                        offset += found.length;
+                    }
+                    frontier = next;
+                }
+                frontierSize = frontier.length;
+            }
+
+            return results.toBitSet();
+        }
+    }
+
+    /**
+     * Expands frontier[from] to frontier[to - 1], see FloodTask.
+     */
+    private static class ExpandTask extends RecursiveTask<int[]> {
+        private final Adjacency typePropagation;
+        private final AtomicBitSet results;
+        private final int[] frontier;
+        private final int from;
+        private final int to;
+
+        ExpandTask(Adjacency typePropagation, AtomicBitSet results, int[] frontier, int from, int to) {
+            this.typePropagation = typePropagation;
+            this.results = results;
+            this.frontier = frontier;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[] compute() {
+            return expand(typePropagation, results, frontier, from, to);
+        }
+    }
+
+    /**
+     * @return the nodes adjacent to frontier[from] to frontier[to - 1] that were not yet in results,
+     * after adding them to results
+     */
+    private static int[] expand(Adjacency typePropagation, AtomicBitSet results, int[] frontier, int from, int to) {
+        int[] found = new int[Math.max(16, to - from)];
+        int size = 0;
+        for (int i = from; i < to; i++) {
+            final int variable = frontier[i];
+            for (int edge = typePropagation.offsets[variable]; edge < typePropagation.offsets[variable + 1]; edge++) {
+                final int inferred = typePropagation.targets[edge];
+                if (results.set(inferred)) {
+                    if (size == found.length) {
+                        found = Arrays.copyOf(found, size * 2);
+                    }
+                    found[size++] = inferred;
+                }
+            }
+        }
+        return Arrays.copyOf(found, size);
+    }
+
     private boolean checkContainsVariable(Constraint constraint) {
         boolean containsVariable = false;
         for (Slot slot : constraint.getSlots()) {
@@ -265,14 +481,89 @@ public class PropagationSolver implements InferenceSolver {
         return containsVariable;
     }
 
-    void addEntryToMap(Map<VariableSlot, List<VariableSlot>> entries, VariableSlot key, VariableSlot value, Constraint constraint) {
-        List<VariableSlot> valueList;
-        if (entries.get(key) == null) {
-            valueList = new ArrayList<>();
-            entries.put(key, valueList);
-        } else {
-            valueList = entries.get(key);
+    /**
+     * @return the largest id of any variable in slots or constraints
+     */
+    private int maxId() {
+        int maxId = 0;
+        for (Slot slot : slots) {
+            if (slot instanceof VariableSlot) {
+                maxId = Math.max(maxId, ((VariableSlot) slot).getId());
+            }
+        }
+        Collection<Constraint> objects = constraints;
+        if (constraints instanceof ConstraintTableSet) {
+            final ConstraintTable table = ((ConstraintTableSet) constraints).getTable();
+            for (int row = 0; row < table.size(); row++) {
+                maxId = Math.max(maxId, Math.max(table.getFirst(row), table.getSecond(row)));
+            }
+            objects = ((ConstraintTableSet) constraints).getOtherConstraints();
+        }
+        for (Constraint constraint : objects) {
+            for (Slot slot : constraint.getSlots()) {
+                if (slot instanceof VariableSlot) {
+                    maxId = Math.max(maxId, ((VariableSlot) slot).getId());
+                }
+            }
+        }
+        return maxId;
+    }
+
+    /**
+     * A growable list of propagation edges between variable ids.
+     */
+    private static class Edges {
+        private int size = 0;
+        private int[] sources = new int[64];
+        private int[] targets = new int[64];
+
+        void add(int source, int target) {
+            if (size == sources.length) {
+                sources = Arrays.copyOf(sources, size * 2);
+                targets = Arrays.copyOf(targets, size * 2);
+            }
+            sources[size] = source;
+            targets[size] = target;
+            size++;
+        }
+
+        /**
+         * @return the edges in compressed sparse row form, for ids 0 to maxId
+         */
+        Adjacency toAdjacency(int maxId) {
+            final int nodeCount = maxId + 1;
+            final int[] offsets = new int[nodeCount + 1];
+            for (int edge = 0; edge < size; edge++) {
+                offsets[sources[edge] + 1]++;
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                offsets[node + 1] += offsets[node];
+            }
+
+            final int[] adjacent = new int[size];
+            final int[] fill = Arrays.copyOf(offsets, nodeCount);
+            for (int edge = 0; edge < size; edge++) {
+                adjacent[fill[sources[edge]]++] = targets[edge];
+            }
+            return new Adjacency(offsets, adjacent);
+        }
+    }
+
+    /**
+     * Propagation graph in compressed sparse row form: the targets of variable id are
+     * targets[offsets[id]] to targets[offsets[id + 1] - 1].
+     */
+    private static class Adjacency {
+        final int[] offsets;
+        final int[] targets;
+
+        Adjacency(int[] offsets, int[] targets) {
+            this.offsets = offsets;
+            this.targets = targets;
+        }
+
+        int nodeCount() {
+            return offsets.length - 1;
         }
-        valueList.add(value);
     }
 }
@@ -0,0 +1,174 @@
+package checkers.inference.solver;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.ErrorReporter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.lang.model.element.AnnotationMirror;
+
+/**
+ * A finite qualifier hierarchy encoded as a bit matrix so that solvers can work with small int
+ * indexes instead of AnnotationMirrors.
+ *
+ * Each qualifier of the hierarchy gets an index in [0, size()).  Row i of the matrix has bit j set
+ * iff qualifier i is a subtype of qualifier j.  The least upper bound and greatest lower bound of
+ * every pair of qualifiers are computed once from the matrix and stored in tables, so lub, glb and
+ * isSubtype are constant time array lookups.
+ *
+ * Only hierarchies with a single top and a single bottom are supported.
+ */
+public final class QualifierLattice {
+
+    private final AnnotationMirror[] qualifiers;
+    private final int size;
+
+    // Number of longs per row of the matrices
+    private final int words;
+
+    // supertypes[i * words ...] are the qualifiers i is a subtype of, subtypes[i * words ...] the
+    // qualifiers that are subtypes of i
+    private final long[] supertypes;
+    private final long[] subtypes;
+
+    private final int[] lubs;
+    private final int[] glbs;
+
+    private final int top;
+    private final int bottom;
+
+    public QualifierLattice(QualifierHierarchy qualHierarchy) {
+        if (qualHierarchy.getTopAnnotations().size() != 1 || qualHierarchy.getBottomAnnotations().size() != 1) {
+            ErrorReporter.errorAbort("QualifierLattice only supports type systems with a single qualifier hierarchy, found tops "
+                    + qualHierarchy.getTopAnnotations());
+        }
+
+        final List<AnnotationMirror> unique = new ArrayList<>();
+        for (final AnnotationMirror qualifier : qualHierarchy.getTypeQualifiers()) {
+            if (indexOf(unique, qualifier) == -1) {
+                unique.add(qualifier);
+            }
+        }
+        this.qualifiers = unique.toArray(new AnnotationMirror[unique.size()]);
+        this.size = qualifiers.length;
+        this.words = (size + 63) >>> 6;
+
+        this.supertypes = new long[size * words];
+        this.subtypes = new long[size * words];
+        for (int sub = 0; sub < size; sub++) {
+            for (int sup = 0; sup < size; sup++) {
+                if (qualHierarchy.isSubtype(qualifiers[sub], qualifiers[sup])) {
+                    supertypes[sub * words + (sup >>> 6)] |= 1L << sup;
+                    subtypes[sup * words + (sub >>> 6)] |= 1L << sub;
+                }
+            }
+        }
+
+        this.top = indexOf(qualHierarchy.getTopAnnotations().iterator().next());
+        this.bottom = indexOf(qualHierarchy.getBottomAnnotations().iterator().next());
+        if (top == -1 || bottom == -1) {
+            ErrorReporter.errorAbort("The top and bottom of the hierarchy must be type qualifiers: "
+                    + qualHierarchy.getTopAnnotations() + " " + qualHierarchy.getBottomAnnotations());
+        }
+
+        this.lubs = new int[size * size];
+        this.glbs = new int[size * size];
+        for (int first = 0; first < size; first++) {
+            for (int second = first; second < size; second++) {
+                final int lub = extremum(supertypes, first, second);
+                final int glb = extremum(subtypes, first, second);
+                if (lub == -1 || glb == -1) {
+                    ErrorReporter.errorAbort("The qualifier hierarchy is not a lattice, "
+                            + qualifiers[first] + " and " + qualifiers[second] + " have no "
+                            + (lub == -1 ? "least upper bound" : "greatest lower bound"));
+                }
+                lubs[first * size + second] = lubs[second * size + first] = lub;
+                glbs[first * size + second] = glbs[second * size + first] = glb;
+            }
+        }
+    }
+
+    /**
+     * Find the least element of the intersection of the rows of first and second, i.e. the lub when
+     * given the supertype matrix and the glb when given the subtype matrix.  The least element is
+     * the one whose own row is exactly the intersection.
+     * @return the index of the least element or -1 if there is none
+     */
+    private int extremum(long[] matrix, int first, int second) {
+        final long[] common = new long[words];
+        for (int word = 0; word < words; word++) {
+            common[word] = matrix[first * words + word] & matrix[second * words + word];
+        }
+        for (int word = 0; word < words; word++) {
+            long bits = common[word];
+            while (bits != 0) {
+                final int candidate = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (rowEquals(matrix, candidate, common)) {
+                    return candidate;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private boolean rowEquals(long[] matrix, int row, long[] bits) {
+        for (int word = 0; word < words; word++) {
+            if (matrix[row * words + word] != bits[word]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public int getBottom() {
+        return bottom;
+    }
+
+    public AnnotationMirror getQualifier(int index) {
+        return qualifiers[index];
+    }
+
+    /**
+     * @return the index of qualifier or -1 if it is not a qualifier of this hierarchy
+     */
+    public int indexOf(AnnotationMirror qualifier) {
+        for (int index = 0; index < size; index++) {
+            if (AnnotationUtils.areSame(qualifiers[index], qualifier)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isSubtype(int sub, int sup) {
+        return (supertypes[sub * words + (sup >>> 6)] & (1L << sup)) != 0;
+    }
+
+    public int lub(int first, int second) {
+        return lubs[first * size + second];
+    }
+
+    public int glb(int first, int second) {
+        return glbs[first * size + second];
+    }
+
+    private static int indexOf(List<AnnotationMirror> qualifiers, AnnotationMirror qualifier) {
+        for (int index = 0; index < qualifiers.size(); index++) {
+            if (AnnotationUtils.areSame(qualifiers.get(index), qualifier)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,278 @@
+package checkers.inference.solver;
+
+import org.checkerframework.javacutil.ErrorReporter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import org.sat4j.maxsat.WeightedMaxSatDecorator;
+import org.sat4j.minisat.core.IPhaseSelectionStrategy;
+import org.sat4j.minisat.core.RestartStrategy;
+import org.sat4j.minisat.core.Solver;
+import org.sat4j.minisat.orders.NegativeLiteralSelectionStrategy;
+import org.sat4j.minisat.orders.PositiveLiteralSelectionStrategy;
+import org.sat4j.minisat.orders.RSATPhaseSelectionStrategy;
+import org.sat4j.minisat.orders.RandomLiteralSelectionStrategy;
+import org.sat4j.minisat.restarts.ArminRestarts;
+import org.sat4j.minisat.restarts.LubyRestarts;
+import org.sat4j.minisat.restarts.MiniSATRestarts;
+import org.sat4j.minisat.restarts.NoRestarts;
+import org.sat4j.pb.IPBSolver;
+import org.sat4j.pb.ManyCorePB;
+import org.sat4j.pb.PseudoOptDecorator;
+import org.sat4j.pb.SolverFactory;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.TimeoutException;
+
+import checkers.inference.InferenceSolution.Quality;
+
+/**
+ * Creates the SAT4J solvers used by the SAT based InferenceSolvers, configured from the solver
+ * arguments so that solving can be tuned without changing code.
+ *
+ * Solver arguments:
+ *   sat-engine          the SAT4J pseudo boolean engine to use, by name as accepted by
+ *                       org.sat4j.pb.SolverFactory, e.g. Resolution or CuttingPlanes.  Several
+ *                       engines separated by + are run as a portfolio, the first to finish wins.
+ *                       Default Resolution+CuttingPlanes, the engines of SolverFactory.newBoth()
+ *   sat-portfolio-size  the number of engines of sat-engine that are actually run, each on its own
+ *                       thread, default the number of engines.  Never more than threads, so
+ *                       solvers that run several SAT solvers in parallel cap the portfolio by
+ *                       passing each of them a share of their threads
+ *   threads             see SolverArgs.THREADS_KEY
+ *   sat-timeout-ms      the time limit of a single solver run, default 1000000
+ *   sat-anytime         true to optimize the soft clauses until the time limit and keep the best
+ *                       model found so far when it is reached, see solve.  Default false, which
+ *                       returns the first model that satisfies the hard clauses
+ *   sat-restarts        the restart strategy: minisat, luby, armin or none, default the engine's
+ *   sat-phase           the phase selection strategy: saving (RSAT phase saving), negative,
+ *                       positive or random, default the engine's
+ *
+ * Restarts and phase selection only apply to CDCL engines, other engines are left unchanged.
+ */
+public final class SatSolverFactory {
+
+    public static final String ENGINE_KEY = "sat-engine";
+    public static final String PORTFOLIO_SIZE_KEY = "sat-portfolio-size";
+    public static final String TIMEOUT_KEY = "sat-timeout-ms";
+    public static final String RESTARTS_KEY = "sat-restarts";
+    public static final String PHASE_KEY = "sat-phase";
+    public static final String ANYTIME_KEY = "sat-anytime";
+
+    private static final String DEFAULT_ENGINE = "Resolution+CuttingPlanes";
+    private static final int DEFAULT_TIMEOUT_MS = 1000000;
+
+    public final Logger logger = Logger.getLogger(SatSolverFactory.class.getName());
+
+    private final List<String> engines;
+    private final int timeoutMs;
+    private final String restarts;
+    private final String phase;
+    private final boolean anytime;
+
+    public SatSolverFactory(Map<String, String> configuration) {
+        final String engine = get(configuration, ENGINE_KEY, DEFAULT_ENGINE);
+        final List<String> allEngines = Arrays.asList(engine.split("\\+"));
+        final int requestedPortfolioSize = SolverArgs.getInt(configuration, PORTFOLIO_SIZE_KEY, allEngines.size());
+        if (requestedPortfolioSize < 1) {
+            ErrorReporter.errorAbort("Solver argument " + PORTFOLIO_SIZE_KEY + " must be at least 1 but was " + requestedPortfolioSize);
+        }
+        final int portfolioSize = Math.min(requestedPortfolioSize, SolverArgs.getThreads(configuration));
+        this.engines = new ArrayList<>(allEngines.subList(0, Math.min(portfolioSize, allEngines.size())));
+        this.timeoutMs = SolverArgs.getInt(configuration, TIMEOUT_KEY, DEFAULT_TIMEOUT_MS);
+        this.restarts = get(configuration, RESTARTS_KEY, null);
+        this.phase = get(configuration, PHASE_KEY, null);
+        this.anytime = SolverArgs.getBoolean(configuration, ANYTIME_KEY, false);
+    }
+
+    /**
+     * @return a new engine, or portfolio of engines, as configured
+     */
+    public IPBSolver newEngine() {
+        if (engines.size() == 1) {
+            return newEngine(engines.get(0));
+        }
+
+        final IPBSolver[] members = new IPBSolver[engines.size()];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = newEngine(engines.get(i));
+        }
+        return new ManyCorePB(members);
+    }
+
+    /**
+     * @return a new engine with the configured timeout, for plain (non-MAX) SAT solving
+     */
+    public IPBSolver newSatSolver() {
+        final IPBSolver solver = newEngine();
+        solver.setTimeoutMs(timeoutMs);
+        return solver;
+    }
+
+    /**
+     * @return a new WeightedMaxSatDecorator around a new engine with the configured timeout
+     */
+    public WeightedMaxSatDecorator newMaxSatSolver() {
+        final WeightedMaxSatDecorator solver = new WeightedMaxSatDecorator(newEngine());
+        solver.setTimeoutMs(timeoutMs);
+        return solver;
+    }
+
+    /**
+     * Solve the clauses added to solver and log the run's statistics.
+     *
+     * By default this returns the first model that satisfies the hard clauses, which is OPTIMAL only
+     * if there are no soft clauses.  A timeout is thrown as a TimeoutException.
+     *
+     * In anytime mode the soft clauses are optimized: each model found is recorded, then the solver
+     * is asked for a strictly better one until it proves there is none, which makes the last model
+     * OPTIMAL, or the time limit is reached, which makes it FEASIBLE.  The time limit covers the
+     * whole optimization.  If it is reached before the first model, the result is UNSOLVED.
+     *
+     * @param name identifies the run in the log, e.g. the permission being solved
+     * @param hasSoftClauses whether any soft clauses were added to solver
+     */
+    public Result solve(String name, WeightedMaxSatDecorator solver, boolean hasSoftClauses) throws TimeoutException {
+        final long start = System.currentTimeMillis();
+        try {
+            if (!anytime) {
+                if (solver.isSatisfiable()) {
+                    return new Result(solver.model(), hasSoftClauses ? Quality.FEASIBLE : Quality.OPTIMAL);
+                }
+                return new Result(null, Quality.UNSOLVED);
+            }
+
+            final long deadline = start + timeoutMs;
+            final PseudoOptDecorator optimizer = new PseudoOptDecorator(solver);
+            int[] best = null;
+            int improvements = 0;
+            try {
+                while (true) {
+                    final long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new TimeoutException("Anytime time limit reached");
+                    }
+                    optimizer.setTimeoutMs(remaining);
+                    if (!optimizer.admitABetterSolution()) {
+                        break;
+                    }
+                    best = optimizer.model();
+                    improvements++;
+                    optimizer.discardCurrentSolution();
+                }
+            } catch (ContradictionException e) {
+                // No better solution exists, best is optimal
+            } catch (TimeoutException e) {
+                logger.warning(String.format("SAT run %s reached its time limit of %d ms after %d improving models,"
+                        + " the preferences may not be optimal", name, timeoutMs, improvements));
+                return new Result(best, best == null ? Quality.UNSOLVED : Quality.FEASIBLE);
+            }
+            return new Result(best, best == null ? Quality.UNSOLVED : Quality.OPTIMAL);
+
+        } finally {
+            logStatistics(name, solver, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Log the configuration and the statistics SAT4J collected during the last run of solver.
+     */
+    private void logStatistics(String name, ISolver solver, long elapsedMs) {
+        final StringBuilder message = new StringBuilder();
+        message.append(String.format("SAT run %s: engines %s, timeout %d ms, restarts %s, phase %s, anytime %b, %d ms",
+                name, engines, timeoutMs, restarts == null ? "default" : restarts,
+                phase == null ? "default" : phase, anytime, elapsedMs));
+        for (final Map.Entry<String, Number> stat : new TreeMap<>(solver.getStat()).entrySet()) {
+            message.append("\n  ").append(stat.getKey()).append(" = ").append(stat.getValue());
+        }
+        logger.info(message.toString());
+    }
+
+    /**
+     * The outcome of solve: the model, null if none was found, and its quality.
+     */
+    public static class Result {
+        private final int[] model;
+        private final Quality quality;
+
+        Result(int[] model, Quality quality) {
+            this.model = model;
+            this.quality = quality;
+        }
+
+        public int[] getModel() {
+            return model;
+        }
+
+        public Quality getQuality() {
+            return quality;
+        }
+    }
+
+    private IPBSolver newEngine(String name) {
+        final IPBSolver engine = SolverFactory.instance().createSolverByName(name.trim());
+        if (engine == null) {
+            ErrorReporter.errorAbort("Unknown SAT4J engine \"" + name + "\" given for " + ENGINE_KEY);
+        }
+
+        if (restarts != null || phase != null) {
+            if (engine instanceof Solver) {
+                final Solver<?> cdcl = (Solver<?>) engine;
+                if (restarts != null) {
+                    cdcl.setRestartStrategy(restartStrategy(restarts));
+                }
+                if (phase != null) {
+                    cdcl.getOrder().setPhaseSelectionStrategy(phaseSelectionStrategy(phase));
+                }
+            } else {
+                logger.warning("SAT4J engine " + name + " is not a CDCL solver, ignoring "
+                        + RESTARTS_KEY + " and " + PHASE_KEY);
+            }
+        }
+        return engine;
+    }
+
+    private static RestartStrategy restartStrategy(String name) {
+        switch (name) {
+            case "minisat":
+                return new MiniSATRestarts();
+            case "luby":
+                return new LubyRestarts();
+            case "armin":
+                return new ArminRestarts();
+            case "none":
+                return new NoRestarts();
+            default:
+                ErrorReporter.errorAbort("Solver argument " + RESTARTS_KEY
+                        + " must be minisat, luby, armin or none but was \"" + name + "\"");
+                return null; // Dead code
+        }
+    }
+
+    private static IPhaseSelectionStrategy phaseSelectionStrategy(String name) {
+        switch (name) {
+            case "saving":
+                return new RSATPhaseSelectionStrategy();
+            case "negative":
+                return new NegativeLiteralSelectionStrategy();
+            case "positive":
+                return new PositiveLiteralSelectionStrategy();
+            case "random":
+                return new RandomLiteralSelectionStrategy();
+            default:
+                ErrorReporter.errorAbort("Solver argument " + PHASE_KEY
+                        + " must be saving, negative, positive or random but was \"" + name + "\"");
+                return null; // Dead code
+        }
+    }
+
+    private static String get(Map<String, String> configuration, String key, String defaultValue) {
+        final String value = configuration == null ? null : configuration.get(key);
+        return value == null ? defaultValue : value.trim();
+    }
+}
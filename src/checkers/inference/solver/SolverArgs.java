@@ -0,0 +1,73 @@
+package checkers.inference.solver;
+
+import org.checkerframework.javacutil.ErrorReporter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Helpers for reading typed values from the solver arguments InferenceMain passes to
+ * InferenceSolver.solve, see --solverArgs.
+ */
+public final class SolverArgs {
+
+    /**
+     * The number of threads a solver may use.  Shared by all solvers that do work in parallel.
+     */
+    public static final String THREADS_KEY = "threads";
+
+    private SolverArgs() {
+    }
+
+    /**
+     * @return the integer value of key in configuration or defaultValue if configuration does not contain key
+     */
+    public static int getInt(Map<String, String> configuration, String key, int defaultValue) {
+        final String value = configuration == null ? null : configuration.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            ErrorReporter.errorAbort("Solver argument " + key + " must be an integer but was \"" + value + "\"");
+            return defaultValue; // Dead code
+        }
+    }
+
+    /**
+     * @return true if the value of key in configuration is true, defaultValue if configuration does not contain key
+     */
+    public static boolean getBoolean(Map<String, String> configuration, String key, boolean defaultValue) {
+        final String value = configuration == null ? null : configuration.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value.trim().equalsIgnoreCase("true")) {
+            return true;
+        } else if (value.trim().equalsIgnoreCase("false")) {
+            return false;
+        }
+        ErrorReporter.errorAbort("Solver argument " + key + " must be true or false but was \"" + value + "\"");
+        return defaultValue; // Dead code
+    }
+
+    /**
+     * @return the value of the threads argument, by default the number of available processors
+     */
+    public static int getThreads(Map<String, String> configuration) {
+        return Math.max(1, getInt(configuration, THREADS_KEY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @return a copy of configuration whose threads argument is threads, for solvers that split their
+     * thread budget between the solvers they run in parallel
+     */
+    public static Map<String, String> withThreads(Map<String, String> configuration, int threads) {
+        final Map<String, String> copy = configuration == null
+                                       ? new HashMap<String, String>()
+                                       : new HashMap<>(configuration);
+        copy.put(THREADS_KEY, Integer.toString(threads));
+        return copy;
+    }
+}
@@ -0,0 +1,63 @@
+package checkers.inference.solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the independent tasks of a solver, e.g. the components of a PartitioningSolver or the
+ * permissions of a sparta IFlowSolver, on at most a given number of threads, see
+ * SolverArgs.getThreads.
+ */
+public final class SolverThreads {
+
+    /**
+     * Held by ThreadSafeInferenceSolvers while they use the QualifierHierarchy or AnnotationUtils,
+     * which are not thread safe, so that solvers running at the same time use them one at a time.
+     */
+    public static final Object FRAMEWORK_LOCK = new Object();
+
+    private SolverThreads() {
+    }
+
+    /**
+     * Run tasks on a ForkJoinPool with at most threads threads, or one after the other on the calling
+     * thread if there is only one thread or one task.
+     *
+     * @param description what the tasks do, used in error messages, e.g. "solving components"
+     * @return the results of the tasks, in the order of tasks
+     * @throws RuntimeException if a task threw an exception, which is its cause
+     */
+    public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int threads, String description) {
+        final List<T> results = new ArrayList<>(tasks.size());
+        final int parallelism = Math.min(threads, tasks.size());
+        if (parallelism <= 1) {
+            for (final Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (Exception e) {
+                    throw new RuntimeException("Error " + description + "!", e);
+                }
+            }
+            return results;
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (final Future<T> result : pool.invokeAll(tasks)) {
+                results.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while " + description + "!", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error " + description + "!", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return results;
+    }
+}
@@ -0,0 +1,17 @@
+package checkers.inference.solver;
+
+import checkers.inference.InferenceSolver;
+
+/**
+ * Marker for InferenceSolvers of which several instances may solve at the same time on different
+ * threads, e.g. the components of a PartitioningSolver.
+ *
+ * The ProcessingEnvironment (and so AnnotationBuilder), AnnotationUtils and the QualifierHierarchy
+ * are not thread safe.  A solver may only implement this interface if its solve method does not use
+ * the ProcessingEnvironment and holds SolverThreads.FRAMEWORK_LOCK whenever it uses AnnotationUtils
+ * or the QualifierHierarchy.  Of the SlotManager only nextId, addVariable and getVariable may be used.
+ * AnnotationMirrors used in the solution must come from the slots or the QualifierHierarchy passed
+ * to solve.
+ */
+public interface ThreadSafeInferenceSolver extends InferenceSolver {
+}
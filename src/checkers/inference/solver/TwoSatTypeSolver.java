@@ -0,0 +1,178 @@
+package checkers.inference.solver;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.AnnotationUtils;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import org.sat4j.core.VecInt;
+
+import checkers.inference.DefaultInferenceSolution;
+import checkers.inference.InferenceMain;
+import checkers.inference.InferenceSolution;
+import checkers.inference.InferenceSolution.Quality;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.ExistentialConstraint;
+import checkers.inference.model.PreferenceConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.VariableSlot;
+import checkers.inference.model.serialization.CnfVecIntSerializer;
+import checkers.inference.util.StronglyConnectedComponents;
+
+/**
+ * Solver for type systems with only 2 types (Top/Bottom) that solves the common case in linear time.
+ *
+ * The constraints are converted to CNF exactly as MaxSat2TypeSolver does.  Subtype, equality and
+ * inequality constraints only produce clauses with one or two literals, so unless there are
+ * existential constraints, which add a literal to each of their clauses, or preference constraints,
+ * which need weights, the CNF is a 2-SAT instance.  2-SAT is solved by building the implication
+ * graph (each clause a | b becomes the edges !a -&gt; b and !b -&gt; a) and finding its strongly
+ * connected components: the instance is satisfiable iff no variable is in the same component as
+ * its negation, and a literal is true in a model iff its component comes after its negation's
+ * component in topological order.
+ *
+ * If the CNF is not 2-SAT the constraints are solved by MaxSat2TypeSolver instead.  If it is 2-SAT
+ * but unsatisfiable, the result is an empty solution of quality UNSOLVED, just as MaxSat2TypeSolver
+ * would return.  Like MaxSat2TypeSolver, several instances can solve at the same time.
+ */
+public class TwoSatTypeSolver implements ThreadSafeInferenceSolver {
+
+    public final Logger logger = Logger.getLogger(TwoSatTypeSolver.class.getName());
+
+    private AnnotationMirror top;
+    private AnnotationMirror bottom;
+
+    @Override
+    public InferenceSolution solve(
+            Map<String, String> configuration,
+            Collection<Slot> slots,
+            Collection<Constraint> constraints,
+            QualifierHierarchy qualHierarchy,
+            ProcessingEnvironment processingEnvironment) {
+
+        synchronized (SolverThreads.FRAMEWORK_LOCK) {
+            this.top = qualHierarchy.getTopAnnotations().iterator().next();
+            this.bottom = qualHierarchy.getBottomAnnotations().iterator().next();
+        }
+
+        InferenceSolution solution = null;
+        if (isTwoSat(constraints)) {
+            final CnfVecIntSerializer serializer = new CnfVecIntSerializer(InferenceMain.getInstance().getSlotManager()) {
+                @Override
+                protected boolean isTop(ConstantSlot constantSlot) {
+                    synchronized (SolverThreads.FRAMEWORK_LOCK) {
+                        return AnnotationUtils.areSame(constantSlot.getValue(), top);
+                    }
+                }
+            };
+            solution = solve(slots, serializer.convertAll(constraints));
+        } else {
+            logger.info("Constraints contain existential or preference constraints, solving with MAX-SAT");
+        }
+
+        if (solution == null) {
+            solution = new MaxSat2TypeSolver().solve(configuration, slots, constraints, qualHierarchy, processingEnvironment);
+        }
+        return solution;
+    }
+
+    /**
+     * @return the solution of the 2-SAT instance given by clauses, UNSOLVED if it is unsatisfiable,
+     * or null if clauses are not 2-SAT
+     */
+    private InferenceSolution solve(Collection<Slot> slots, List<VecInt> clauses) {
+        final long start = System.currentTimeMillis();
+
+        int maxVar = 0;
+        for (final Slot slot : slots) {
+            if (slot instanceof VariableSlot && !slot.isConstant()) {
+                maxVar = Math.max(maxVar, ((VariableSlot) slot).getId());
+            }
+        }
+        for (final VecInt clause : clauses) {
+            if (clause.size() > 2) {
+                logger.info("Clause " + clause + " has more than 2 literals, solving with MAX-SAT");
+                return null;
+            }
+            for (int i = 0; i < clause.size(); i++) {
+                maxVar = Math.max(maxVar, Math.abs(clause.get(i)));
+            }
+        }
+
+        // Each clause adds at most two implications
+        final int nodeCount = 2 * (maxVar + 1);
+        final int[] sources = new int[2 * clauses.size()];
+        final int[] targets = new int[sources.length];
+        int edgeCount = 0;
+        for (final VecInt clause : clauses) {
+            final int first = clause.get(0);
+            final int second = clause.size() == 1 ? first : clause.get(1);
+            sources[edgeCount] = node(-first);
+            targets[edgeCount++] = node(second);
+            if (second != first) {
+                sources[edgeCount] = node(-second);
+                targets[edgeCount++] = node(first);
+            }
+        }
+
+        final int[] offsets = new int[nodeCount + 1];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            offsets[sources[edge] + 1]++;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            offsets[node + 1] += offsets[node];
+        }
+        final int[] adjacent = new int[edgeCount];
+        final int[] fill = Arrays.copyOf(offsets, nodeCount);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            adjacent[fill[sources[edge]]++] = targets[edge];
+        }
+
+        final int[] component = StronglyConnectedComponents.compute(nodeCount, offsets, adjacent);
+
+        final Map<Integer, AnnotationMirror> result = new HashMap<>();
+        for (int var = 1; var <= maxVar; var++) {
+            final int positive = component[node(var)];
+            final int negative = component[node(-var)];
+            if (positive == negative) {
+                logger.warning("Not solvable, variable " + var + " is equivalent to its negation");
+                return new DefaultInferenceSolution(new HashMap<Integer, AnnotationMirror>(), Quality.UNSOLVED);
+            }
+
+            // Components are numbered in reverse topological order, so the literal whose component
+            // comes later in topological order has the smaller number.  As in MaxSat2TypeSolver a
+            // positive literal means bottom.
+            result.put(var, positive < negative ? bottom : top);
+        }
+
+        logger.info(String.format("Solved %d 2-SAT clauses over %d variables in %d ms",
+                clauses.size(), maxVar, System.currentTimeMillis() - start));
+        return new DefaultInferenceSolution(result);
+    }
+
+    /**
+     * The node of a literal in the implication graph.  Negative literals come first so that
+     * unconstrained variables default to top, i.e. the negative literal.
+     */
+    private static int node(int literal) {
+        return literal < 0 ? 2 * -literal : 2 * literal + 1;
+    }
+
+    private static boolean isTwoSat(Collection<Constraint> constraints) {
+        for (final Constraint constraint : constraints) {
+            if (constraint instanceof ExistentialConstraint || constraint instanceof PreferenceConstraint) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,65 @@
+package checkers.inference.util;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size bit set that can be updated by several threads at once without locking.
+ * set reports whether the calling thread was the one that set the bit, which lets concurrent
+ * graph traversals claim each node exactly once.
+ */
+public final class AtomicBitSet {
+
+    private final AtomicLongArray words;
+    private final int size;
+
+    public AtomicBitSet(int size) {
+        this.size = size;
+        this.words = new AtomicLongArray((size + 63) >>> 6);
+    }
+
+    /**
+     * Set the bit at index.
+     * @return true if the bit was not set before, i.e. this call changed the set
+     */
+    public boolean set(int index) {
+        checkIndex(index);
+        final int wordIndex = index >>> 6;
+        final long mask = 1L << index;
+        while (true) {
+            final long word = words.get(wordIndex);
+            if ((word & mask) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(wordIndex, word, word | mask)) {
+                return true;
+            }
+        }
+    }
+
+    public boolean get(int index) {
+        checkIndex(index);
+        return (words.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a copy of this set as a java.util.BitSet.  Bits set concurrently with this call may or may not be included.
+     */
+    public BitSet toBitSet() {
+        final long[] copy = new long[words.length()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = words.get(i);
+        }
+        return BitSet.valueOf(copy);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " size " + size);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package checkers.inference.util;
+
+import java.util.Arrays;
+
+/**
+ * A union-find (disjoint set) structure over non-negative ints, e.g. slot ids.  Uses union by size
+ * and path halving, so a sequence of n operations runs in nearly linear time.
+ *
+ * Every int starts out in its own set.  The structure grows as larger ints are used, callers do
+ * not need to know the largest id up front.
+ */
+public final class IntUnionFind {
+
+    private static final int MIN_CAPACITY = 64;
+
+    // parent[i] == i for the representative of a set, a negative value means i was never touched
+    private int[] parent;
+    private int[] size;
+
+    private int mergeCount = 0;
+
+    public IntUnionFind() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntUnionFind(int expectedMax) {
+        parent = new int[Math.max(MIN_CAPACITY, expectedMax + 1)];
+        size = new int[parent.length];
+        Arrays.fill(parent, -1);
+    }
+
+    /**
+     * @return the representative of the set containing value
+     */
+    public int find(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        if (value >= parent.length || parent[value] < 0) {
+            return value;
+        }
+
+        int current = value;
+        while (parent[current] != current) {
+            parent[current] = parent[parent[current]];
+            current = parent[current];
+        }
+        return current;
+    }
+
+    /**
+     * Merge the sets containing first and second.
+     * @return the representative of the merged set
+     */
+    public int union(int first, int second) {
+        int firstRoot = touch(first);
+        int secondRoot = touch(second);
+        if (firstRoot == secondRoot) {
+            return firstRoot;
+        }
+
+        if (size[firstRoot] < size[secondRoot]) {
+            final int tmp = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = tmp;
+        }
+        parent[secondRoot] = firstRoot;
+        size[firstRoot] += size[secondRoot];
+        mergeCount++;
+        return firstRoot;
+    }
+
+    /**
+     * @return true if value is the representative of its set, i.e. it was not merged into another value
+     */
+    public boolean isRepresentative(int value) {
+        return find(value) == value;
+    }
+
+    /**
+     * @return the number of unions that merged two distinct sets, i.e. the number of values
+     * that are no longer representatives
+     */
+    public int getMergeCount() {
+        return mergeCount;
+    }
+
+    private int touch(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        if (value >= parent.length) {
+            final int oldLength = parent.length;
+            final int newLength = Math.max(oldLength * 2, value + 1);
+            parent = Arrays.copyOf(parent, newLength);
+            size = Arrays.copyOf(size, newLength);
+            Arrays.fill(parent, oldLength, newLength, -1);
+        }
+        if (parent[value] < 0) {
+            parent[value] = value;
+            size[value] = 1;
+            return value;
+        }
+        return find(value);
+    }
+}
@@ -0,0 +1,53 @@
+package checkers.inference.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import checkers.inference.util.JaifFileReader.Block;
+import checkers.inference.util.JaifFileReader.JaifPackage;
+
+/**
+ * Merges several JAIF files, e.g. the source and the sink JAIF of a combined sparta inference run,
+ * into one JAIF that can be inserted with a single run of insert-annotations-to-source.
+ *
+ * JaifBuilder already writes a separate "package" entry for every class, and the AFU merges
+ * repeated package and class entries, so the packages of all JAIFs are simply written one after the
+ * other.  The only entries that may not be repeated are annotation definitions, so a definition is
+ * only written the first time it occurs in a package.
+ */
+public class JaifMerger {
+
+    private static final String ANNOTATION_DEFINITION_PREFIX = "annotation @";
+
+    /**
+     * Write the merged contents of jaifs, in order, to output.
+     */
+    public static void merge(List<File> jaifs, File output) throws IOException {
+        final Set<String> definitions = new HashSet<>();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(output))) {
+            for (File jaif : jaifs) {
+                for (JaifPackage jaifPackage : new JaifFileReader(jaif)) {
+                    if (jaifPackage.name == null) {
+                        // An empty JAIF
+                        continue;
+                    }
+
+                    writer.write("package " + jaifPackage.name + ":\n");
+                    for (Block block : jaifPackage.entries) {
+                        if (block.lines.get(0).startsWith(ANNOTATION_DEFINITION_PREFIX)
+                                && !definitions.add(jaifPackage.name + "\n" + block)) {
+                            continue;
+                        }
+                        writer.write(block.toString());
+                        writer.write("\n\n");
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package checkers.inference.util;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash set of primitive longs.  Unlike a HashSet&lt;Long&gt;, adding and
+ * querying values does not allocate (except when the table is resized).
+ *
+ * Used to record compact keys, e.g. two slot ids packed into one long.
+ */
+public final class LongHashSet {
+
+    // A value that can never be a key; if the user adds it we record it separately
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] table;
+    private int size;
+    private boolean containsEmpty;
+
+    public LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongHashSet(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+    }
+
+    /**
+     * @return true if value was not already in this set
+     */
+    public boolean add(final long value) {
+        if (value == EMPTY) {
+            final boolean added = !containsEmpty;
+            containsEmpty = true;
+            return added;
+        }
+
+        int index = indexOf(value, table.length);
+        while (table[index] != EMPTY) {
+            if (table[index] == value) {
+                return false;
+            }
+            index = (index + 1) & (table.length - 1);
+        }
+
+        table[index] = value;
+        size++;
+        if (size * 2 > table.length) {
+            resize();
+        }
+        return true;
+    }
+
+    public boolean contains(final long value) {
+        if (value == EMPTY) {
+            return containsEmpty;
+        }
+
+        int index = indexOf(value, table.length);
+        while (table[index] != EMPTY) {
+            if (table[index] == value) {
+                return true;
+            }
+            index = (index + 1) & (table.length - 1);
+        }
+        return false;
+    }
+
+    public int size() {
+        return containsEmpty ? size + 1 : size;
+    }
+
+    public void clear() {
+        Arrays.fill(table, EMPTY);
+        size = 0;
+        containsEmpty = false;
+    }
+
+    /**
+     * Packs two ints into a single long key, the first int in the high bits.
+     */
+    public static long pack(final int high, final int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    private void resize() {
+        final long[] oldTable = table;
+        final long[] newTable = new long[oldTable.length << 1];
+        Arrays.fill(newTable, EMPTY);
+
+        for (final long value : oldTable) {
+            if (value != EMPTY) {
+                int index = indexOf(value, newTable.length);
+                while (newTable[index] != EMPTY) {
+                    index = (index + 1) & (newTable.length - 1);
+                }
+                newTable[index] = value;
+            }
+        }
+        table = newTable;
+    }
+
+    private static int indexOf(final long value, final int length) {
+        // Spread the bits (murmur3 finalizer) since keys are often small consecutive ids
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash & (length - 1);
+    }
+}
@@ -0,0 +1,95 @@
+package checkers.inference.util;
+
+import java.util.Arrays;
+
+/**
+ * Iterative version of Tarjan's strongly connected components algorithm over graphs in compressed
+ * adjacency form, so that long chains of edges cannot overflow the call stack.
+ *
+ * Components are numbered in the order Tarjan's algorithm completes them, which is a reverse
+ * topological order of the condensed graph: if there is an edge from component a to a different
+ * component b, then b &lt; a.
+ */
+public final class StronglyConnectedComponents {
+
+    private StronglyConnectedComponents() {
+    }
+
+    /**
+     * Find the strongly connected components of the graph whose edges from node n are
+     * targets[offsets[n] ... offsets[n + 1]).
+     * @return the component index of each node
+     */
+    public static int[] compute(int nodeCount, int[] offsets, int[] targets) {
+        final int[] index = new int[nodeCount];
+        final int[] lowLink = new int[nodeCount];
+        final int[] component = new int[nodeCount];
+        final boolean[] onStack = new boolean[nodeCount];
+        Arrays.fill(index, -1);
+
+        // Tarjan's stack of visited nodes not yet assigned to a component
+        final int[] stack = new int[nodeCount];
+        int stackTop = 0;
+
+        // The explicit call stack: the node being visited and the next edge to follow from it
+        final int[] callNode = new int[nodeCount];
+        final int[] callEdge = new int[nodeCount];
+        int callTop = 0;
+
+        int nextIndex = 0;
+        int componentCount = 0;
+
+        for (int root = 0; root < nodeCount; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+
+            index[root] = lowLink[root] = nextIndex++;
+            stack[stackTop++] = root;
+            onStack[root] = true;
+            callNode[callTop] = root;
+            callEdge[callTop] = offsets[root];
+            callTop++;
+
+            while (callTop > 0) {
+                final int node = callNode[callTop - 1];
+                final int edge = callEdge[callTop - 1];
+
+                if (edge < offsets[node + 1]) {
+                    callEdge[callTop - 1]++;
+                    final int target = targets[edge];
+                    if (index[target] == -1) {
+                        index[target] = lowLink[target] = nextIndex++;
+                        stack[stackTop++] = target;
+                        onStack[target] = true;
+                        callNode[callTop] = target;
+                        callEdge[callTop] = offsets[target];
+                        callTop++;
+                    } else if (onStack[target]) {
+                        lowLink[node] = Math.min(lowLink[node], index[target]);
+                    }
+                    continue;
+                }
+
+                // All edges of node have been followed
+                callTop--;
+                if (callTop > 0) {
+                    final int parent = callNode[callTop - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+
+                if (lowLink[node] == index[node]) {
+                    int member;
+                    do {
+                        member = stack[--stackTop];
+                        onStack[member] = false;
+                        component[member] = componentCount;
+                    } while (member != node);
+                    componentCount++;
+                }
+            }
+        }
+
+        return component;
+    }
+}
@@ -7,8 +7,11 @@ import org.checkerframework.javacutil.AnnotationUtils;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
@@ -20,6 +23,13 @@ import sparta.checkers.qual.Source;
 public class IFlowUtils {
     private static PFPermission ANY = new PFPermission(FlowPermission.ANY);
 
+    /**
+     * The compiled pattern of each parent parameter passed to wildcardMatch.  Subtype checks of
+     * parameterized permissions match the same few parameters over and over, and the parameters
+     * all come from the annotations of the program being checked, so this stays small.
+     */
+    private static final Map<String, Pattern> WILDCARD_PATTERNS = new ConcurrentHashMap<>();
+
     Set<PFPermission> sources;
     Set<PFPermission> sinks;
 
@@ -448,9 +458,17 @@ public class IFlowUtils {
         return false;
     }
 
+    /**
+     * Whether child matches parent, where each * in parent matches any String.  The rest of parent
+     * is a regular expression.  Each parent is compiled once, see WILDCARD_PATTERNS.
+     */
     public static boolean wildcardMatch(String child, String parent) {
-        String regex = parent.replaceAll("\\*", "(.*)");
-        return child.matches(regex);
+        Pattern pattern = WILDCARD_PATTERNS.get(parent);
+        if (pattern == null) {
+            pattern = Pattern.compile(parent.replace("*", "(.*)"));
+            WILDCARD_PATTERNS.put(parent, pattern);
+        }
+        return pattern.matcher(child).matches();
     }
 
     public static AnnotationMirror createAnnoFromSink(final Set<PFPermission> sinks,
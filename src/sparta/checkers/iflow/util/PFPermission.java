@@ -3,7 +3,9 @@ package sparta.checkers.iflow.util;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -14,6 +16,12 @@ public class PFPermission implements Comparable<PFPermission> {
 
     public static final PFPermission ANY = new PFPermission(
             FlowPermission.ANY);
+
+    /**
+     * The PFPermission of each String parsed by convertStringToPFPermission.
+     */
+    private static final Map<String, PFPermission> INTERNED = new ConcurrentHashMap<>();
+
     private final FlowPermission permission;
     private final List<String> parameters;
 
@@ -24,7 +32,8 @@ public class PFPermission implements Comparable<PFPermission> {
 
     public PFPermission(FlowPermission permission, List<String> parameters) {
         this.permission = permission;
-        this.parameters = parameters;
+        // Copy the parameters, PFPermissions are immutable because they are interned
+        this.parameters = new ArrayList<String>(parameters);
         if(parameters.isEmpty()) {
             this.parameters.add("*");
         }
@@ -132,15 +141,6 @@ public class PFPermission implements Comparable<PFPermission> {
     }
 
 
-    public void removeStar() {
-        this.parameters.remove("*");
-    }
-
-
-    public void addParameters(List<String> params) {
-        this.parameters.addAll(params);
-    }
-
     public static boolean isValidPFPermission(String perm) {
         Matcher matcher = PARAMETERIZED_PERMISSION_REGEX.matcher(perm);
         if (matcher.matches()) {
@@ -158,11 +158,25 @@ public class PFPermission implements Comparable<PFPermission> {
      * PERMISSION
      * PERMISSION("param1")
      * Parameters cannot contain quotes or commas
+     *
+     * Parsed permissions are interned, so the same String always returns the same, shared,
+     * PFPermission, which is safe because PFPermissions are immutable.
      * @param pfpString
      * @return
      */
     public static PFPermission convertStringToPFPermission(String pfpString) {
         pfpString = pfpString.trim();
+        PFPermission interned = INTERNED.get(pfpString);
+        if (interned == null) {
+            interned = parse(pfpString);
+            if (interned != null) {
+                INTERNED.put(pfpString, interned);
+            }
+        }
+        return interned;
+    }
+
+    private static PFPermission parse(String pfpString) {
         List<String> formattedParams = new ArrayList<String>();
         Matcher matcher = PARAMETERIZED_PERMISSION_REGEX.matcher(pfpString);
         if (matcher.matches()) {
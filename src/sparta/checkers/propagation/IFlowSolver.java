@@ -4,14 +4,15 @@ import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.framework.util.AnnotationBuilder;
 
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 import java.util.logging.Logger;
 
 import javax.annotation.processing.ProcessingEnvironment;
@@ -51,9 +52,12 @@ import sparta.checkers.qual.Source;
  * For both modes, an equality constraint causes the Sets for both involved Slots
  * to be equal and include all Strings from either set.
  *
- * The algorithm processes list of constraints, adding the Strings to the inferredValues
- * map as needed. The entire list of constraints is processed repeatedly until the inferredValues map
- * no longer changes.
+ * Each permission String is interned to a small id and the set of Strings of each slot is held as
+ * a fixed-width bitset over these ids.  Constraints are turned into flow edges, e.g. for sink
+ * solving subtype &lt;: supertype is an edge from supertype to subtype.  Edges from constants seed the
+ * sets of their variables once.  Edges between variables are indexed by their source, and a
+ * worklist re-evaluates only the edges leaving a variable whose set changed, until no set changes.
+ * Sets only grow, so each variable is processed at most (number of permissions + 1) times.
  *
  * @author mcarthur
  */
@@ -68,9 +72,25 @@ public abstract class IFlowSolver implements InferenceSolver {
     private Map<String, String> configuration;
 
     /**
-     * Map of inferred Strings for an VariableSlot's id.
+     * Dictionary of the permission Strings found in constants, a String's id is its index.
      */
-    private final Map<Integer, Set<String>> inferredValues = new HashMap<>();
+    private final Map<String, Integer> permissionIds = new HashMap<>();
+    private final List<String> permissionNames = new ArrayList<>();
+
+    /**
+     * Number of longs in each bitset.
+     */
+    private int words;
+
+    /**
+     * The bitset of inferred Strings of each variable id, words longs per id.
+     */
+    private long[] inferredValues;
+
+    /**
+     * The variables that occur in a constraint, only these are part of the solution.
+     */
+    private BitSet inferredVariables;
 
     // private final Map<String, Set<String>> flowPolicy = new HashMap<>();
 
@@ -85,143 +105,257 @@ public abstract class IFlowSolver implements InferenceSolver {
         this.processingEnvironment = processingEnvironment;
         this.configuration = configuration;
 
-        // Fixed point
-        boolean changed = true;
-        while (changed) {
-            changed = false;
-
-            for (Constraint constraint : constraints) {
-                if (constraint instanceof SubtypeConstraint) {
-                    Slot subtype = ((SubtypeConstraint)constraint).getSubtype();
-                    Slot supertype = ((SubtypeConstraint)constraint).getSupertype();
-
-                    Set<String> subtypePerms = getInferredSlotPermissions(subtype);
-                    Set<String> supertypePerms = getInferredSlotPermissions(supertype);
-
-                    if (isSinkSolver()) {
-                        if (subtype.isVariable()) {
-                            changed |= subtypePerms.addAll(supertypePerms);
-                        }
-                    } else {
-                        if (supertype.isVariable()) {
-                            changed |= supertypePerms.addAll(subtypePerms);
+        // The permission Strings of each constant, which also fixes the width of the bitsets
+        final Map<Slot, long[]> constantValues = new IdentityHashMap<>();
+        final Map<Slot, List<String>> constantStrings = new IdentityHashMap<>();
+        int maxId = -1;
+        for (Constraint constraint : constraints) {
+            if (constraint instanceof SubtypeConstraint || constraint instanceof EqualityConstraint) {
+                for (Slot slot : constraint.getSlots()) {
+                    if (slot.isVariable()) {
+                        if (slot.getKind() == Kind.EXISTENTIAL_VARIABLE) {
+                            throw new IllegalArgumentException("Unexpected variable type:" + slot);
                         }
+                        maxId = Math.max(maxId, ((VariableSlot) slot).getId());
+                    } else if (slot.isConstant() && !constantStrings.containsKey(slot)) {
+                        constantStrings.put(slot, getConstantPermissions((ConstantSlot) slot));
                     }
-                } else if (constraint instanceof EqualityConstraint) {
-                    Slot first = ((EqualityConstraint)constraint).getFirst();
-                    Slot second = ((EqualityConstraint)constraint).getSecond();
+                }
+            }
+        }
+        words = Math.max(1, (permissionNames.size() + 63) >>> 6);
+        for (Entry<Slot, List<String>> entry : constantStrings.entrySet()) {
+            final long[] bits = new long[words];
+            for (String permission : entry.getValue()) {
+                final int id = permissionIds.get(permission);
+                bits[id >>> 6] |= 1L << id;
+            }
+            constantValues.put(entry.getKey(), bits);
+        }
 
-                    Set<String> firstPerms = getInferredSlotPermissions(first);
-                    Set<String> secondPerms = getInferredSlotPermissions(second);
+        inferredValues = new long[(maxId + 1) * words];
+        inferredVariables = new BitSet(maxId + 1);
 
-                    if (first.isVariable()) {
-                        changed |= firstPerms.addAll(secondPerms);
+        // Flow edges between variables, values flow from source to target
+        int[] sources = new int[16];
+        int[] targets = new int[16];
+        int edgeCount = 0;
+        int ignoredCount = 0;
+        for (Constraint constraint : constraints) {
+            final Slot from;
+            final Slot to;
+            if (constraint instanceof SubtypeConstraint) {
+                final Slot subtype = ((SubtypeConstraint) constraint).getSubtype();
+                final Slot supertype = ((SubtypeConstraint) constraint).getSupertype();
+                markInferred(subtype);
+                markInferred(supertype);
+                from = isSinkSolver() ? supertype : subtype;
+                to = isSinkSolver() ? subtype : supertype;
+            } else if (constraint instanceof EqualityConstraint) {
+                final Slot first = ((EqualityConstraint) constraint).getFirst();
+                final Slot second = ((EqualityConstraint) constraint).getSecond();
+                markInferred(first);
+                markInferred(second);
+                if (second.isVariable() && first.isVariable()) {
+                    if (edgeCount + 2 > sources.length) {
+                        sources = Arrays.copyOf(sources, sources.length * 2);
+                        targets = Arrays.copyOf(targets, targets.length * 2);
                     }
+                    sources[edgeCount] = ((VariableSlot) second).getId();
+                    targets[edgeCount++] = ((VariableSlot) first).getId();
+                } else if (first.isVariable() && constantValues.containsKey(second)) {
+                    seed(((VariableSlot) first).getId(), constantValues.get(second));
+                }
+                from = first;
+                to = second;
+            } else {
+                ignoredCount++;
+                continue;
+            }
 
-                    if (second.isVariable()) {
-                        changed |= secondPerms.addAll(firstPerms);
-                    }
-                } else {
-                    logger.info("Ignoring constraint type: " + constraint.getClass());
+            if (!to.isVariable()) {
+                continue;
+            }
+            final int target = ((VariableSlot) to).getId();
+            if (from.isVariable()) {
+                if (edgeCount == sources.length) {
+                    sources = Arrays.copyOf(sources, sources.length * 2);
+                    targets = Arrays.copyOf(targets, targets.length * 2);
                 }
+                sources[edgeCount] = ((VariableSlot) from).getId();
+                targets[edgeCount++] = target;
+            } else if (constantValues.containsKey(from)) {
+                seed(target, constantValues.get(from));
             }
         }
+        if (ignoredCount > 0) {
+            logger.info("Ignoring " + ignoredCount + " constraints that are neither subtype nor equality constraints");
+        }
+
+        propagate(maxId, sources, targets, edgeCount);
 
         Map<Integer, AnnotationMirror> result = createAnnotations();
 
         return new DefaultInferenceSolution(result);
     }
 
+    /**
+     * Iterate to the fixpoint: OR the set of each changed variable into the sets of the variables
+     * its edges lead to, re-queueing every variable whose set grew.
+     */
+    private void propagate(int maxId, int[] sources, int[] targets, int edgeCount) {
+        final int[] offsets = new int[maxId + 2];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            offsets[sources[edge] + 1]++;
+        }
+        for (int id = 0; id <= maxId; id++) {
+            offsets[id + 1] += offsets[id];
+        }
+        final int[] adjacent = new int[edgeCount];
+        final int[] fill = Arrays.copyOf(offsets, maxId + 1);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            adjacent[fill[sources[edge]]++] = targets[edge];
+        }
+
+        // Each variable is in the queue at most once, so a ring buffer of all ids suffices
+        final int[] queue = new int[maxId + 1];
+        final BitSet queued = new BitSet(maxId + 1);
+        int head = 0;
+        int count = 0;
+        for (int id = 0; id <= maxId; id++) {
+            if (offsets[id] != offsets[id + 1] && !isEmpty(id)) {
+                queue[count++] = id;
+                queued.set(id);
+            }
+        }
+
+        while (count > 0) {
+            final int id = queue[head];
+            head = (head + 1) % queue.length;
+            count--;
+            queued.clear(id);
+
+            for (int edge = offsets[id]; edge < offsets[id + 1]; edge++) {
+                final int target = adjacent[edge];
+                if (or(target, id) && !queued.get(target)) {
+                    queue[(head + count) % queue.length] = target;
+                    count++;
+                    queued.set(target);
+                }
+            }
+        }
+    }
+
+    /**
+     * OR the set of source into the set of target.
+     * @return true if the set of target changed
+     */
+    private boolean or(int target, int source) {
+        boolean changed = false;
+        for (int word = 0; word < words; word++) {
+            final long before = inferredValues[target * words + word];
+            final long after = before | inferredValues[source * words + word];
+            if (after != before) {
+                inferredValues[target * words + word] = after;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private void seed(int id, long[] bits) {
+        for (int word = 0; word < words; word++) {
+            inferredValues[id * words + word] |= bits[word];
+        }
+    }
+
+    private boolean isEmpty(int id) {
+        for (int word = 0; word < words; word++) {
+            if (inferredValues[id * words + word] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void markInferred(Slot slot) {
+        if (slot.isVariable()) {
+            inferredVariables.set(((VariableSlot) slot).getId());
+        }
+    }
+
     private Map<Integer, AnnotationMirror> createAnnotations() {
-        // Create annotations of the inferred sets.
+        // Create annotations of the inferred sets, once per distinct set
+        final Integer any = permissionIds.get("ANY");
+        final Map<List<String>, AnnotationMirror> annotations = new HashMap<>();
         Map<Integer, AnnotationMirror> result = new HashMap<>();
-        for (Entry<Integer, Set<String>> inferredEntry : inferredValues.entrySet()) {
-            Set<String> strings = inferredEntry.getValue();
-            if (!(strings.size() == 1 && strings.contains("ANY"))) {
-                strings.remove("ANY");
-                AnnotationMirror atm;
-                if (isSinkSolver()) {
-                    if (strings.size() == 0 && "false".equalsIgnoreCase(configuration.get(PRINT_EMPTY_SINKS_KEY))) {
-                        continue;
+        for (int id = inferredVariables.nextSetBit(0); id >= 0; id = inferredVariables.nextSetBit(id + 1)) {
+            final List<String> strings = new ArrayList<>();
+            boolean hasAny = false;
+            for (int word = 0; word < words; word++) {
+                long bits = inferredValues[id * words + word];
+                while (bits != 0) {
+                    final int permission = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    if (any != null && permission == any) {
+                        hasAny = true;
+                    } else {
+                        strings.add(permissionNames.get(permission));
                     }
-                    atm = createAnnotationMirror(strings, Sink.class);
-                } else {
-                    if (strings.size() == 0 && "false".equalsIgnoreCase(configuration.get(PRINT_EMPTY_SOURCES_KEY))) {
+                }
+            }
+
+            if (!(hasAny && strings.isEmpty())) {
+                if (strings.size() == 0) {
+                    final String printEmptyKey = isSinkSolver() ? PRINT_EMPTY_SINKS_KEY : PRINT_EMPTY_SOURCES_KEY;
+                    if ("false".equalsIgnoreCase(configuration.get(printEmptyKey))) {
                         continue;
                     }
-                    atm = createAnnotationMirror(strings, Source.class);
                 }
-                result.put(inferredEntry.getKey(), atm);
+                AnnotationMirror atm = annotations.get(strings);
+                if (atm == null) {
+                    atm = createAnnotationMirror(strings, isSinkSolver() ? Sink.class : Source.class);
+                    annotations.put(strings, atm);
+                }
+                result.put(id, atm);
             }
         }
         return result;
     }
 
-
     /**
-     * Look up the set of inferred Strings for a Slot.
-     *
-     * If the Slot is a VariableSlot, return its entry in inferredValues.
+     * Read the Strings used in a constant slot's value and add them to the permission dictionary.
      *
-     * If the Slot is a ConstantSlot, return an unmodifiable set based
-     * on the Strings used in the constant slots value.
-     *
-     * @param slot The slot to lookup
-     * @return The slots current Set of Strings.
+     * @param slot The constant slot to read
+     * @return The slot's Strings
      */
-    private Set<String> getInferredSlotPermissions(Slot slot) {
-        if (slot.isVariable()) {
-            if (slot.getKind() == Kind.EXISTENTIAL_VARIABLE) {
-                throw new IllegalArgumentException("Unexpected variable type:" + slot);
-            }
-            return getFlowSet(((VariableSlot) slot).getId());
-
-        } else if (slot.isConstant()) {
-            Set<String> constantSet = new HashSet<>();
-            for (Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
-                    ((ConstantSlot) slot).getValue().getElementValues().entrySet()) {
-                if (entry.getKey().getSimpleName().toString().equals("value")) {
-                    List<?> values = (List<?>) entry.getValue().getValue();
-                    for (Object elem : values) {
-                        String flowPermString = elem.toString();
-                        flowPermString = flowPermString.substring(flowPermString.lastIndexOf(".") + 1);
-                        flowPermString = flowPermString.replace("\"", "");
-                        constantSet.add(String.valueOf(flowPermString).intern());
+    private List<String> getConstantPermissions(ConstantSlot slot) {
+        List<String> constantStrings = new ArrayList<>();
+        for (Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                slot.getValue().getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().toString().equals("value")) {
+                List<?> values = (List<?>) entry.getValue().getValue();
+                for (Object elem : values) {
+                    String flowPermString = elem.toString();
+                    flowPermString = flowPermString.substring(flowPermString.lastIndexOf(".") + 1);
+                    flowPermString = flowPermString.replace("\"", "");
+                    if (!permissionIds.containsKey(flowPermString)) {
+                        permissionIds.put(flowPermString, permissionNames.size());
+                        permissionNames.add(flowPermString);
                     }
+                    constantStrings.add(flowPermString);
                 }
             }
-            //The set of constants should not be modified
-            return Collections.unmodifiableSet(constantSet);
-        } else {
-            return new HashSet<>();
-//            ErrorReporter.errorAbort("Found slot that was neither a variable or a constant: " + slot);
-//            return null; // Dead code
         }
+        return constantStrings;
     }
 
-    private AnnotationMirror createAnnotationMirror(Set<String> strings, Class<? extends Annotation> clazz) {
+    private AnnotationMirror createAnnotationMirror(List<String> strings, Class<? extends Annotation> clazz) {
         AnnotationBuilder builder = new AnnotationBuilder( processingEnvironment, clazz);
         builder.setValue("value", strings.toArray());
         return builder.build();
     }
 
-    /**
-     * Get the Set of Strings in aggregatedValues map for the given id.
-     * Create the Set and add it to the map if it does not already exist.
-     *
-     * @param id The id of the VariableSlot
-     * @return The set of Strings for the id
-     */
-    private Set<String> getFlowSet(int id) {
-        if (inferredValues.containsKey(id)) {
-            return inferredValues.get(id);
-        } else {
-            Set<String> newSet = new HashSet<>();
-            inferredValues.put(id, newSet);
-            return newSet;
-        }
-    }
-
     /**
      * Configure the mode of the solver.
      *
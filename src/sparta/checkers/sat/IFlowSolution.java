@@ -1,9 +1,14 @@
 package sparta.checkers.sat;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.logging.Level;
 
@@ -18,12 +23,28 @@ import sparta.checkers.iflow.util.PFPermission;
  * Created by smillst on 9/21/15.
  */
 public abstract class IFlowSolution implements InferenceSolution {
-    protected final Map<Integer, Set<PFPermission>> results;
     protected final Map<Integer, Boolean> idToExistance;
     protected final Map<Integer, AnnotationMirror> annotationResults;
+    protected Quality quality = Quality.OPTIMAL;
+
+    /**
+     * The permissions of all solutions in TreeSet order, a permission's bit is its index.
+     */
+    private final List<PFPermission> permissions = new ArrayList<>();
+    private final Map<PFPermission, Integer> permissionIds = new TreeMap<>();
+
+    /**
+     * The merged permission set of each variable id, words longs per id.
+     */
+    private int words;
+    private long[] results;
+
+    /**
+     * The variables that occur in any solution.
+     */
+    private final BitSet variables = new BitSet();
 
     public IFlowSolution(Collection<PermissionSolution> solutions, ProcessingEnvironment processingEnv) {
-        this.results = new HashMap<>();
         this.idToExistance = new HashMap<>();
         this.annotationResults = new HashMap<>();
 
@@ -32,42 +53,97 @@ public abstract class IFlowSolution implements InferenceSolution {
     }
 
     private void merge(Collection<PermissionSolution> solutions) {
+        int maxId = -1;
+        for (PermissionSolution solution : solutions) {
+            permissionIds.put(solution.getPermission(), null);
+            for (Integer id : solution.getResult().keySet()) {
+                maxId = Math.max(maxId, id);
+            }
+        }
+        for (Map.Entry<PFPermission, Integer> entry : permissionIds.entrySet()) {
+            entry.setValue(permissions.size());
+            permissions.add(entry.getKey());
+        }
+        words = Math.max(1, (permissions.size() + 63) >>> 6);
+        results = new long[(maxId + 1) * words];
+
         for (PermissionSolution solution : solutions) {
             mergeResults(solution);
             mergeIdToExistance(solution);
+            quality = quality.worst(solution.getQuality());
         }
     }
 
     private void mergeResults(PermissionSolution solution) {
+        final int bit = permissionIds.get(solution.getPermission());
+        final int word = bit >>> 6;
+        final long mask = 1L << bit;
         for (Map.Entry<Integer, Boolean> entry : solution.getResult().entrySet()) {
-            boolean shouldContainPermission = shouldContainPermission(entry);
-            PFPermission permission = solution.getPermission();
-
-            Set<PFPermission> permissions = results.get(entry.getKey());
-            if (permissions == null) {
-                permissions = new TreeSet<>();
-                results.put(entry.getKey(), permissions);
+            final int id = entry.getKey();
+            variables.set(id);
+            if (shouldContainPermission(entry)) {
+                results[id * words + word] |= mask;
             }
+        }
+    }
+
+    protected abstract boolean shouldContainPermission(Map.Entry<Integer, Boolean> entry);
+
+    private void createAnnotations(ProcessingEnvironment processingEnv) {
+        // A set that contains ANY is just ANY
+        final Integer any = permissionIds.get(PFPermission.ANY);
+        final long[] anyBits = new long[words];
+        if (any != null) {
+            anyBits[any >>> 6] = 1L << any;
+        }
 
-            if (shouldContainPermission) {
-                permissions.add(permission);
+        // Variables with the same set share an AnnotationMirror
+        final Map<PermissionBits, AnnotationMirror> annotations = new HashMap<>();
+        for (int id = variables.nextSetBit(0); id >= 0; id = variables.nextSetBit(id + 1)) {
+            long[] bits = Arrays.copyOfRange(results, id * words, (id + 1) * words);
+            if (any != null && (bits[any >>> 6] & anyBits[any >>> 6]) != 0) {
+                bits = anyBits;
             }
+            final PermissionBits key = new PermissionBits(bits);
+            AnnotationMirror anno = annotations.get(key);
+            if (anno == null) {
+                anno = createAnnotationFromPermissions(processingEnv, toPermissions(bits));
+                annotations.put(key, anno);
+            }
+            annotationResults.put(id, anno);
+        }
+    }
 
-            if (permissions.contains(PFPermission.ANY) && permissions.size() > 1) {
-                permissions.clear();
-                permissions.add(PFPermission.ANY);
+    private Set<PFPermission> toPermissions(long[] bits) {
+        final Set<PFPermission> set = new TreeSet<>();
+        for (int word = 0; word < bits.length; word++) {
+            long remaining = bits[word];
+            while (remaining != 0) {
+                set.add(permissions.get((word << 6) + Long.numberOfTrailingZeros(remaining)));
+                remaining &= remaining - 1;
             }
         }
+        return set;
     }
 
-    protected abstract boolean shouldContainPermission(Map.Entry<Integer, Boolean> entry);
+    /**
+     * A permission set as a hash key.
+     */
+    private static final class PermissionBits {
+        private final long[] bits;
 
-    private void createAnnotations(ProcessingEnvironment processingEnv) {
-        for (Map.Entry<Integer, Set<PFPermission>> entry : results.entrySet()) {
-            int id = entry.getKey();
-            Set<PFPermission> permissions = entry.getValue();
-            AnnotationMirror anno = createAnnotationFromPermissions(processingEnv, permissions);
-            annotationResults.put(id, anno);
+        PermissionBits(long[] bits) {
+            this.bits = bits;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof PermissionBits && Arrays.equals(bits, ((PermissionBits) obj).bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bits);
         }
     }
 
@@ -98,4 +174,9 @@ public abstract class IFlowSolution implements InferenceSolution {
         return annotationResults.get(varId);
     }
 
+    @Override
+    public Quality getQuality() {
+        return quality;
+    }
+
 }
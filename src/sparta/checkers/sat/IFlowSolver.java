@@ -4,19 +4,50 @@ import checkers.inference.InferenceSolution;
 import checkers.inference.InferenceSolver;
 import checkers.inference.model.ConstantSlot;
 import checkers.inference.model.Constraint;
+import checkers.inference.model.ExistentialConstraint;
+import checkers.inference.model.PreferenceConstraint;
 import checkers.inference.model.Slot;
+import checkers.inference.model.serialization.ClauseBuffer;
+import checkers.inference.solver.SatSolverFactory;
+import checkers.inference.solver.SolverArgs;
+import checkers.inference.solver.SolverThreads;
 import org.checkerframework.framework.type.QualifierHierarchy;
+import org.sat4j.core.VecInt;
 import sparta.checkers.iflow.util.PFPermission;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.AnnotationMirror;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.logging.Logger;
 
 /**
  * Created by smillst on 9/17/15.
+ *
+ * Each permission is solved by an independent PermissionSolver.  The solvers run in parallel, see
+ * SolverThreads, with at most SolverArgs.THREADS_KEY ("threads") solvers at a time, default the
+ * number of processors, and the time each permission took is logged.  The threads are shared out
+ * between the permissions solved at the same time, so each PermissionSolver gets threads divided by
+ * that number for its SAT portfolio, see SatSolverFactory.  Serialization is still done on the
+ * calling thread, because the serializers read AnnotationMirrors, which javac does not guarantee to
+ * be thread safe.
+ *
+ * Memory: the clauses shared by all permissions are serialized once, but every PermissionSolver
+ * adds them to its own SAT4J instance, so each permission being solved holds a full copy of the
+ * CNF and peak memory grows with the number of permissions solved at the same time.  A single
+ * incremental instance cannot be shared instead, because each permission has its own soft clauses
+ * and the permissions are solved in parallel.  The sat-instances solver argument limits how many
+ * permissions are solved, and so how many SAT4J instances exist, at the same time.  It defaults
+ * to threads; set it lower to trade time for memory on large programs.
  */
 public abstract class IFlowSolver implements InferenceSolver {
 
+    /**
+     * The maximum number of permissions solved at the same time, each with its own SAT4J instance.
+     */
+    public static final String INSTANCES_KEY = "sat-instances";
+
+    private static final Logger logger = Logger.getLogger(IFlowSolver.class.getName());
 
     public InferenceSolution solve(Map<String, String> configuration,
                                    Collection<Slot> slots,
@@ -26,22 +57,100 @@ public abstract class IFlowSolver implements InferenceSolver {
         Collection<PFPermission> permissionsUsed = getPermissionsUsed(slots);
         List<PermissionSolver> permissionSolvers = new ArrayList<>();
 
+        //Permissions solved in parallel share the threads, the rest go to each solver's portfolio
+        final int threads = SolverArgs.getThreads(configuration);
+        final int instances = SolverArgs.getInt(configuration, INSTANCES_KEY, threads);
+        final int parallelism = Math.max(1, Math.min(Math.min(threads, instances), permissionsUsed.size()));
+        SatSolverFactory solverFactory = new SatSolverFactory(SolverArgs.withThreads(configuration, threads / parallelism));
+
+        //Constraints between variables serialize to the same clauses for every permission, so they
+        //are serialized once.  Only constraints with constants depend on the permission.
+        List<Constraint> permissionConstraints = new ArrayList<>();
+        ClauseBuffer sharedClauses = new ClauseBuffer();
+        IFlowSerializer sharedSerializer = getSerializer(PFPermission.ANY);
+        for (Constraint constraint : constraints) {
+            if (isPermissionIndependent(constraint)) {
+                for (VecInt clause : constraint.serialize(sharedSerializer)) {
+                    sharedClauses.add(clause);
+                }
+            } else {
+                permissionConstraints.add(constraint);
+            }
+        }
+        logger.info(String.format("Serialized %d constraints to %d shared clauses, %d constraints depend on the permission",
+                constraints.size() - permissionConstraints.size(), sharedClauses.size(), permissionConstraints.size()));
+
         //Configure permission solvers
         for (PFPermission permission : permissionsUsed) {
             PermissionSolver solver = new PermissionSolver(permission);
-            solver.configure(constraints, getSerializer(permission));
+            solver.configure(sharedClauses, permissionConstraints, getSerializer(permission), solverFactory);
             permissionSolvers.add(solver);
         }
 
         //Solve
-        List<PermissionSolution> solutions = new ArrayList<>();
-        for (PermissionSolver solver : permissionSolvers) {
-            solutions.add(solver.solve());
-        }
+        List<PermissionSolution> solutions = solveAll(permissionSolvers, parallelism);
 
         return getMergedSolution(processingEnvironment, solutions);
     }
 
+    /**
+     * Solve each permission, in parallel if parallelism &gt; 1.
+     * @return the solutions in the order of permissionSolvers
+     */
+    private List<PermissionSolution> solveAll(List<PermissionSolver> permissionSolvers, int parallelism) {
+        final long start = System.currentTimeMillis();
+        final long[] elapsed = new long[permissionSolvers.size()];
+        final List<Callable<PermissionSolution>> tasks = new ArrayList<>(permissionSolvers.size());
+        for (int i = 0; i < permissionSolvers.size(); i++) {
+            final int index = i;
+            final PermissionSolver solver = permissionSolvers.get(i);
+            tasks.add(new Callable<PermissionSolution>() {
+                @Override
+                public PermissionSolution call() {
+                    final long solverStart = System.currentTimeMillis();
+                    try {
+                        return solver.solve();
+                    } finally {
+                        elapsed[index] = System.currentTimeMillis() - solverStart;
+                    }
+                }
+            });
+        }
+
+        final List<PermissionSolution> solutions = SolverThreads.invokeAll(tasks, parallelism, "solving permissions");
+
+        logTimes(permissionSolvers, elapsed, parallelism, System.currentTimeMillis() - start);
+        return solutions;
+    }
+
+    private void logTimes(List<PermissionSolver> permissionSolvers, long[] elapsed, int parallelism, long total) {
+        long sum = 0;
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < permissionSolvers.size(); i++) {
+            sum += elapsed[i];
+            message.append("\n  ").append(permissionSolvers.get(i).getPermission()).append(": ").append(elapsed[i]).append(" ms");
+        }
+        logger.info(String.format("Solved %d permissions on %d threads in %d ms (%d ms sequential)%s",
+                permissionSolvers.size(), Math.max(1, parallelism), total, sum, message));
+    }
+
+    /**
+     * Only constants are serialized differently for each permission (see IFlowSerializer.isTop).
+     * ExistentialConstraints are never shared because each serializer allocates its own existence
+     * variables, and preferences are soft clauses.
+     */
+    private static boolean isPermissionIndependent(Constraint constraint) {
+        if (constraint instanceof ExistentialConstraint || constraint instanceof PreferenceConstraint) {
+            return false;
+        }
+        for (Slot slot : constraint.getSlots()) {
+            if (slot instanceof ConstantSlot) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private Collection<PFPermission> getPermissionsUsed(Collection<Slot> solts) {
         Set<PFPermission> permissions = new TreeSet<>();
         for (Slot slot : solts) {
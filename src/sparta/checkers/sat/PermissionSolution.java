@@ -1,5 +1,6 @@
 package sparta.checkers.sat;
 
+import checkers.inference.InferenceSolution.Quality;
 import sparta.checkers.iflow.util.PFPermission;
 
 import java.util.HashMap;
@@ -12,11 +13,18 @@ public class PermissionSolution {
     Map<Integer, Boolean> result;
     Map<Integer, Boolean> idToExistence;
     PFPermission permission;
+    Quality quality;
 
     public PermissionSolution(Map<Integer, Boolean> result, Map<Integer, Boolean> idToExistence, PFPermission permission) {
+        this(result, idToExistence, permission, Quality.OPTIMAL);
+    }
+
+    public PermissionSolution(Map<Integer, Boolean> result, Map<Integer, Boolean> idToExistence, PFPermission permission,
+                              Quality quality) {
         this.result = result;
         this.idToExistence = idToExistence;
         this.permission = permission;
+        this.quality = quality;
     }
 
     /**
@@ -25,7 +33,7 @@ public class PermissionSolution {
      * @param permission
      */
     private PermissionSolution(PFPermission permission) {
-        this(new HashMap<Integer, Boolean>(), new HashMap<Integer, Boolean>(), permission);
+        this(new HashMap<Integer, Boolean>(), new HashMap<Integer, Boolean>(), permission, Quality.UNSOLVED);
     }
 
     public Map<Integer, Boolean> getIdToExistence() {
@@ -40,6 +48,10 @@ public class PermissionSolution {
         return permission;
     }
 
+    public Quality getQuality() {
+        return quality;
+    }
+
     public static PermissionSolution noSolution(PFPermission permission) {
         return new PermissionSolution(permission);
     }
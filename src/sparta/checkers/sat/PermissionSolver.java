@@ -2,34 +2,67 @@ package sparta.checkers.sat;
 
 import checkers.inference.*;
 import checkers.inference.model.Constraint;
+import checkers.inference.model.serialization.ClauseBuffer;
 import org.sat4j.core.VecInt;
 import org.sat4j.maxsat.WeightedMaxSatDecorator;
+import org.sat4j.specs.ContradictionException;
+import checkers.inference.solver.SatSolverFactory;
 import sparta.checkers.iflow.util.PFPermission;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Solves the constraints of an IFlowSolver for a single permission.
+ *
+ * Each call to solve creates its own SAT4J instance and adds the shared clauses, which are the same
+ * for every permission, and this permission's clauses to it.  The instance only lives until solve
+ * returns, and the permission's clauses are released then, so the memory a PermissionSolver holds
+ * while it waits or after it finished is small.  How many instances exist at once is limited by
+ * IFlowSolver, see IFlowSolver.INSTANCES_KEY.
+ */
 public class PermissionSolver {
 
     private SlotManager slotManager;
     private PFPermission permission;
     private IFlowSerializer serializer;
-    List<VecInt> clauses;
+    private SatSolverFactory solverFactory;
+    // Clauses that are the same for every permission, shared by all PermissionSolvers
+    private ClauseBuffer sharedClauses;
+    // Only preferences are soft, all other constraints must hold for the result to type check
+    List<VecInt> hardClauses;
+    List<VecInt> softClauses;
+    List<Integer> softWeights;
 
     public PermissionSolver(PFPermission permission) {
         this.permission = permission;
     }
 
-    public void configure(Collection<Constraint> constraints, IFlowSerializer serializer) {
+    /**
+     * @param sharedClauses the clauses of the constraints that do not depend on the permission
+     * @param constraints the remaining constraints, converted with this permission's serializer
+     */
+    public void configure(ClauseBuffer sharedClauses, Collection<Constraint> constraints, IFlowSerializer serializer,
+                          SatSolverFactory solverFactory) {
+        this.sharedClauses = sharedClauses;
         this.serializer = serializer;
+        this.solverFactory = solverFactory;
         this.slotManager = InferenceMain.getInstance().getSlotManager();
-        this.clauses = convertToCNF(constraints);
+        convertToCNF(constraints);
     }
 
-    private List<VecInt> convertToCNF(Collection<Constraint> constraints) {
-        return serializer.convertAll(constraints);
+    private void convertToCNF(Collection<Constraint> constraints) {
+        this.hardClauses = new ArrayList<>();
+        this.softClauses = new ArrayList<>();
+        this.softWeights = new ArrayList<>();
+        serializer.convertAll(constraints, hardClauses, softClauses, softWeights);
+    }
+
+    public PFPermission getPermission() {
+        return permission;
     }
 
     public PermissionSolution solve() {
@@ -39,29 +72,36 @@ public class PermissionSolver {
 
 
         final int totalVars = slotManager.nextId();
-        final int totalClauses = clauses.size();
+        final int totalClauses = sharedClauses.size() + hardClauses.size() + softClauses.size();
 
         try {
             //**** Prep Solver ****
-            //org.sat4j.pb.SolverFactory.newBoth() Runs both of sat4j solves and uses the result of the first to finish
-            final WeightedMaxSatDecorator solver = new WeightedMaxSatDecorator(org.sat4j.pb.SolverFactory.newBoth());
+            //The engine, portfolio and timeout are configured by the solver arguments, see SatSolverFactory
+            final WeightedMaxSatDecorator solver = solverFactory.newMaxSatSolver();
 
             solver.newVar(totalVars);
             solver.setExpectedNumberOfClauses(totalClauses);
-            //Arbitrary timeout
-            solver.setTimeoutMs(1000000);
-            for (VecInt clause : clauses) {
-                solver.addSoftClause(clause);
+            //Without soft clauses the decorator adds no blocking variables and this is plain SAT
+            //SAT4J copies the literals of each clause, so one VecInt can be reused for the shared clauses
+            final VecInt sharedClause = new VecInt();
+            for (int i = 0; i < sharedClauses.size(); i++) {
+                solver.addHardClause(sharedClauses.get(i, sharedClause));
+            }
+            for (VecInt clause : hardClauses) {
+                solver.addHardClause(clause);
+            }
+            for (int i = 0; i < softClauses.size(); i++) {
+                solver.addSoftClause(softWeights.get(i), softClauses.get(i));
             }
 
             //**** Solve ****
-            boolean hasSolution = solver.isSatisfiable();
+            final SatSolverFactory.Result satResult = solverFactory.solve(permission.toString(), solver, !softClauses.isEmpty());
 
-            if (hasSolution) {
+            if (satResult.getModel() != null) {
 
                 //**** Remove exatential vars from solution
                 final Map<Integer, Integer> existentialToPotentialIds = serializer.getExistentialToPotentialVar();
-                int[] solution = solver.model();
+                int[] solution = satResult.getModel();
 
                 for (Integer var : solution) {
                     boolean varIsTrue = !(var < 0);
@@ -75,12 +115,21 @@ public class PermissionSolver {
                         result.put(var, varIsTrue);
                     }
                 }
-                return new PermissionSolution(result, idToExistence, permission);
+                return new PermissionSolution(result, idToExistence, permission, satResult.getQuality());
             }
 
+        } catch (ContradictionException e) {
+            // The hard clauses are trivially unsatisfiable
+            return PermissionSolution.noSolution(permission);
+
         } catch (Throwable th) {
-            VecInt lastClause = clauses.get(clauses.size() - 1);
-            throw new RuntimeException("Error MAX-SAT solving! " + lastClause, th);
+            throw new RuntimeException("Error MAX-SAT solving for permission " + permission + "!", th);
+
+        } finally {
+            //Each permission is solved once, its clauses are not needed any more
+            hardClauses = null;
+            softClauses = null;
+            softWeights = null;
         }
 
         return PermissionSolution.noSolution(permission);
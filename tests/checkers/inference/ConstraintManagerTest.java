@@ -0,0 +1,187 @@
+package checkers.inference;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.InequalityConstraint;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConstraintManagerTest {
+
+    private final VariableSlot slot1 = new VariableSlot(null, 1);
+    private final VariableSlot slot2 = new VariableSlot(null, 2);
+    private final ConstantSlot const3 = new ConstantSlot(null, 3);
+    private final ConstantSlot const4 = new ConstantSlot(null, 4);
+
+    /**
+     * Test that equivalent constraints are only stored once and counted as duplicates.
+     */
+    @Test
+    public void testDuplicates() {
+        ConstraintManager constraintManager = new ConstraintManager();
+        constraintManager.addSubtypeConstraint(slot1, slot2);
+        constraintManager.addSubtypeConstraint(slot1, slot2);
+        constraintManager.add(new SubtypeConstraint(slot1, slot2));
+
+        // Subtyping is not symmetric
+        constraintManager.addSubtypeConstraint(slot2, slot1);
+
+        // Equality is symmetric
+        constraintManager.addEqualityConstraint(slot1, slot2);
+        constraintManager.addEqualityConstraint(slot2, slot1);
+        constraintManager.add(new EqualityConstraint(slot2, slot1));
+
+        Assert.assertEquals(3, constraintManager.getConstraints().size());
+        Assert.assertEquals(4, constraintManager.getDuplicateCount());
+        Assert.assertEquals(0, constraintManager.getTrivialCount());
+    }
+
+    /**
+     * Test that constraints between a slot and itself or between two constants are dropped.
+     */
+    @Test
+    public void testTrivial() {
+        ConstraintManager constraintManager = new ConstraintManager();
+        constraintManager.addSubtypeConstraint(slot1, slot1);
+        constraintManager.addEqualityConstraint(slot1, new VariableSlot(null, 1));
+        constraintManager.addSubtypeConstraint(const3, const4);
+        constraintManager.add(new EqualityConstraint(const4, const3));
+        Assert.assertEquals(0, constraintManager.getConstraints().size());
+        Assert.assertEquals(4, constraintManager.getTrivialCount());
+
+        // A variable that is not equal to itself is unsatisfiable and must be kept
+        constraintManager.addInequalityConstraint(slot1, slot1);
+        Assert.assertTrue(constraintManager.getConstraints().contains(new InequalityConstraint(slot1, slot1)));
+        Assert.assertEquals(1, constraintManager.getUnsatisfiableCount());
+    }
+
+    /**
+     * Test that false constraints between constants are kept and counted, like self loops.
+     */
+    @Test
+    public void testUnsatisfiableConstants() {
+        ConstantSlot top = new ConstantSlot(createMirror("Top"), 5);
+        ConstantSlot bottom = new ConstantSlot(createMirror("Bottom"), 6);
+        ConstantSlot otherTop = new ConstantSlot(top.getValue(), 7);
+
+        ConstraintManager constraintManager = new ConstraintManager();
+        constraintManager.addInequalityConstraint(top, otherTop);
+        constraintManager.addEqualityConstraint(top, bottom);
+        constraintManager.addInequalityConstraint(top, bottom);
+        constraintManager.addEqualityConstraint(top, otherTop);
+
+        Assert.assertEquals(2, constraintManager.getConstraints().size());
+        Assert.assertTrue(constraintManager.getConstraints().contains(new InequalityConstraint(top, otherTop)));
+        Assert.assertTrue(constraintManager.getConstraints().contains(new EqualityConstraint(top, bottom)));
+        Assert.assertEquals(2, constraintManager.getTrivialCount());
+        Assert.assertEquals(2, constraintManager.getUnsatisfiableCount());
+
+        // Without a qualifier hierarchy subtyping between different constants cannot be evaluated
+        constraintManager.addSubtypeConstraint(top, bottom);
+        Assert.assertEquals(3, constraintManager.getConstraints().size());
+        Assert.assertEquals(2, constraintManager.getUnsatisfiableCount());
+    }
+
+    /**
+     * @return an AnnotationMirror that AnnotationUtils identifies by the given name
+     */
+    private static AnnotationMirror createMirror(String name) {
+        Name qualifiedName = mock(Name.class);
+        when(qualifiedName.toString()).thenReturn(name);
+        TypeElement element = mock(TypeElement.class);
+        when(element.getQualifiedName()).thenReturn(qualifiedName);
+        DeclaredType type = mock(DeclaredType.class);
+        when(type.asElement()).thenReturn(element);
+        AnnotationMirror mirror = mock(AnnotationMirror.class);
+        when(mirror.getAnnotationType()).thenReturn(type);
+        when(mirror.toString()).thenReturn("@" + name);
+        return mirror;
+    }
+
+    @Test
+    public void testIgnoreConstraints() {
+        ConstraintManager constraintManager = new ConstraintManager();
+        constraintManager.startIgnoringConstraints();
+        constraintManager.addSubtypeConstraint(slot1, slot2);
+        constraintManager.stopIgnoringConstraints();
+        constraintManager.addSubtypeConstraint(slot1, slot2);
+        Assert.assertEquals(1, constraintManager.getConstraints().size());
+        Assert.assertEquals(0, constraintManager.getDuplicateCount());
+    }
+
+    /**
+     * Test that the constraints view answers contains from the keys and materializes each constraint once.
+     */
+    @Test
+    public void testConstraintsView() {
+        ConstraintManager constraintManager = new ConstraintManager();
+        constraintManager.addSubtypeConstraint(slot1, slot2);
+        constraintManager.addEqualityConstraint(slot1, const3);
+
+        Set<Constraint> constraints = constraintManager.getConstraints();
+        Assert.assertTrue(constraints.contains(new SubtypeConstraint(slot1, slot2)));
+        Assert.assertFalse(constraints.contains(new SubtypeConstraint(slot2, slot1)));
+        Assert.assertTrue(constraints.contains(new EqualityConstraint(const3, slot1)));
+        Assert.assertFalse(constraints.contains(new InequalityConstraint(slot1, const3)));
+
+        // Constraints are materialized anew on each iteration, not cached
+        Constraint first = constraints.iterator().next();
+        Assert.assertEquals(first, constraints.iterator().next());
+        Assert.assertNotSame(first, constraints.iterator().next());
+
+        constraintManager.addInequalityConstraint(slot2, const4);
+        List<Constraint> all = new ArrayList<>(constraints);
+        Assert.assertEquals(3, all.size());
+        Assert.assertEquals(first, all.get(0));
+        Assert.assertEquals(new InequalityConstraint(slot2, const4), all.get(2));
+    }
+
+    /**
+     * Test that listeners see each new constraint exactly once.
+     */
+    @Test
+    public void testListener() {
+        final List<Constraint> received = new ArrayList<>();
+        final boolean[] complete = {false};
+
+        ConstraintManager constraintManager = new ConstraintManager();
+        constraintManager.addListener(new ConstraintListener() {
+            @Override
+            public void constraintAdded(Constraint constraint) {
+                received.add(constraint);
+            }
+
+            @Override
+            public void generationComplete() {
+                complete[0] = true;
+            }
+        });
+
+        constraintManager.addSubtypeConstraint(slot1, slot2);
+        constraintManager.addSubtypeConstraint(slot1, slot2);
+        constraintManager.addSubtypeConstraint(slot1, slot1);
+        constraintManager.addEqualityConstraint(slot2, const3);
+        constraintManager.notifyGenerationComplete();
+
+        Assert.assertEquals(2, received.size());
+        Assert.assertEquals(new SubtypeConstraint(slot1, slot2), received.get(0));
+        Assert.assertEquals(new EqualityConstraint(slot2, const3), received.get(1));
+        Assert.assertTrue(complete[0]);
+    }
+}
@@ -0,0 +1,136 @@
+package checkers.inference;
+
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.ExistentialConstraint;
+import checkers.inference.model.InequalityConstraint;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConstraintNormalizerTest {
+
+    private final VariableSlot slot1 = new VariableSlot(null, 1);
+    private final VariableSlot slot2 = new VariableSlot(null, 2);
+    private final VariableSlot slot3 = new VariableSlot(null, 3);
+    private final VariableSlot slot4 = new VariableSlot(null, 4);
+    private final VariableSlot slot5 = new VariableSlot(null, 5);
+    private final ConstantSlot const6 = new ConstantSlot(null, 6);
+
+    /**
+     * Test that variables related by equalities are merged and other constraints are rewritten
+     * onto the representatives.
+     */
+    @Test
+    public void testEqualityCollapsing() {
+        Set<Constraint> constraints = new LinkedHashSet<>();
+        constraints.add(new EqualityConstraint(slot1, slot2));
+        constraints.add(new EqualityConstraint(slot3, slot2));
+        constraints.add(new SubtypeConstraint(slot1, slot4));
+        constraints.add(new SubtypeConstraint(slot3, slot4));
+        constraints.add(new EqualityConstraint(slot4, const6));
+        constraints.add(new InequalityConstraint(slot1, slot3));
+
+        ConstraintNormalizer normalizer = new ConstraintNormalizer(true);
+        Set<Constraint> normalized = normalizer.normalize(constraints);
+        SlotRepresentatives representatives = normalizer.getRepresentatives();
+
+        int representative = representatives.find(1);
+        Assert.assertEquals(representative, representatives.find(2));
+        Assert.assertEquals(representative, representatives.find(3));
+        Assert.assertEquals(4, representatives.find(4));
+        Assert.assertEquals(2, representatives.getMergedCount());
+
+        VariableSlot representativeSlot = (VariableSlot) representatives.representative(slot1);
+        Assert.assertEquals(representative, representativeSlot.getId());
+
+        // Both subtype constraints collapse to one, constant equalities are kept and unsatisfiable
+        // inequalities are kept for the solver to report
+        Assert.assertEquals(3, normalized.size());
+        Assert.assertTrue(normalized.contains(new SubtypeConstraint(representativeSlot, slot4)));
+        Assert.assertTrue(normalized.contains(new EqualityConstraint(slot4, const6)));
+        Assert.assertTrue(normalized.contains(new InequalityConstraint(representativeSlot, representativeSlot)));
+    }
+
+    /**
+     * Test that potential variables of existential constraints are not merged.
+     */
+    @Test
+    public void testExistentialNotMerged() {
+        Set<Constraint> constraints = new LinkedHashSet<>();
+        constraints.add(new EqualityConstraint(slot1, slot2));
+        constraints.add(new EqualityConstraint(slot2, slot3));
+        constraints.add(new ExistentialConstraint(slot1,
+                Arrays.<Constraint>asList(new EqualityConstraint(slot4, slot5)),
+                Arrays.<Constraint>asList(new SubtypeConstraint(slot3, slot4))));
+
+        ConstraintNormalizer normalizer = new ConstraintNormalizer(true);
+        normalizer.normalize(constraints);
+        SlotRepresentatives representatives = normalizer.getRepresentatives();
+
+        Assert.assertEquals(1, representatives.find(1));
+        Assert.assertEquals(representatives.find(2), representatives.find(3));
+        Assert.assertNotEquals(representatives.find(4), representatives.find(5));
+        Assert.assertEquals(1, representatives.getMergedCount());
+    }
+
+    /**
+     * Test that the variables of a subtype cycle are merged and the cycle's constraints removed.
+     */
+    @Test
+    public void testSubtypeCycleCollapsing() {
+        Set<Constraint> constraints = new LinkedHashSet<>();
+        constraints.add(new SubtypeConstraint(slot1, slot2));
+        constraints.add(new SubtypeConstraint(slot2, slot3));
+        constraints.add(new SubtypeConstraint(slot3, slot1));
+        constraints.add(new SubtypeConstraint(slot3, slot4));
+        constraints.add(new SubtypeConstraint(slot4, const6));
+
+        ConstraintNormalizer normalizer = new ConstraintNormalizer(true);
+        Set<Constraint> normalized = normalizer.normalize(constraints);
+        SlotRepresentatives representatives = normalizer.getRepresentatives();
+
+        int representative = representatives.find(1);
+        Assert.assertEquals(representative, representatives.find(2));
+        Assert.assertEquals(representative, representatives.find(3));
+        Assert.assertEquals(4, representatives.find(4));
+
+        VariableSlot representativeSlot = (VariableSlot) representatives.representative(slot3);
+        Assert.assertEquals(2, normalized.size());
+        Assert.assertTrue(normalized.contains(new SubtypeConstraint(representativeSlot, slot4)));
+        Assert.assertTrue(normalized.contains(new SubtypeConstraint(slot4, const6)));
+    }
+
+    @Test
+    public void testTransitiveReduction() {
+        Set<Constraint> constraints = new LinkedHashSet<>();
+        constraints.add(new SubtypeConstraint(slot1, slot2));
+        constraints.add(new SubtypeConstraint(slot2, slot3));
+        constraints.add(new SubtypeConstraint(slot3, slot4));
+        constraints.add(new SubtypeConstraint(slot1, slot3));
+        constraints.add(new SubtypeConstraint(slot1, slot4));
+        constraints.add(new SubtypeConstraint(slot2, slot5));
+
+        Set<Constraint> normalized = new ConstraintNormalizer(true, true).normalize(constraints);
+        Assert.assertEquals(4, normalized.size());
+        Assert.assertFalse(normalized.contains(new SubtypeConstraint(slot1, slot3)));
+        Assert.assertFalse(normalized.contains(new SubtypeConstraint(slot1, slot4)));
+    }
+
+    @Test
+    public void testPresolveDisabled() {
+        Set<Constraint> constraints = new LinkedHashSet<>();
+        constraints.add(new EqualityConstraint(slot1, slot2));
+
+        ConstraintNormalizer normalizer = new ConstraintNormalizer();
+        Assert.assertEquals(constraints, normalizer.normalize(constraints));
+        Assert.assertEquals(0, normalizer.getRepresentatives().getMergedCount());
+    }
+}
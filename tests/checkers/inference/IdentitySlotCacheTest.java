@@ -0,0 +1,93 @@
+package checkers.inference;
+
+import java.util.Collections;
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.type.DeclaredType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import checkers.inference.model.VariableSlot;
+
+public class IdentitySlotCacheTest {
+
+    @Test
+    public void testHit() {
+        IdentitySlotCache cache = new IdentitySlotCache(4);
+        AnnotationMirror mirror = new TestAnnotationMirror();
+        VariableSlot slot = new VariableSlot(null, 1);
+
+        Assert.assertNull(cache.get(mirror));
+        cache.put(mirror, slot);
+        Assert.assertSame(slot, cache.get(mirror));
+    }
+
+    /**
+     * Mirrors are compared by identity, an equal mirror is a miss.
+     */
+    @Test
+    public void testIdentity() {
+        IdentitySlotCache cache = new IdentitySlotCache(4);
+        AnnotationMirror mirror = new TestAnnotationMirror();
+        cache.put(mirror, new VariableSlot(null, 1));
+
+        Assert.assertNull(cache.get(new TestAnnotationMirror()));
+    }
+
+    /**
+     * With a single entry every put collides and evicts the previous mirror.
+     */
+    @Test
+    public void testCollision() {
+        IdentitySlotCache cache = new IdentitySlotCache(0);
+        AnnotationMirror first = new TestAnnotationMirror();
+        AnnotationMirror second = new TestAnnotationMirror();
+        VariableSlot firstSlot = new VariableSlot(null, 1);
+        VariableSlot secondSlot = new VariableSlot(null, 2);
+
+        cache.put(first, firstSlot);
+        cache.put(second, secondSlot);
+        Assert.assertNull(cache.get(first));
+        Assert.assertSame(secondSlot, cache.get(second));
+
+        cache.put(first, firstSlot);
+        Assert.assertSame(firstSlot, cache.get(first));
+        Assert.assertNull(cache.get(second));
+    }
+
+    @Test
+    public void testClear() {
+        IdentitySlotCache cache = new IdentitySlotCache(4);
+        AnnotationMirror mirror = new TestAnnotationMirror();
+        cache.put(mirror, new VariableSlot(null, 1));
+        cache.clear();
+
+        Assert.assertNull(cache.get(mirror));
+    }
+
+    private static class TestAnnotationMirror implements AnnotationMirror {
+        @Override
+        public DeclaredType getAnnotationType() {
+            return null;
+        }
+
+        @Override
+        public Map<? extends ExecutableElement, ? extends AnnotationValue> getElementValues() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TestAnnotationMirror;
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package checkers.inference;
+
+import checkers.inference.solver.TwoSatTypeSolver;
+import checkers.inference.test.CFInferenceTest;
+import org.checkerframework.framework.test.TestUtilities;
+import org.checkerframework.javacutil.Pair;
+import org.junit.runners.Parameterized.Parameters;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the interning tests with TwoSatTypeSolver, the default solver of the interning type system.
+ */
+public class InterningTwoSatTest extends CFInferenceTest {
+
+    public InterningTwoSatTest(File testFile) {
+        super(testFile,  interning.InterningChecker.class, "interning",
+              "-Anomsgtext",  "-Astubs=src/interning/jdk.astub", "-d", "tests/build/outputdir");
+    }
+
+    @Override
+    public Pair<String, List<String>> getSolverNameAndOptions() {
+        return Pair.<String, List<String>>of(TwoSatTypeSolver.class.getCanonicalName(), new ArrayList<String>());
+    }
+
+    @Parameters
+    public static List<File> getTestFiles() {
+        List<File> testfiles = new ArrayList<>();//InferenceTestUtilities.findAllSystemTests();
+        testfiles.addAll(TestUtilities.findRelativeNestedJavaFiles("testdata", "interning"));
+        return testfiles;
+    }
+}
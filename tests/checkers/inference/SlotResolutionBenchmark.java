@@ -0,0 +1,143 @@
+package checkers.inference;
+
+import org.checkerframework.javacutil.AnnotationBuilder;
+
+import java.lang.annotation.Annotation;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import checkers.inference.model.Slot;
+import checkers.inference.model.VariableSlot;
+import checkers.inference.qual.VarAnnot;
+
+/**
+ * Microbenchmark of DefaultSlotManager.getSlot(AnnotationMirror) on @VarAnnot mirrors, both when the
+ * mirror is found in the slot cache and when it is not.
+ *
+ * The cached lookups pass the canonical mirrors returned by getAnnotation, which getSlot finds by
+ * identity.  The uncached lookups pass fresh mirrors that are equal to the canonical ones but are
+ * cycled through a pool much larger than the cache, so nearly every lookup misses and reads the
+ * element values, like it does for mirrors the framework copies or rebuilds.
+ *
+ * DefaultSlotManager needs a real ProcessingEnvironment to build mirrors, so the benchmark runs as an
+ * annotation processor over an empty compilation unit.  This is not a JUnit test, run it directly
+ * with the checker-framework inference classpath:
+ *   java -cp ... checkers.inference.SlotResolutionBenchmark [numSlots] [lookups]
+ */
+public class SlotResolutionBenchmark {
+
+    // Many times the size of the DefaultSlotManager slot cache
+    private static final int UNCACHED_POOL_SIZE = 1 << 16;
+
+    public static void main(String [] args) {
+        final int numSlots = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        final int lookups  = args.length > 1 ? Integer.parseInt(args[1]) : 20000000;
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final JavaFileObject source =
+                new SimpleJavaFileObject(URI.create("string:///Empty.java"), JavaFileObject.Kind.SOURCE) {
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        return "class Empty {}";
+                    }
+                };
+
+        final JavaCompiler.CompilationTask task = compiler.getTask(null, null, null,
+                Arrays.asList("-proc:only"), null, Collections.singletonList(source));
+        task.setProcessors(Collections.singletonList(new BenchmarkProcessor(numSlots, lookups)));
+        if (!task.call()) {
+            throw new AssertionError("The benchmark compilation failed");
+        }
+    }
+
+    @SupportedAnnotationTypes("*")
+    private static class BenchmarkProcessor extends AbstractProcessor {
+        private final int numSlots;
+        private final int lookups;
+        private boolean done = false;
+
+        BenchmarkProcessor(int numSlots, int lookups) {
+            this.numSlots = numSlots;
+            this.lookups = lookups;
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            if (!done) {
+                done = true;
+                run();
+            }
+            return false;
+        }
+
+        private void run() {
+            final DefaultSlotManager slotManager = new DefaultSlotManager(processingEnv,
+                    Collections.<Class<? extends Annotation>>emptySet(), false);
+
+            final AnnotationMirror[] canonical = new AnnotationMirror[numSlots];
+            for (int i = 0; i < numSlots; i++) {
+                final VariableSlot slot = new VariableSlot(null, slotManager.nextId());
+                slotManager.addVariable(slot);
+                canonical[i] = slotManager.getAnnotation(slot);
+            }
+
+            // fresh[i] is equal to canonical[i % numSlots], and the pool holds whole copies of canonical
+            final int copies = (UNCACHED_POOL_SIZE + numSlots - 1) / numSlots;
+            final AnnotationMirror[] fresh = new AnnotationMirror[copies * numSlots];
+            for (int i = 0; i < fresh.length; i++) {
+                final AnnotationBuilder builder = new AnnotationBuilder(processingEnv, VarAnnot.class);
+                builder.setValue("value", ((VariableSlot) slotManager.getSlot(canonical[i % numSlots])).getId());
+                fresh[i] = builder.build();
+            }
+
+            // warm up both paths before timing
+            for (int i = 0; i < 3; i++) {
+                resolve(slotManager, canonical, lookups / 10);
+                resolve(slotManager, fresh, lookups / 10);
+            }
+
+            long start = System.nanoTime();
+            long checksum = resolve(slotManager, canonical, lookups);
+            final long cachedNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            checksum -= resolve(slotManager, fresh, lookups);
+            final long uncachedNanos = System.nanoTime() - start;
+
+            System.out.printf("slots=%d lookups=%d%n", numSlots, lookups);
+            System.out.printf("cached   : %8.2f ns/lookup%n", (double) cachedNanos / lookups);
+            System.out.printf("uncached : %8.2f ns/lookup%n", (double) uncachedNanos / lookups);
+            System.out.printf("speedup  : %8.2fx%n", (double) uncachedNanos / cachedNanos);
+            if (checksum != 0) {
+                throw new AssertionError("Cached and uncached lookups should find the same slots");
+            }
+        }
+
+        private static long resolve(DefaultSlotManager slotManager, AnnotationMirror[] mirrors, int lookups) {
+            long sum = 0;
+            for (int i = 0; i < lookups; i++) {
+                final Slot slot = slotManager.getSlot(mirrors[i % mirrors.length]);
+                sum += ((VariableSlot) slot).getId();
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package checkers.inference.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConstraintTableTest {
+
+    /**
+     * Test that the constraints materialized from a table are equal to the ones that were added.
+     */
+    @Test
+    public void testRoundTrip() {
+        VariableSlot slot1 = new VariableSlot(null, 1);
+        VariableSlot slot2 = new VariableSlot(null, 2);
+        VariableSlot slot3 = new VariableSlot(null, 3);
+        ConstantSlot constant = new ConstantSlot(null, 4);
+
+        List<Constraint> constraints = new ArrayList<Constraint>();
+        constraints.add(new SubtypeConstraint(slot1, slot2));
+        constraints.add(new EqualityConstraint(slot2, constant));
+        constraints.add(new InequalityConstraint(slot1, slot3));
+        constraints.add(new ComparableConstraint(slot3, slot2));
+        constraints.add(new PreferenceConstraint(slot1, constant, 7));
+        constraints.add(new CombineConstraint(slot1, slot2, slot3));
+        constraints.add(new ExistentialConstraint(slot3,
+                Arrays.<Constraint>asList(new SubtypeConstraint(slot3, slot1)),
+                Arrays.<Constraint>asList(new SubtypeConstraint(slot2, slot1), new EqualityConstraint(slot2, slot3))));
+
+        ConstraintTable table = ConstraintTable.of(constraints);
+        Assert.assertEquals(constraints.size(), table.size());
+
+        for (int row = 0; row < constraints.size() - 1; row++) {
+            Assert.assertEquals(constraints.get(row), table.get(row));
+        }
+
+        Assert.assertEquals(ConstraintTable.PREFERENCE, table.getKind(4));
+        Assert.assertEquals(7, table.getWeight(4));
+        Assert.assertEquals(3, table.getCombineResult(5));
+
+        // ExistentialConstraint does not define equals, compare its parts
+        ExistentialConstraint existential = (ExistentialConstraint) table.get(6);
+        ExistentialConstraint original = (ExistentialConstraint) constraints.get(6);
+        Assert.assertEquals(original.getPotentialVariable(), existential.getPotentialVariable());
+        Assert.assertEquals(original.potentialConstraints(), existential.potentialConstraints());
+        Assert.assertEquals(original.getAlternateConstraints(), existential.getAlternateConstraints());
+        Assert.assertEquals(2, table.getExistentialAlternate(6).size());
+    }
+
+    @Test
+    public void testNotStorable() {
+        ConstraintTable table = new ConstraintTable();
+        Assert.assertFalse(table.add(new SubtypeConstraint(null, new VariableSlot(null, 1))));
+        Assert.assertFalse(table.add(new SubtypeConstraint(new ConstantSlot(null, -1), new VariableSlot(null, 1))));
+        Assert.assertEquals(0, table.size());
+    }
+
+    /**
+     * Test that a ConstraintTableSet stores what it can in its table and iterates all constraints.
+     */
+    @Test
+    public void testConstraintTableSet() {
+        VariableSlot slot1 = new VariableSlot(null, 1);
+        VariableSlot slot2 = new VariableSlot(null, 2);
+        ConstantSlot constant = new ConstantSlot(null, 3);
+
+        Set<Constraint> constraints = new LinkedHashSet<Constraint>();
+        constraints.add(new SubtypeConstraint(slot1, slot2));
+        constraints.add(new SubtypeConstraint(null, slot2));
+        constraints.add(new PreferenceConstraint(slot1, constant, 2));
+
+        ConstraintTableSet set = ConstraintTableSet.of(constraints);
+        Assert.assertEquals(2, set.getTable().size());
+        Assert.assertEquals(1, set.getOtherConstraints().size());
+        Assert.assertEquals(3, set.size());
+        Assert.assertEquals(constraints, new HashSet<Constraint>(set));
+        Assert.assertTrue(set.contains(new PreferenceConstraint(slot1, constant, 2)));
+    }
+}
@@ -0,0 +1,33 @@
+package checkers.inference.model.serialization;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.sat4j.core.VecInt;
+
+public class ClauseBufferTest {
+
+    @Test
+    public void testRoundTrip() {
+        ClauseBuffer buffer = new ClauseBuffer();
+        for (int i = 1; i <= 1000; i++) {
+            buffer.add(new VecInt(new int[] { i, -(i + 1) }));
+            buffer.add(new VecInt(new int[] { -i }));
+        }
+        buffer.add(new VecInt(new int[0]));
+
+        Assert.assertEquals(2000, buffer.size());
+        Assert.assertEquals(3000, buffer.getLiteralCount());
+
+        VecInt reuse = new VecInt();
+        for (int i = 1; i <= 1000; i++) {
+            buffer.get(2 * (i - 1), reuse);
+            Assert.assertEquals(2, reuse.size());
+            Assert.assertEquals(i, reuse.get(0));
+            Assert.assertEquals(-(i + 1), reuse.get(1));
+
+            buffer.get(2 * (i - 1) + 1, reuse);
+            Assert.assertEquals(1, reuse.size());
+            Assert.assertEquals(-i, reuse.get(0));
+        }
+    }
+}
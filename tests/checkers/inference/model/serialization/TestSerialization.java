@@ -12,6 +12,8 @@ import checkers.inference.model.InequalityConstraint;
 import checkers.inference.model.SubtypeConstraint;
 import checkers.inference.model.VariableSlot;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -61,7 +63,35 @@ public class TestSerialization {
     public void testSerialization() throws ParseException {
 
         AnnotationMirrorSerializer annotationSerializer = new SimpleAnnotationMirrorSerializer(top, bottom);
+        List<Constraint> constraints = createConstraints();
 
+        JsonSerializer serializer = new JsonSerializer(null, constraints, null, annotationSerializer);
+        String serialized = serializer.generateConstraintFile().toJSONString();
+        JsonDeserializer deserializer = new JsonDeserializer(annotationSerializer, serialized);
+        List<Constraint> results = deserializer.parseConstraints();
+
+        Assert.assertEquals(new HashSet<>(constraints), new HashSet<>(results));
+    }
+
+    /**
+     * Test that the streaming writer produces a document that deserializes to the same java objects
+     */
+    @Test
+    public void testStreamingSerialization() throws ParseException, IOException {
+
+        AnnotationMirrorSerializer annotationSerializer = new SimpleAnnotationMirrorSerializer(top, bottom);
+        List<Constraint> constraints = createConstraints();
+
+        JsonSerializer serializer = new JsonSerializer(null, constraints, null, annotationSerializer);
+        StringWriter writer = new StringWriter();
+        serializer.writeConstraintFile(writer);
+        JsonDeserializer deserializer = new JsonDeserializer(annotationSerializer, writer.toString());
+        List<Constraint> results = deserializer.parseConstraints();
+
+        Assert.assertEquals(new HashSet<>(constraints), new HashSet<>(results));
+    }
+
+    private static List<Constraint> createConstraints() {
         List<Constraint> constraints = new ArrayList<Constraint>();
         VariableSlot slot1 = new VariableSlot(null, 1);
         VariableSlot slot2 = new VariableSlot(null, 2);
@@ -74,13 +104,7 @@ public class TestSerialization {
         constraints.add(new EqualityConstraint(slot1, slot2));
         constraints.add(new InequalityConstraint(topSlot, botSlot));
         constraints.add(new ComparableConstraint(slot1, slot2));
-
-        JsonSerializer serializer = new JsonSerializer(null, constraints, null, annotationSerializer);
-        String serialized = serializer.generateConstraintFile().toJSONString();
-        JsonDeserializer deserializer = new JsonDeserializer(annotationSerializer, serialized);
-        List<Constraint> results = deserializer.parseConstraints();
-
-        Assert.assertEquals(new HashSet<>(constraints), new HashSet<>(results));
+        return constraints;
     }
 
     // Use reference equality to have two distinct annotation mirrors (top and bottom).
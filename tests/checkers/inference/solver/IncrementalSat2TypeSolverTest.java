@@ -0,0 +1,199 @@
+package checkers.inference.solver;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import checkers.inference.InferenceMain;
+import checkers.inference.InferenceSolution;
+import checkers.inference.InferenceSolution.Quality;
+import checkers.inference.SlotManager;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.ExistentialConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+
+/**
+ * Tests re-solving with IncrementalSat2TypeSolver.solveAssuming.
+ *
+ * Every test solves the same constraints:
+ *   if (3 exists) { 3 <: 4 } else { 5 <: 4 }
+ *   6 <: 7
+ * The selector of 3 is the only variable the serializer creates, so it gets NEXT_ID.
+ */
+public class IncrementalSat2TypeSolverTest {
+
+    private static final int NEXT_ID = 20;
+
+    private AnnotationMirror top;
+    private AnnotationMirror bottom;
+    private QualifierHierarchy qualHierarchy;
+
+    private ConstantSlot topSlot;
+    private ConstantSlot bottomSlot;
+    private final List<VariableSlot> variables = new ArrayList<>();
+
+    private IncrementalSat2TypeSolver solver;
+
+    @Before
+    public void createSolver() {
+        top = LatticeSolverTest.createMirror("Top");
+        bottom = LatticeSolverTest.createMirror("Bottom");
+        qualHierarchy = mock(QualifierHierarchy.class);
+        Mockito.<Set<? extends AnnotationMirror>>when(qualHierarchy.getTopAnnotations())
+                .thenReturn(Collections.singleton(top));
+        Mockito.<Set<? extends AnnotationMirror>>when(qualHierarchy.getBottomAnnotations())
+                .thenReturn(Collections.singleton(bottom));
+
+        final SlotManager slotManager = mock(SlotManager.class);
+        when(slotManager.nextId()).thenReturn(NEXT_ID);
+        new InferenceMain() {
+            @Override
+            public SlotManager getSlotManager() {
+                return slotManager;
+            }
+        };
+
+        topSlot = new ConstantSlot(top, 1);
+        bottomSlot = new ConstantSlot(bottom, 2);
+        variables.clear();
+        for (int id = 3; id <= 7; id++) {
+            variables.add(new VariableSlot(null, id));
+        }
+
+        solver = new IncrementalSat2TypeSolver();
+    }
+
+    /**
+     * Test that one instance answers several queries, each under only its own assumptions.
+     */
+    @Test
+    public void testRepeatedQueries() {
+        Assert.assertEquals(Quality.OPTIMAL, solve().getQuality());
+
+        InferenceSolution exists = solver.solveAssuming(existence(3, true), values(4, bottom));
+        Assert.assertEquals(Quality.OPTIMAL, exists.getQuality());
+        Assert.assertSame(bottom, exists.getAnnotation(3));
+        Assert.assertSame(bottom, exists.getAnnotation(4));
+
+        InferenceSolution missing = solver.solveAssuming(existence(3, false), values(4, bottom));
+        Assert.assertEquals(Quality.OPTIMAL, missing.getQuality());
+        Assert.assertSame(bottom, missing.getAnnotation(5));
+
+        // The assumptions of the earlier queries no longer hold
+        InferenceSolution topFour = solver.solveAssuming(Collections.<Integer, Boolean>emptyMap(), values(4, top, 6, top));
+        Assert.assertEquals(Quality.OPTIMAL, topFour.getQuality());
+        Assert.assertSame(top, topFour.getAnnotation(4));
+        Assert.assertSame(top, topFour.getAnnotation(7));
+
+        Assert.assertEquals(4, solver.getQueryCount());
+    }
+
+    /**
+     * Test that conflicting assumptions make a query UNSOLVED without breaking later queries.
+     */
+    @Test
+    public void testUnsatisfiableAssumptions() {
+        solve();
+
+        InferenceSolution unsolved = solver.solveAssuming(Collections.<Integer, Boolean>emptyMap(), values(6, top, 7, bottom));
+        Assert.assertEquals(Quality.UNSOLVED, unsolved.getQuality());
+        Assert.assertFalse(unsolved.doesVariableExist(6));
+        Assert.assertFalse(unsolved.doesVariableExist(7));
+
+        InferenceSolution solved = solver.solveAssuming(Collections.<Integer, Boolean>emptyMap(), values(6, bottom, 7, top));
+        Assert.assertEquals(Quality.OPTIMAL, solved.getQuality());
+        Assert.assertSame(bottom, solved.getAnnotation(6));
+        Assert.assertSame(top, solved.getAnnotation(7));
+    }
+
+    /**
+     * Test that a potential variable whose selector is false, and the selector itself, are not part
+     * of the solution.
+     */
+    @Test
+    public void testMissingPotentialVariable() {
+        solve();
+
+        InferenceSolution solution = solver.solveAssuming(existence(3, false), values(4, bottom));
+
+        Assert.assertEquals(Quality.OPTIMAL, solution.getQuality());
+        Assert.assertFalse(solution.doesVariableExist(3));
+        Assert.assertFalse(solution.doesVariableExist(NEXT_ID));
+        Assert.assertSame(bottom, solution.getAnnotation(4));
+        Assert.assertSame(bottom, solution.getAnnotation(5));
+    }
+
+    /**
+     * Test that assuming the existence of a variable that is not potential, or querying before
+     * solve, aborts.
+     */
+    @Test
+    public void testErrorAbort() {
+        try {
+            solver.solveAssuming(existence(3, true), Collections.<Integer, AnnotationMirror>emptyMap());
+            Assert.fail("Expected solveAssuming before solve to abort");
+        } catch (RuntimeException e) {
+            // expected
+        }
+
+        solve();
+        try {
+            solver.solveAssuming(existence(4, true), Collections.<Integer, AnnotationMirror>emptyMap());
+            Assert.fail("Expected the existence of a variable that is not potential to abort");
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
+
+    private InferenceSolution solve() {
+        List<Constraint> constraints = Arrays.<Constraint>asList(
+                new ExistentialConstraint(var(3),
+                        Arrays.<Constraint>asList(new SubtypeConstraint(var(3), var(4))),
+                        Arrays.<Constraint>asList(new SubtypeConstraint(var(5), var(4)))),
+                new SubtypeConstraint(var(6), var(7)));
+
+        List<Slot> slots = new ArrayList<Slot>(variables);
+        slots.add(topSlot);
+        slots.add(bottomSlot);
+        return solver.solve(new HashMap<String, String>(), slots, constraints, qualHierarchy, null);
+    }
+
+    private VariableSlot var(int id) {
+        return variables.get(id - 3);
+    }
+
+    private static Map<Integer, Boolean> existence(int potential, boolean exists) {
+        return Collections.singletonMap(potential, exists);
+    }
+
+    private static Map<Integer, AnnotationMirror> values(int id, AnnotationMirror value) {
+        return Collections.singletonMap(id, value);
+    }
+
+    private static Map<Integer, AnnotationMirror> values(int id1, AnnotationMirror value1,
+                                                         int id2, AnnotationMirror value2) {
+        Map<Integer, AnnotationMirror> values = new HashMap<>();
+        values.put(id1, value1);
+        values.put(id2, value2);
+        return values;
+    }
+}
@@ -0,0 +1,218 @@
+package checkers.inference.solver;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import checkers.inference.InferenceSolution;
+import checkers.inference.InferenceSolution.Quality;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.InequalityConstraint;
+import checkers.inference.model.PreferenceConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+
+/**
+ * Tests LatticeSolver on the diamond Bottom &lt;: Left, Right &lt;: Top.
+ */
+public class LatticeSolverTest {
+
+    private AnnotationMirror top;
+    private AnnotationMirror left;
+    private AnnotationMirror right;
+    private AnnotationMirror bottom;
+    private QualifierHierarchy qualHierarchy;
+
+    private final List<VariableSlot> variables = new ArrayList<>();
+    private ConstantSlot leftSlot;
+    private ConstantSlot rightSlot;
+
+    @Before
+    public void createHierarchy() {
+        top = createMirror("Top");
+        left = createMirror("Left");
+        right = createMirror("Right");
+        bottom = createMirror("Bottom");
+
+        qualHierarchy = mock(QualifierHierarchy.class);
+        Mockito.<Set<? extends AnnotationMirror>>when(qualHierarchy.getTopAnnotations())
+                .thenReturn(Collections.singleton(top));
+        Mockito.<Set<? extends AnnotationMirror>>when(qualHierarchy.getBottomAnnotations())
+                .thenReturn(Collections.singleton(bottom));
+        Mockito.<Set<? extends AnnotationMirror>>when(qualHierarchy.getTypeQualifiers())
+                .thenReturn(new HashSet<>(Arrays.asList(top, left, right, bottom)));
+
+        // isSubtype is false for every pair that is not stubbed
+        for (AnnotationMirror qualifier : Arrays.asList(top, left, right, bottom)) {
+            when(qualHierarchy.isSubtype(qualifier, qualifier)).thenReturn(true);
+            when(qualHierarchy.isSubtype(bottom, qualifier)).thenReturn(true);
+            when(qualHierarchy.isSubtype(qualifier, top)).thenReturn(true);
+        }
+
+        variables.clear();
+        for (int id = 1; id <= 7; id++) {
+            variables.add(new VariableSlot(null, id));
+        }
+        leftSlot = new ConstantSlot(left, 8);
+        rightSlot = new ConstantSlot(right, 9);
+    }
+
+    private List<Constraint> createConstraints() {
+        return Arrays.<Constraint>asList(
+                // Left <: 1 <: 2 == 5
+                new SubtypeConstraint(leftSlot, var(1)),
+                new SubtypeConstraint(var(1), var(2)),
+                new EqualityConstraint(var(5), var(2)),
+                // 4 <: 3 <: Right
+                new SubtypeConstraint(var(4), var(3)),
+                new SubtypeConstraint(var(3), rightSlot),
+                // Left, Right <: 6 so the least solution of 6 is their lub
+                new SubtypeConstraint(leftSlot, var(6)),
+                new SubtypeConstraint(rightSlot, var(6)),
+                // 7 <: Left, Right so the greatest solution of 7 is their glb
+                new SubtypeConstraint(var(7), leftSlot),
+                new SubtypeConstraint(var(7), rightSlot));
+    }
+
+    /**
+     * Test that bound=upper (the default) assigns every variable its greatest solution.
+     */
+    @Test
+    public void testUpperBound() {
+        InferenceSolution solution = solve(null);
+
+        Assert.assertEquals(Quality.OPTIMAL, solution.getQuality());
+        Assert.assertSame(top, solution.getAnnotation(1));
+        Assert.assertSame(top, solution.getAnnotation(2));
+        Assert.assertSame(right, solution.getAnnotation(3));
+        Assert.assertSame(right, solution.getAnnotation(4));
+        Assert.assertSame(top, solution.getAnnotation(5));
+        Assert.assertSame(top, solution.getAnnotation(6));
+        Assert.assertSame(bottom, solution.getAnnotation(7));
+        Assert.assertFalse(solution.doesVariableExist(8));
+    }
+
+    /**
+     * Test that bound=lower assigns every variable its least solution.
+     */
+    @Test
+    public void testLowerBound() {
+        InferenceSolution solution = solve("lower");
+
+        Assert.assertSame(left, solution.getAnnotation(1));
+        Assert.assertSame(left, solution.getAnnotation(2));
+        Assert.assertSame(bottom, solution.getAnnotation(3));
+        Assert.assertSame(bottom, solution.getAnnotation(4));
+        Assert.assertSame(left, solution.getAnnotation(5));
+        Assert.assertSame(top, solution.getAnnotation(6));
+        Assert.assertSame(bottom, solution.getAnnotation(7));
+    }
+
+    /**
+     * Test that a variable bounded by incomparable constants from both sides keeps its bound.
+     */
+    @Test
+    public void testConflict() {
+        List<Constraint> constraints = new ArrayList<>(createConstraints());
+        // 3 <: Right, but now also Left <: 3
+        constraints.add(new SubtypeConstraint(leftSlot, var(3)));
+
+        Map<String, String> configuration = new HashMap<>();
+        configuration.put(LatticeSolver.BOUND_KEY, "upper");
+        InferenceSolution solution = new LatticeSolver().solve(configuration, slots(), constraints, qualHierarchy, null);
+
+        Assert.assertEquals(Quality.UNSOLVED, solution.getQuality());
+        Assert.assertSame(right, solution.getAnnotation(3));
+        Assert.assertSame(top, solution.getAnnotation(1));
+    }
+
+    /**
+     * Test that a conflict between two constants makes the solution UNSOLVED.
+     */
+    @Test
+    public void testConstantConflict() {
+        List<Constraint> constraints = new ArrayList<>(createConstraints());
+        constraints.add(new SubtypeConstraint(leftSlot, rightSlot));
+
+        InferenceSolution solution = new LatticeSolver().solve(new HashMap<String, String>(), slots(), constraints,
+                qualHierarchy, null);
+
+        Assert.assertEquals(Quality.UNSOLVED, solution.getQuality());
+    }
+
+    /**
+     * Test that the solution is only FEASIBLE if constraints the solver does not support were ignored.
+     */
+    @Test
+    public void testIgnoredConstraints() {
+        List<Constraint> constraints = new ArrayList<>(createConstraints());
+        // 1 is Top, so this inequality happens to hold, but the solver did not check it
+        constraints.add(new InequalityConstraint(var(1), rightSlot));
+        constraints.add(new PreferenceConstraint(var(4), rightSlot, 1));
+
+        InferenceSolution solution = new LatticeSolver().solve(new HashMap<String, String>(), slots(), constraints,
+                qualHierarchy, null);
+
+        Assert.assertEquals(Quality.FEASIBLE, solution.getQuality());
+        Assert.assertSame(top, solution.getAnnotation(1));
+        Assert.assertSame(right, solution.getAnnotation(4));
+    }
+
+    private InferenceSolution solve(String bound) {
+        Map<String, String> configuration = new HashMap<>();
+        if (bound != null) {
+            configuration.put(LatticeSolver.BOUND_KEY, bound);
+        }
+        return new LatticeSolver().solve(configuration, slots(), createConstraints(), qualHierarchy, null);
+    }
+
+    private VariableSlot var(int id) {
+        return variables.get(id - 1);
+    }
+
+    private List<Slot> slots() {
+        List<Slot> slots = new ArrayList<Slot>(variables);
+        slots.add(leftSlot);
+        slots.add(rightSlot);
+        return slots;
+    }
+
+    /**
+     * @return an AnnotationMirror that AnnotationUtils identifies by the given name
+     */
+    static AnnotationMirror createMirror(String name) {
+        Name qualifiedName = mock(Name.class);
+        when(qualifiedName.toString()).thenReturn(name);
+        TypeElement element = mock(TypeElement.class);
+        when(element.getQualifiedName()).thenReturn(qualifiedName);
+        DeclaredType type = mock(DeclaredType.class);
+        when(type.asElement()).thenReturn(element);
+        AnnotationMirror mirror = mock(AnnotationMirror.class);
+        when(mirror.getAnnotationType()).thenReturn(type);
+        when(mirror.toString()).thenReturn("@" + name);
+        return mirror;
+    }
+}
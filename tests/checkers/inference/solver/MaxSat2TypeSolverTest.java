@@ -0,0 +1,149 @@
+package checkers.inference.solver;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import checkers.inference.InferenceMain;
+import checkers.inference.InferenceSolution;
+import checkers.inference.InferenceSolution.Quality;
+import checkers.inference.SlotManager;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.PreferenceConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+
+/**
+ * Tests the anytime mode of MaxSat2TypeSolver, see SatSolverFactory.solve, which optimizes the
+ * preferences until it proves the best model optimal or reaches the time limit.
+ */
+public class MaxSat2TypeSolverTest {
+
+    private AnnotationMirror top;
+    private AnnotationMirror bottom;
+    private QualifierHierarchy qualHierarchy;
+    private SlotManager slotManager;
+
+    private ConstantSlot topSlot;
+    private ConstantSlot bottomSlot;
+
+    @Before
+    public void createHierarchy() {
+        top = LatticeSolverTest.createMirror("Top");
+        bottom = LatticeSolverTest.createMirror("Bottom");
+        qualHierarchy = mock(QualifierHierarchy.class);
+        Mockito.<Set<? extends AnnotationMirror>>when(qualHierarchy.getTopAnnotations())
+                .thenReturn(Collections.singleton(top));
+        Mockito.<Set<? extends AnnotationMirror>>when(qualHierarchy.getBottomAnnotations())
+                .thenReturn(Collections.singleton(bottom));
+
+        slotManager = mock(SlotManager.class);
+        new InferenceMain() {
+            @Override
+            public SlotManager getSlotManager() {
+                return slotManager;
+            }
+        };
+
+        topSlot = new ConstantSlot(top, 1);
+        bottomSlot = new ConstantSlot(bottom, 2);
+    }
+
+    /**
+     * Test that with a generous time limit the anytime loop proves its last model optimal and that
+     * model satisfies the heavier of two conflicting preferences.
+     */
+    @Test
+    public void testAnytimeOptimal() {
+        List<VariableSlot> variables = createVariables(3);
+        VariableSlot sub = variables.get(0);
+        VariableSlot sup = variables.get(1);
+        VariableSlot free = variables.get(2);
+        List<Constraint> constraints = Arrays.<Constraint>asList(
+                // sub is top only if sup is top, so the preferences of sub and sup conflict
+                new SubtypeConstraint(sub, sup),
+                new PreferenceConstraint(sub, topSlot, 2),
+                new PreferenceConstraint(sup, bottomSlot, 1),
+                new PreferenceConstraint(free, bottomSlot, 1));
+
+        InferenceSolution solution = solve(anytimeConfiguration(60000), variables, constraints);
+
+        Assert.assertEquals(Quality.OPTIMAL, solution.getQuality());
+        Assert.assertSame(top, solution.getAnnotation(sub.getId()));
+        Assert.assertSame(top, solution.getAnnotation(sup.getId()));
+        Assert.assertSame(bottom, solution.getAnnotation(free.getId()));
+    }
+
+    /**
+     * Test that when the time limit is reached before optimality is proven the best model found so
+     * far is FEASIBLE, or the result is UNSOLVED if none was found, and never reported OPTIMAL.
+     */
+    @Test
+    public void testAnytimeTimeout() {
+        // Many pairs whose preferences conflict, each pair costs at least 1
+        List<VariableSlot> variables = createVariables(4000);
+        List<Constraint> constraints = new ArrayList<>();
+        for (int i = 0; i < variables.size(); i += 2) {
+            constraints.add(new SubtypeConstraint(variables.get(i), variables.get(i + 1)));
+            constraints.add(new PreferenceConstraint(variables.get(i), topSlot, 1 + i % 3));
+            constraints.add(new PreferenceConstraint(variables.get(i + 1), bottomSlot, 1 + i % 5));
+        }
+
+        InferenceSolution solution = solve(anytimeConfiguration(1), variables, constraints);
+
+        Assert.assertNotEquals(Quality.OPTIMAL, solution.getQuality());
+        if (solution.getQuality() == Quality.FEASIBLE) {
+            // The hard constraints hold even though the preferences may not be optimal
+            for (int i = 0; i < variables.size(); i += 2) {
+                if (solution.getAnnotation(variables.get(i).getId()) == top) {
+                    Assert.assertSame(top, solution.getAnnotation(variables.get(i + 1).getId()));
+                }
+            }
+        }
+    }
+
+    private Map<String, String> anytimeConfiguration(int timeoutMs) {
+        Map<String, String> configuration = new HashMap<>();
+        configuration.put(SatSolverFactory.ANYTIME_KEY, "true");
+        configuration.put(SatSolverFactory.TIMEOUT_KEY, String.valueOf(timeoutMs));
+        return configuration;
+    }
+
+    /**
+     * @return count variables with the ids following the constants, and make nextId cover them
+     */
+    private List<VariableSlot> createVariables(int count) {
+        List<VariableSlot> variables = new ArrayList<>();
+        for (int id = 3; id < 3 + count; id++) {
+            variables.add(new VariableSlot(null, id));
+        }
+        when(slotManager.nextId()).thenReturn(3 + count);
+        return variables;
+    }
+
+    private InferenceSolution solve(Map<String, String> configuration, List<VariableSlot> variables,
+                                    List<Constraint> constraints) {
+        List<Slot> slots = new ArrayList<Slot>(variables);
+        slots.add(topSlot);
+        slots.add(bottomSlot);
+        return new MaxSat2TypeSolver().solve(configuration, slots, constraints, qualHierarchy, null);
+    }
+}
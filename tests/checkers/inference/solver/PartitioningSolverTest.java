@@ -0,0 +1,236 @@
+package checkers.inference.solver;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+
+import checkers.inference.DefaultInferenceSolution;
+import checkers.inference.InferenceSolution;
+import checkers.inference.InferenceSolver;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.ExistentialConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class PartitioningSolverTest {
+
+    // An id that no slot passed to the PartitioningSolver has, like the ids solvers create while solving
+    private static final int CREATED_ID = 100;
+
+    private static final List<Collection<Constraint>> solvedComponents = new ArrayList<>();
+    private static final List<String> solvedThreads = new ArrayList<>();
+    private static final List<Thread> solvingThreads = new ArrayList<>();
+
+    /**
+     * Records the constraints it is asked to solve and claims a value for every variable in its slots
+     * and for CREATED_ID.
+     */
+    public static class RecordingSolver implements InferenceSolver {
+        @Override
+        public InferenceSolution solve(Map<String, String> configuration, Collection<Slot> slots,
+                                       Collection<Constraint> constraints, QualifierHierarchy qualHierarchy,
+                                       ProcessingEnvironment processingEnvironment) {
+            synchronized (solvedComponents) {
+                solvedComponents.add(constraints);
+                solvedThreads.add(configuration.get(SolverArgs.THREADS_KEY));
+                solvingThreads.add(Thread.currentThread());
+            }
+            Map<Integer, AnnotationMirror> result = new HashMap<>();
+            for (Slot slot : slots) {
+                if (!slot.isConstant()) {
+                    result.put(((VariableSlot) slot).getId(), null);
+                }
+            }
+            result.put(CREATED_ID, null);
+            return new DefaultInferenceSolution(result);
+        }
+    }
+
+    public static class ThreadSafeRecordingSolver extends RecordingSolver implements ThreadSafeInferenceSolver {
+    }
+
+    @Before
+    public void clearRecords() {
+        solvedComponents.clear();
+        solvedThreads.clear();
+        solvingThreads.clear();
+    }
+
+    @Test
+    public void testIndependentComponents() {
+        VariableSlot slot1 = new VariableSlot(null, 1);
+        VariableSlot slot2 = new VariableSlot(null, 2);
+        VariableSlot slot3 = new VariableSlot(null, 3);
+        VariableSlot slot4 = new VariableSlot(null, 4);
+        VariableSlot slot5 = new VariableSlot(null, 5);
+        VariableSlot slot6 = new VariableSlot(null, 6);
+        ConstantSlot constant = new ConstantSlot(null, 7);
+
+        // The constant does not connect the two components
+        List<Constraint> constraints = Arrays.<Constraint>asList(
+                new SubtypeConstraint(slot1, slot2),
+                new SubtypeConstraint(slot2, slot3),
+                new SubtypeConstraint(slot3, constant),
+                new SubtypeConstraint(slot4, slot5),
+                new SubtypeConstraint(constant, slot5));
+        List<Slot> slots = Arrays.<Slot>asList(slot1, slot2, slot3, slot4, slot5, slot6, constant);
+
+        Map<String, String> configuration = new HashMap<>();
+        configuration.put(PartitioningSolver.COMPONENT_SOLVER_KEY, RecordingSolver.class.getName());
+        configuration.put(SolverArgs.THREADS_KEY, "2");
+
+        InferenceSolution solution = new PartitioningSolver().solve(configuration, slots, constraints, null, null);
+
+        Assert.assertEquals(2, solvedComponents.size());
+        for (int id = 1; id <= 6; id++) {
+            Assert.assertTrue("Missing variable " + id, solution.doesVariableExist(id));
+        }
+        Assert.assertFalse(solution.doesVariableExist(7));
+
+        // RecordingSolver is not thread safe, so the components are solved on this thread with all threads
+        Assert.assertEquals(Arrays.asList("2", "2"), solvedThreads);
+        Assert.assertEquals(Arrays.asList(Thread.currentThread(), Thread.currentThread()), solvingThreads);
+    }
+
+    /**
+     * Test that thread safe component solvers share the thread budget instead of each using all of it.
+     */
+    @Test
+    public void testConcurrentComponents() {
+        VariableSlot slot1 = new VariableSlot(null, 1);
+        VariableSlot slot2 = new VariableSlot(null, 2);
+        VariableSlot slot3 = new VariableSlot(null, 3);
+        VariableSlot slot4 = new VariableSlot(null, 4);
+
+        List<Constraint> constraints = Arrays.<Constraint>asList(
+                new SubtypeConstraint(slot1, slot2),
+                new SubtypeConstraint(slot3, slot4));
+        List<Slot> slots = Arrays.<Slot>asList(slot1, slot2, slot3, slot4);
+
+        Map<String, String> configuration = new HashMap<>();
+        configuration.put(PartitioningSolver.COMPONENT_SOLVER_KEY, ThreadSafeRecordingSolver.class.getName());
+        configuration.put(SolverArgs.THREADS_KEY, "2");
+
+        InferenceSolution solution = new PartitioningSolver().solve(configuration, slots, constraints, null, null);
+
+        Assert.assertEquals(2, solvedComponents.size());
+        Assert.assertEquals(Arrays.asList("1", "1"), solvedThreads);
+        Assert.assertEquals("2", configuration.get(SolverArgs.THREADS_KEY));
+        for (int id = 1; id <= 4; id++) {
+            Assert.assertTrue("Missing variable " + id, solution.doesVariableExist(id));
+        }
+    }
+
+    /**
+     * Test that an ExistentialConstraint keeps its potential variable in the component of its nested
+     * constraints, and that ids the component solvers created are not attributed to any component.
+     */
+    @Test
+    public void testExistentialConstraint() {
+        VariableSlot slot1 = new VariableSlot(null, 1);
+        VariableSlot slot2 = new VariableSlot(null, 2);
+        VariableSlot slot3 = new VariableSlot(null, 3);
+        VariableSlot potential = new VariableSlot(null, 4);
+        VariableSlot slot5 = new VariableSlot(null, 5);
+        ConstantSlot constant = new ConstantSlot(null, 6);
+
+        ExistentialConstraint existential = new ExistentialConstraint(potential,
+                Arrays.<Constraint>asList(new SubtypeConstraint(potential, slot5)),
+                Arrays.<Constraint>asList(new SubtypeConstraint(constant, slot5)));
+        List<Constraint> constraints = Arrays.<Constraint>asList(
+                new SubtypeConstraint(slot1, slot2),
+                new SubtypeConstraint(slot2, slot3),
+                existential);
+        List<Slot> slots = Arrays.<Slot>asList(slot1, slot2, slot3, potential, slot5, constant);
+
+        Map<String, String> configuration = new HashMap<>();
+        configuration.put(PartitioningSolver.COMPONENT_SOLVER_KEY, RecordingSolver.class.getName());
+
+        InferenceSolution solution = new PartitioningSolver().solve(configuration, slots, constraints, null, null);
+
+        Assert.assertEquals(2, solvedComponents.size());
+        Assert.assertEquals(Arrays.<Constraint>asList(existential), new ArrayList<>(solvedComponents.get(1)));
+        for (int id = 1; id <= 5; id++) {
+            Assert.assertTrue("Missing variable " + id, solution.doesVariableExist(id));
+        }
+
+        // Both component solutions claim CREATED_ID, but it was not part of the problem
+        Assert.assertFalse(solution.doesVariableExist(CREATED_ID));
+        Assert.assertNull(solution.getAnnotation(CREATED_ID));
+    }
+
+    /**
+     * Test that a real thread safe solver finds the same solution when its components are solved
+     * concurrently as when they are solved one after the other.
+     */
+    @Test
+    public void testConcurrentLatticeSolver() {
+        AnnotationMirror top = LatticeSolverTest.createMirror("Top");
+        AnnotationMirror bottom = LatticeSolverTest.createMirror("Bottom");
+        QualifierHierarchy qualHierarchy = mock(QualifierHierarchy.class);
+        Mockito.<Set<? extends AnnotationMirror>>when(qualHierarchy.getTopAnnotations())
+                .thenReturn(Collections.singleton(top));
+        Mockito.<Set<? extends AnnotationMirror>>when(qualHierarchy.getBottomAnnotations())
+                .thenReturn(Collections.singleton(bottom));
+        Mockito.<Set<? extends AnnotationMirror>>when(qualHierarchy.getTypeQualifiers())
+                .thenReturn(new HashSet<>(Arrays.asList(top, bottom)));
+        when(qualHierarchy.isSubtype(top, top)).thenReturn(true);
+        when(qualHierarchy.isSubtype(bottom, bottom)).thenReturn(true);
+        when(qualHierarchy.isSubtype(bottom, top)).thenReturn(true);
+
+        // 50 components of 3 variables: 1 <: 2 == 3, and 3 <: Bottom in every other component
+        int componentCount = 50;
+        ConstantSlot bottomSlot = new ConstantSlot(bottom, 3 * componentCount + 1);
+        List<Slot> slots = new ArrayList<>();
+        List<Constraint> constraints = new ArrayList<>();
+        for (int component = 0; component < componentCount; component++) {
+            VariableSlot first = new VariableSlot(null, 3 * component + 1);
+            VariableSlot second = new VariableSlot(null, 3 * component + 2);
+            VariableSlot third = new VariableSlot(null, 3 * component + 3);
+            slots.addAll(Arrays.asList(first, second, third));
+            constraints.add(new SubtypeConstraint(first, second));
+            constraints.add(new EqualityConstraint(second, third));
+            if (component % 2 == 0) {
+                constraints.add(new SubtypeConstraint(third, bottomSlot));
+            }
+        }
+        slots.add(bottomSlot);
+
+        Map<String, String> configuration = new HashMap<>();
+        configuration.put(PartitioningSolver.COMPONENT_SOLVER_KEY, LatticeSolver.class.getName());
+        configuration.put(SolverArgs.THREADS_KEY, "1");
+        InferenceSolution sequential = new PartitioningSolver().solve(configuration, slots, constraints, qualHierarchy, null);
+        configuration.put(SolverArgs.THREADS_KEY, "4");
+        InferenceSolution concurrent = new PartitioningSolver().solve(configuration, slots, constraints, qualHierarchy, null);
+
+        for (int component = 0; component < componentCount; component++) {
+            AnnotationMirror expected = component % 2 == 0 ? bottom : top;
+            for (int id = 3 * component + 1; id <= 3 * component + 3; id++) {
+                Assert.assertSame("Variable " + id, expected, sequential.getAnnotation(id));
+                Assert.assertSame("Variable " + id, expected, concurrent.getAnnotation(id));
+            }
+        }
+    }
+}
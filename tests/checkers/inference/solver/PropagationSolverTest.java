@@ -0,0 +1,234 @@
+package checkers.inference.solver;
+
+import static org.mockito.Mockito.mock;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import checkers.inference.InferenceSolution;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.ConstraintTableSet;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+
+/**
+ * Tests PropagationSolver on small graphs.  Each problem is solved both from Constraint objects and
+ * from the rows of a ConstraintTableSet, which must give the same solution.
+ *
+ * PropagationSolver defaults to top and only records the variables it infers to be bottom.
+ */
+public class PropagationSolverTest {
+
+    private static final int VARIABLE_COUNT = 10;
+
+    private AnnotationMirror top;
+    private AnnotationMirror bottom;
+    private QualifierHierarchy qualHierarchy;
+
+    private ConstantSlot topSlot;
+    private ConstantSlot bottomSlot;
+    private final List<VariableSlot> variables = new ArrayList<>();
+
+    @Before
+    public void createHierarchy() {
+        top = LatticeSolverTest.createMirror("Top");
+        bottom = LatticeSolverTest.createMirror("Bottom");
+        qualHierarchy = mock(QualifierHierarchy.class);
+        Mockito.<Set<? extends AnnotationMirror>>when(qualHierarchy.getTopAnnotations())
+                .thenReturn(Collections.singleton(top));
+        Mockito.<Set<? extends AnnotationMirror>>when(qualHierarchy.getBottomAnnotations())
+                .thenReturn(Collections.singleton(bottom));
+
+        variables.clear();
+        for (int id = 1; id <= VARIABLE_COUNT; id++) {
+            variables.add(new VariableSlot(null, id));
+        }
+        topSlot = new ConstantSlot(top, VARIABLE_COUNT + 1);
+        bottomSlot = new ConstantSlot(bottom, VARIABLE_COUNT + 2);
+    }
+
+    /**
+     * Test that bottom floods down and top floods up a chain of subtype constraints.
+     */
+    @Test
+    public void testChains() {
+        InferenceSolution solution = solve(
+                // 1 <: 2 <: 3 <: Bottom
+                new SubtypeConstraint(var(1), var(2)),
+                new SubtypeConstraint(var(2), var(3)),
+                new SubtypeConstraint(var(3), bottomSlot),
+                // Top <: 4 <: 5 == 6
+                new SubtypeConstraint(topSlot, var(4)),
+                new SubtypeConstraint(var(4), var(5)),
+                new EqualityConstraint(var(5), var(6)),
+                // 7 == Bottom, 7 == 8
+                new EqualityConstraint(bottomSlot, var(7)),
+                new EqualityConstraint(var(7), var(8)));
+
+        assertBottom(solution, 1, 2, 3, 7, 8);
+        assertTop(solution, 4, 5, 6);
+    }
+
+    /**
+     * Test that a value reaching any variable of a cycle reaches all of them.
+     */
+    @Test
+    public void testCycles() {
+        InferenceSolution solution = solve(
+                // 1 <: 2 <: 3 <: 1, 2 <: Bottom
+                new SubtypeConstraint(var(1), var(2)),
+                new SubtypeConstraint(var(2), var(3)),
+                new SubtypeConstraint(var(3), var(1)),
+                new SubtypeConstraint(var(2), bottomSlot),
+                // 4 <: 5 <: 4, Top <: 5, 5 <: 6
+                new SubtypeConstraint(var(4), var(5)),
+                new SubtypeConstraint(var(5), var(4)),
+                new SubtypeConstraint(topSlot, var(5)),
+                new SubtypeConstraint(var(5), var(6)));
+
+        assertBottom(solution, 1, 2, 3);
+        assertTop(solution, 4, 5, 6);
+    }
+
+    /**
+     * Test the precedence of conflicting values documented in PropagationSolver.mergeResults: fixed
+     * bottom, then fixed top, then inferred bottom, then inferred top.
+     */
+    @Test
+    public void testConflicts() {
+        InferenceSolution solution = solve(
+                // Top <: 1 <: 2 <: 3 <: Bottom: every variable is inferred both top and bottom,
+                // 1 is also fixed top and 3 fixed bottom
+                new SubtypeConstraint(topSlot, var(1)),
+                new SubtypeConstraint(var(1), var(2)),
+                new SubtypeConstraint(var(2), var(3)),
+                new SubtypeConstraint(var(3), bottomSlot),
+                // 4 == Top and 4 <: Bottom: 4 is fixed both top and bottom
+                new EqualityConstraint(var(4), topSlot),
+                new SubtypeConstraint(var(4), bottomSlot));
+
+        assertTop(solution, 1);
+        assertBottom(solution, 2, 3, 4);
+    }
+
+    /**
+     * Test that variables in no constraint, or only in constraints that do not force a value, keep the default.
+     */
+    @Test
+    public void testUnconstrained() {
+        InferenceSolution solution = solve(
+                new SubtypeConstraint(var(1), var(2)),
+                new SubtypeConstraint(bottomSlot, var(3)),
+                new SubtypeConstraint(var(4), topSlot),
+                new SubtypeConstraint(bottomSlot, topSlot));
+
+        assertTop(solution, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+    }
+
+    /**
+     * Test that a graph with more edges and larger frontiers than PropagationSolver floods on a
+     * single thread (4096) is solved the same on one thread and on several threads.
+     */
+    @Test
+    public void testParallelFlood() {
+        final int width = 10000;
+        List<Slot> slots = new ArrayList<Slot>();
+        Set<Constraint> constraints = new LinkedHashSet<>();
+        slots.add(topSlot);
+        slots.add(bottomSlot);
+
+        // Top <: hub <: leaf(i) <: outer(i): a frontier of width leaves, then of width outer variables
+        VariableSlot hub = new VariableSlot(null, 100);
+        slots.add(hub);
+        constraints.add(new SubtypeConstraint(topSlot, hub));
+        // sink <: Bottom, inner(i) <: middle(i) <: sink: bottom floods down through two wide levels
+        VariableSlot sink = new VariableSlot(null, 101);
+        slots.add(sink);
+        constraints.add(new SubtypeConstraint(sink, bottomSlot));
+
+        for (int i = 0; i < width; i++) {
+            VariableSlot leaf = new VariableSlot(null, 1000 + i);
+            VariableSlot outer = new VariableSlot(null, 1000 + width + i);
+            VariableSlot middle = new VariableSlot(null, 1000 + 2 * width + i);
+            VariableSlot inner = new VariableSlot(null, 1000 + 3 * width + i);
+            slots.addAll(Arrays.asList(leaf, outer, middle, inner));
+            constraints.add(new SubtypeConstraint(hub, leaf));
+            constraints.add(new SubtypeConstraint(leaf, outer));
+            constraints.add(new SubtypeConstraint(middle, sink));
+            constraints.add(new SubtypeConstraint(inner, middle));
+            if (i % 3 == 0) {
+                // Some leaves are both inferred top and bottom
+                constraints.add(new SubtypeConstraint(leaf, sink));
+            }
+        }
+
+        Map<String, String> configuration = new HashMap<>();
+        configuration.put(SolverArgs.THREADS_KEY, "1");
+        InferenceSolution sequential = new PropagationSolver().solve(configuration, slots, constraints, qualHierarchy, null);
+        configuration.put(SolverArgs.THREADS_KEY, "4");
+        InferenceSolution parallel = new PropagationSolver().solve(configuration, slots, constraints, qualHierarchy, null);
+
+        for (Slot slot : slots) {
+            int id = ((VariableSlot) slot).getId();
+            Assert.assertSame("Variable " + id, sequential.getAnnotation(id), parallel.getAnnotation(id));
+        }
+
+        // The hub is fixed top, which wins over being inferred bottom through the leaves
+        assertTop(parallel, 100);
+        assertBottom(parallel, 101, 1000, 1000 + 2 * width, 1000 + 3 * width + width - 1);
+        assertTop(parallel, 1001, 1000 + width);
+    }
+
+    private InferenceSolution solve(Constraint... constraints) {
+        Set<Constraint> constraintSet = new LinkedHashSet<>(Arrays.asList(constraints));
+        InferenceSolution fromObjects = solve(constraintSet);
+        InferenceSolution fromTable = solve(ConstraintTableSet.of(constraintSet));
+        for (int id = 1; id <= VARIABLE_COUNT; id++) {
+            Assert.assertSame("Variable " + id, fromObjects.getAnnotation(id), fromTable.getAnnotation(id));
+        }
+        return fromObjects;
+    }
+
+    private InferenceSolution solve(Set<Constraint> constraints) {
+        List<Slot> slots = new ArrayList<Slot>(variables);
+        slots.add(topSlot);
+        slots.add(bottomSlot);
+        Map<String, String> configuration = new HashMap<>();
+        configuration.put(SolverArgs.THREADS_KEY, "1");
+        return new PropagationSolver().solve(configuration, slots, constraints, qualHierarchy, null);
+    }
+
+    private VariableSlot var(int id) {
+        return variables.get(id - 1);
+    }
+
+    private void assertBottom(InferenceSolution solution, int... ids) {
+        for (int id : ids) {
+            Assert.assertSame("Variable " + id, bottom, solution.getAnnotation(id));
+        }
+    }
+
+    private static void assertTop(InferenceSolution solution, int... ids) {
+        for (int id : ids) {
+            Assert.assertFalse("Variable " + id, solution.doesVariableExist(id));
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package checkers.inference.solver;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.checkerframework.framework.type.QualifierHierarchy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import checkers.inference.InferenceMain;
+import checkers.inference.InferenceSolution;
+import checkers.inference.InferenceSolution.Quality;
+import checkers.inference.SlotManager;
+import checkers.inference.model.ConstantSlot;
+import checkers.inference.model.Constraint;
+import checkers.inference.model.EqualityConstraint;
+import checkers.inference.model.ExistentialConstraint;
+import checkers.inference.model.InequalityConstraint;
+import checkers.inference.model.Slot;
+import checkers.inference.model.SubtypeConstraint;
+import checkers.inference.model.VariableSlot;
+
+public class TwoSatTypeSolverTest {
+
+    // Larger than every id below, the solvers use it as the number of SAT variables
+    private static final int NEXT_ID = 20;
+
+    private AnnotationMirror top;
+    private AnnotationMirror bottom;
+    private QualifierHierarchy qualHierarchy;
+
+    private ConstantSlot topSlot;
+    private ConstantSlot bottomSlot;
+    private final List<VariableSlot> variables = new ArrayList<>();
+
+    @Before
+    public void createHierarchy() {
+        top = createMirror("Top");
+        bottom = createMirror("Bottom");
+        qualHierarchy = mock(QualifierHierarchy.class);
+        Mockito.<Set<? extends AnnotationMirror>>when(qualHierarchy.getTopAnnotations())
+                .thenReturn(Collections.singleton(top));
+        Mockito.<Set<? extends AnnotationMirror>>when(qualHierarchy.getBottomAnnotations())
+                .thenReturn(Collections.singleton(bottom));
+
+        final SlotManager slotManager = mock(SlotManager.class);
+        when(slotManager.nextId()).thenReturn(NEXT_ID);
+        new InferenceMain() {
+            @Override
+            public SlotManager getSlotManager() {
+                return slotManager;
+            }
+        };
+
+        topSlot = new ConstantSlot(top, 1);
+        bottomSlot = new ConstantSlot(bottom, 2);
+        variables.clear();
+        for (int id = 3; id <= 9; id++) {
+            variables.add(new VariableSlot(null, id));
+        }
+    }
+
+    /**
+     * Test a satisfiable 2-SAT instance, the solution follows the constants through the constraints.
+     */
+    @Test
+    public void testSatisfiable() {
+        List<Constraint> constraints = Arrays.<Constraint>asList(
+                new SubtypeConstraint(var(3), var(4)),
+                new SubtypeConstraint(var(4), bottomSlot),
+                new SubtypeConstraint(topSlot, var(5)),
+                new EqualityConstraint(var(5), var(6)),
+                new InequalityConstraint(var(6), var(7)));
+
+        InferenceSolution solution = solveTwoSat(constraints);
+
+        Assert.assertEquals(Quality.OPTIMAL, solution.getQuality());
+        Assert.assertSame(bottom, solution.getAnnotation(3));
+        Assert.assertSame(bottom, solution.getAnnotation(4));
+        Assert.assertSame(top, solution.getAnnotation(5));
+        Assert.assertSame(top, solution.getAnnotation(6));
+        Assert.assertSame(bottom, solution.getAnnotation(7));
+    }
+
+    /**
+     * Test that an unsatisfiable 2-SAT instance is reported as UNSOLVED rather than handed to MAX-SAT.
+     */
+    @Test
+    public void testUnsatisfiable() {
+        List<Constraint> constraints = Arrays.<Constraint>asList(
+                new SubtypeConstraint(topSlot, var(3)),
+                new SubtypeConstraint(var(3), var(4)),
+                new SubtypeConstraint(var(4), bottomSlot));
+
+        InferenceSolution solution = solveTwoSat(constraints);
+
+        Assert.assertEquals(Quality.UNSOLVED, solution.getQuality());
+        Assert.assertFalse(solution.doesVariableExist(3));
+        Assert.assertFalse(solution.doesVariableExist(4));
+    }
+
+    /**
+     * Test that constraints whose clauses have more than 2 literals are solved by MaxSat2TypeSolver.
+     */
+    @Test
+    public void testFallback() {
+        // The existence variable of var(3) is prepended to the clauses of both branches
+        List<Constraint> constraints = Arrays.<Constraint>asList(
+                new ExistentialConstraint(var(3),
+                        Arrays.<Constraint>asList(new SubtypeConstraint(var(3), var(4))),
+                        Arrays.<Constraint>asList(new SubtypeConstraint(var(5), var(4)))),
+                new SubtypeConstraint(var(4), bottomSlot),
+                new SubtypeConstraint(topSlot, var(5)));
+
+        InferenceSolution twoSat = solveTwoSat(constraints);
+        InferenceSolution maxSat = solveMaxSat(constraints);
+
+        // var(5) is top, so only the potential branch can hold
+        Assert.assertEquals(Quality.OPTIMAL, twoSat.getQuality());
+        Assert.assertSame(bottom, twoSat.getAnnotation(4));
+        Assert.assertSame(top, twoSat.getAnnotation(5));
+        assertSameSolution(maxSat, twoSat, 4, 5);
+    }
+
+    /**
+     * Test that the 2-SAT solver finds the same assignment as MaxSat2TypeSolver on an instance with
+     * a single solution.
+     */
+    @Test
+    public void testAgreesWithMaxSat() {
+        List<Constraint> constraints = Arrays.<Constraint>asList(
+                new SubtypeConstraint(var(3), var(4)),
+                new SubtypeConstraint(var(4), var(5)),
+                new SubtypeConstraint(var(5), bottomSlot),
+                new SubtypeConstraint(topSlot, var(6)),
+                new EqualityConstraint(var(6), var(7)),
+                new InequalityConstraint(var(7), var(8)),
+                new InequalityConstraint(var(8), var(9)));
+
+        InferenceSolution twoSat = solveTwoSat(constraints);
+        InferenceSolution maxSat = solveMaxSat(constraints);
+
+        Assert.assertEquals(Quality.OPTIMAL, twoSat.getQuality());
+        Assert.assertEquals(Quality.OPTIMAL, maxSat.getQuality());
+        assertSameSolution(maxSat, twoSat, 3, 4, 5, 6, 7, 8, 9);
+    }
+
+    private VariableSlot var(int id) {
+        return variables.get(id - 3);
+    }
+
+    private List<Slot> slots() {
+        List<Slot> slots = new ArrayList<Slot>(variables);
+        slots.add(topSlot);
+        slots.add(bottomSlot);
+        return slots;
+    }
+
+    private InferenceSolution solveTwoSat(List<Constraint> constraints) {
+        return new TwoSatTypeSolver().solve(new HashMap<String, String>(), slots(), constraints, qualHierarchy, null);
+    }
+
+    private InferenceSolution solveMaxSat(List<Constraint> constraints) {
+        return new MaxSat2TypeSolver().solve(new HashMap<String, String>(), slots(), constraints, qualHierarchy, null);
+    }
+
+    private static void assertSameSolution(InferenceSolution expected, InferenceSolution actual, int... ids) {
+        for (int id : ids) {
+            Assert.assertSame("Variable " + id, expected.getAnnotation(id), actual.getAnnotation(id));
+        }
+    }
+
+    /**
+     * @return an AnnotationMirror that AnnotationUtils identifies by the given name
+     */
+    private static AnnotationMirror createMirror(String name) {
+        Name qualifiedName = mock(Name.class);
+        when(qualifiedName.toString()).thenReturn(name);
+        TypeElement element = mock(TypeElement.class);
+        when(element.getQualifiedName()).thenReturn(qualifiedName);
+        DeclaredType type = mock(DeclaredType.class);
+        when(type.asElement()).thenReturn(element);
+        AnnotationMirror mirror = mock(AnnotationMirror.class);
+        when(mirror.getAnnotationType()).thenReturn(type);
+        when(mirror.toString()).thenReturn("@" + name);
+        return mirror;
+    }
+}
@@ -0,0 +1,91 @@
+package checkers.inference.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AtomicBitSetTest {
+
+    @Test
+    public void testSetAndGet() {
+        AtomicBitSet bits = new AtomicBitSet(130);
+        Assert.assertTrue(bits.set(0));
+        Assert.assertTrue(bits.set(64));
+        Assert.assertTrue(bits.set(129));
+        Assert.assertFalse(bits.set(64));
+
+        Assert.assertTrue(bits.get(0));
+        Assert.assertFalse(bits.get(1));
+        Assert.assertTrue(bits.get(64));
+        Assert.assertFalse(bits.get(128));
+        Assert.assertTrue(bits.get(129));
+
+        BitSet expected = new BitSet();
+        expected.set(0);
+        expected.set(64);
+        expected.set(129);
+        Assert.assertEquals(expected, bits.toBitSet());
+    }
+
+    @Test
+    public void testOutOfBounds() {
+        AtomicBitSet bits = new AtomicBitSet(10);
+        try {
+            bits.set(10);
+            Assert.fail("Expected an IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            bits.get(-1);
+            Assert.fail("Expected an IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Test that when several threads set the same bits, which share words, each bit is claimed by
+     * exactly one of them and no update is lost.
+     */
+    @Test
+    public void testConcurrentSet() throws InterruptedException {
+        final int size = 100000;
+        final int threadCount = 8;
+        final AtomicBitSet bits = new AtomicBitSet(size);
+        final AtomicInteger claimed = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    // Every thread sets every bit, starting at a different word
+                    for (int i = 0; i < size; i++) {
+                        if (bits.set((i + offset * 64) % size)) {
+                            claimed.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(size, claimed.get());
+        Assert.assertEquals(size, bits.toBitSet().cardinality());
+    }
+}
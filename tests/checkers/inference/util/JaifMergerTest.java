@@ -0,0 +1,72 @@
+package checkers.inference.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class JaifMergerTest {
+
+    private static final String SOURCE_JAIF =
+            "package sparta.checkers.qual:\n"
+          + "  annotation @Source:\n"
+          + "    String[] value\n"
+          + "\n"
+          + "package checkers.inference.qual:\n"
+          + "  annotation @VarAnnot:\n"
+          + "    int value\n"
+          + "\n"
+          + "package a:\n"
+          + "class A:\n"
+          + "field f:\n"
+          + "insert-annotation Variable.type: @sparta.checkers.qual.Source({\"INTERNET\"})\n"
+          + "\n";
+
+    private static final String SINK_JAIF =
+            "package sparta.checkers.qual:\n"
+          + "  annotation @Sink:\n"
+          + "    String[] value\n"
+          + "\n"
+          + "package checkers.inference.qual:\n"
+          + "  annotation @VarAnnot:\n"
+          + "    int value\n"
+          + "\n"
+          + "package a:\n"
+          + "class A:\n"
+          + "field f:\n"
+          + "insert-annotation Variable.type: @sparta.checkers.qual.Sink({\"FILESYSTEM\"})\n"
+          + "\n";
+
+    @Test
+    public void testMerge() throws IOException {
+        File source = write("source", SOURCE_JAIF);
+        File sink = write("sink", SINK_JAIF);
+        File merged = File.createTempFile("merged", ".jaif");
+        merged.deleteOnExit();
+
+        JaifMerger.merge(Arrays.asList(source, sink), merged);
+        String result = new String(Files.readAllBytes(merged.toPath()), StandardCharsets.UTF_8);
+
+        Assert.assertTrue(result.contains("annotation @Source:"));
+        Assert.assertTrue(result.contains("annotation @Sink:"));
+        Assert.assertEquals("Repeated definitions are written once",
+                result.indexOf("annotation @VarAnnot:"), result.lastIndexOf("annotation @VarAnnot:"));
+        Assert.assertTrue(result.contains("@sparta.checkers.qual.Source({\"INTERNET\"})"));
+        Assert.assertTrue(result.contains("@sparta.checkers.qual.Sink({\"FILESYSTEM\"})"));
+        Assert.assertTrue(result.indexOf("Source({") < result.indexOf("Sink({"));
+    }
+
+    private static File write(String prefix, String contents) throws IOException {
+        File file = File.createTempFile(prefix, ".jaif");
+        file.deleteOnExit();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(contents);
+        }
+        return file;
+    }
+}